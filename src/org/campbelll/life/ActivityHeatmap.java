@@ -0,0 +1,202 @@
+/* ************************************************************************* *
+ * Name:		ActivityHeatmap.java
+ * Description:	Counts of how often each cell or block of cells flipped.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Heatmap of how many times the cells of a board changed state over a run.
+ * <p>
+ * The board is divided into square blocks of 2^blockShift cells a side, and
+ * each block has a count of the flips of its cells. A heatmap is set on a
+ * board with {@link Life#setHeatmap(ActivityHeatmap)}, after which the
+ * workers count the flips of each block of work they finish. Flips are
+ * counted locally a row of heatmap blocks at a time, so workers only touch
+ * the shared counts once per block of the heatmap they cover, not once per
+ * cell, and never hold more than a row of blocks.
+ * <p>
+ * Counts can be read as an array with {@link #toArray()}, or written as a
+ * greyscale image with {@link #writePgm(OutputStream)}.
+ *
+ * @author Campbell Lockley
+ */
+public class ActivityHeatmap {
+	/* Size of board dimension, and of heatmap dimension in blocks */
+	private final int boardDim, dim;
+
+	/* Block size is 1 << blockShift */
+	private final int blockShift;
+
+	/* Flips per block, row-major */
+	private final AtomicIntegerArray counts;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of board dimension.
+	 * @param blockShift Log2 of the block size, 0 for a count per cell.
+	 */
+	public ActivityHeatmap(int boardDim, int blockShift) {
+		if ((boardDim < 1) || (blockShift < 0) || (blockShift > 30)) {
+			throw new IllegalArgumentException("Invalid heatmap parameters");
+		}
+		this.boardDim = boardDim;
+		this.blockShift = blockShift;
+		this.dim = ((boardDim - 1) >> blockShift) + 1;
+		if ((long) dim * dim > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Heatmap too large");
+		}
+		this.counts = new AtomicIntegerArray(dim * dim);
+	}
+
+	/**
+	 * Gets the count of flips of a block.
+	 *
+	 * @param bx x position of the block.
+	 * @param by y position of the block.
+	 * @return Flips of the cells of the block.
+	 */
+	public int getCount(int bx, int by) {
+		return counts.get(by * dim + bx);
+	}
+
+	/**
+	 * Gets the counts of every block.
+	 *
+	 * @return Counts, row-major with {@link #getDim()} blocks per row.
+	 */
+	public int[] toArray() {
+		int[] array = new int[dim * dim];
+		for (int i = 0; i < array.length; i++) array[i] = counts.get(i);
+		return array;
+	}
+
+	/**
+	 * Writes the counts as a binary PGM image, one pixel per block, with
+	 * white being the highest count.
+	 *
+	 * @param out Output stream to write to. Not closed.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public void writePgm(OutputStream out) throws IOException {
+		int[] array = toArray();
+		int max = 0;
+		for (int count : array) max = Math.max(max, count);
+
+		out.write(("P5\n" + dim + " " + dim + "\n255\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		byte[] row = new byte[dim];
+		for (int by = 0; by < dim; by++) {
+			for (int bx = 0; bx < dim; bx++) {
+				row[bx] = (byte) ((max == 0) ? 0 :
+						(long) array[by * dim + bx] * 255 / max);
+			}
+			out.write(row);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Sets every count back to 0.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+	}
+
+	/**
+	 * Gets the number of blocks along each side.
+	 *
+	 * @return Heatmap dimension in blocks.
+	 */
+	public int getDim() {
+		return dim;
+	}
+
+	/**
+	 * Gets the number of cells along each side of a block.
+	 *
+	 * @return Block size in cells.
+	 */
+	public int getBlockSize() {
+		return 1 << blockShift;
+	}
+
+	/**
+	 * Gets the size of the board the heatmap is for.
+	 *
+	 * @return Size of board dimension.
+	 */
+	public int getBoardDim() {
+		return boardDim;
+	}
+
+	/**
+	 * Adds runs of flipped cells to the counts. Runs are counted locally a 
+	 * row of blocks at a time, and each row of blocks is added to the shared 
+	 * counts once the runs move below it, so only one row of blocks is held 
+	 * however large the board.
+	 *
+	 * @param runs Pairs of position (y * boardDim + x) and length, in 
+	 * position order, each within one row of the board.
+	 * @param length Number of ints of runs[] used.
+	 * @param x x position of the leftmost cell any run can cover.
+	 * @param width Number of columns the runs can cover.
+	 */
+	void addRuns(int[] runs, int length, int x, int width) {
+		final int bx0 = x >> blockShift;
+		final int[] local = 
+				new int[((x + width - 1) >> blockShift) - bx0 + 1];
+		
+		/* Block row being counted, and the columns of it touched */
+		int by = -1, lo = local.length, hi = -1;
+		int from, end, bx, next, row;
+		for (int i = 0; i < length; i += 2) {
+			row = (runs[i] / boardDim) >> blockShift;
+			if (row != by) {
+				flush(local, by, bx0, lo, hi);
+				by = row;
+				lo = local.length;
+				hi = -1;
+			}
+			from = runs[i] % boardDim;
+			end = from + runs[i + 1];
+			bx = from >> blockShift;
+			lo = Math.min(lo, bx - bx0);
+			for (; from < end; from = next) {
+				next = Math.min(end, (bx + 1) << blockShift);
+				local[bx - bx0] += next - from;
+				bx++;
+			}
+			hi = Math.max(hi, bx - 1 - bx0);
+		}
+		flush(local, by, bx0, lo, hi);
+	}
+
+	/**
+	 * Adds the local counts of a row of blocks to the heatmap and clears 
+	 * them.
+	 *
+	 * @param local Local counts, from block bx0.
+	 * @param by Row of blocks, or -1 for none.
+	 * @param bx0 First block of local[].
+	 * @param lo First touched entry of local[].
+	 * @param hi Last touched entry of local[].
+	 */
+	private void flush(int[] local, int by, int bx0, int lo, int hi) {
+		if (by < 0) return;
+		for (int c = lo; c <= hi; c++) {
+			if (local[c] != 0) {
+				counts.addAndGet(by * dim + bx0 + c, local[c]);
+				local[c] = 0;
+			}
+		}
+	}
+
+}
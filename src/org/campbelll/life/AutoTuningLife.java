@@ -0,0 +1,309 @@
+/* ************************************************************************* *
+ * Name:		AutoTuningLife.java
+ * Description:	Parallel implementation of game of life which measures several
+ * 				partitioning strategies and thread counts at runtime and locks
+ * 				in the fastest.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Self-tuning parallel implementation of {@link Life}.
+ * <p>
+ * The board is split into tiles according to a {@link Candidate} strategy:
+ * whole lines (as in {@link LineParallelLife}), a 32 x 32 split (as in
+ * {@link BlockParallelLife}) or cache sized tiles (as in
+ * {@link CacheParallelLife}) of several sizes. Each strategy is tried with
+ * several thread counts, up to the size of the thread pool.
+ * <p>
+ * The first generations (including those run by {@link #warmup(int)}) are
+ * used to time every candidate. The fastest candidate is then locked in. The
+ * candidates are probed again every {@link #reprobeInterval} generations, or
+ * sooner if the time per generation drifts far from the time it was locked
+ * in at, which happens when the activity of the board changes.
+ * <p>
+ * A thread count lower than the size of the thread pool is simulated by
+ * submitting only that many jobs, which pull tiles from a shared counter
+ * until every tile is done.
+ *
+ * @author Campbell Lockley
+ */
+public class AutoTuningLife extends ParallelLife {
+	/** Number of generations each candidate is timed for when probing. */
+	public final static int PROBE_ROUNDS = 2;
+	/** Default number of generations between probes. */
+	public final static int DEFAULT_REPROBE_INTERVAL = 1000;
+	/* Factor the locked in time may drift by before probing again */
+	private final static double DRIFT_FACTOR = 2.0;
+	/* Generations to stay locked in before drift is checked */
+	private final static int MIN_LOCKED = 16;
+
+	/* Candidate strategies and their timings */
+	private List<Candidate> candidates;
+	private long[] probeTimes;
+
+	/* Tuning state */
+	private int probeIndex, probeRound;
+	private Candidate selected;
+	private long selectedTime;
+	private double averageTime;
+	private int generationsSinceProbe;
+
+	/** Number of generations between probes. */
+	protected int reprobeInterval = DEFAULT_REPROBE_INTERVAL;
+
+	/* Parameters for call() */
+	private Candidate candidate;
+	private AtomicInteger next;
+
+	/**
+	 * Constructor. Use when intending to use as a
+	 * {@link java.util.concurrent.Callable Callable}.
+	 *
+	 * @param board Pointer to pre-existing board.
+	 * @param nextGen Pointer to accompanying nextGen.
+	 * @param boardDim Size of board dimension.
+	 * @param candidate Strategy holding the tiles to compute.
+	 * @param next Counter of the next tile to compute, shared by all jobs.
+	 * @see java.util.concurrent.Callable
+	 */
+	protected AutoTuningLife(char[] board, char[] nextGen, int boardDim,
+			Candidate candidate, AtomicInteger next) {
+		this.board = board;
+		this.nextGen = nextGen;
+		this.boardDim = boardDim;
+		this.candidate = candidate;
+		this.next = next;
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Candidates are built for 1, 2, 4, ... threads up to maxThreads, each
+	 * with line, 32 x 32 block (if the board dimension is divisible by 32)
+	 * and cache sized tiles of 1/2, 1 and 2 times the size used by
+	 * {@link CacheParallelLife}.
+	 *
+	 * @param boardDim Size of board dimension.
+	 * @param maxThreads Number of threads for the thread pool to use, which is
+	 * also the largest thread count tried.
+	 * @param l1CacheSize Size of the L1 cache in KB for the CPU this program
+	 * is being run on. Only used as a starting point for tile sizes.
+	 */
+	public AutoTuningLife(int boardDim, int maxThreads, int l1CacheSize) {
+		super(boardDim, maxThreads);
+
+		/* Collect the distinct tile sizes to try (width x height) */
+		List<int[]> shapes = new ArrayList<int[]>();
+		shapes.add(new int[] { boardDim, 1 });
+		if ((boardDim >= BlockParallelLife.numDivisions) &&
+				(boardDim % BlockParallelLife.numDivisions == 0)) {
+			int blockDim = boardDim / BlockParallelLife.numDivisions;
+			shapes.add(new int[] { blockDim, blockDim });
+		}
+		int cacheDim = ((l1CacheSize * 1024) / 4) / 2;
+		for (int tileDim = cacheDim / 2; tileDim <= cacheDim * 2; 
+				tileDim *= 2) {
+			if ((tileDim < 8) || (tileDim > boardDim)) continue;
+			shapes.add(new int[] { tileDim, tileDim });
+		}
+
+		/* Pair every tile size with every thread count */
+		this.candidates = new ArrayList<Candidate>();
+		for (int threads = 1; ; threads *= 2) {
+			if (threads > maxThreads) threads = maxThreads;
+			for (int[] shape : shapes) {
+				candidates.add(new Candidate(boardDim, shape[0], shape[1],
+						threads));
+			}
+			if (threads == maxThreads) break;
+		}
+		this.probeTimes = new long[candidates.size()];
+		startProbing();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation of age() times the generation with the candidate
+	 * being probed, or with the locked in candidate once probing is done.
+	 *
+	 * @throws TimeoutException if a blocking method call in age() times out,
+	 * causing age() to fail.
+	 */
+	@Override
+	public void age() throws TimeoutException {
+		startGeneration();
+		
+		Candidate current = (selected == null) ?
+				candidates.get(probeIndex) : selected;
+
+		/* Create one job per thread, sharing a counter of the next tile */
+		ArrayList<AutoTuningLife> jobs =
+				new ArrayList<AutoTuningLife>(current.threads);
+		AtomicInteger next = new AtomicInteger();
+		for (int i = 0; i < current.threads; i++) {
+			jobs.add(new AutoTuningLife(board, nextGen, boardDim, current,
+					next));
+		}
+
+		/* Pass shared state on to the jobs */
+		for (AutoTuningLife job : jobs) inherit(job);
+
+		/* Submit the jobs to executor and wait for completion */
+		final long startTime = System.nanoTime();
+		invoke(jobs);
+		record(System.nanoTime() - startTime);
+
+		/* Copy edges, swap boards over and publish delta */
+		finishGeneration();
+	}
+
+	/**
+	 * Computes next generation for the tiles pulled from the shared counter.
+	 * <p>
+	 * Implementation of call() method in
+	 * {@link java.util.concurrent.Callable Callable} interface. Should be used
+	 * only when instantiated specifically as a Callable.
+	 *
+	 * @return null always.
+	 */
+	@Override
+	public Object call() {
+		/* Keep taking tiles until there are none left */
+		int tile;
+		while ((tile = next.getAndIncrement()) < candidate.starts.length) {
+			ageBlock(candidate.starts[tile], candidate.widths[tile], 
+					candidate.heights[tile]);
+		}
+
+		return null;	// Nothing to return
+	}
+
+	/**
+	 * Gets the candidate currently locked in.
+	 *
+	 * @return The locked in candidate, or null if still probing.
+	 */
+	public Candidate getSelected() {
+		return selected;
+	}
+
+	/**
+	 * Gets every candidate this instance chooses between.
+	 *
+	 * @return List of candidates, in probing order.
+	 */
+	public List<Candidate> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Discards the locked in candidate and probes every candidate again from
+	 * the next generation.
+	 */
+	public void startProbing() {
+		selected = null;
+		probeIndex = 0;
+		probeRound = 0;
+		for (int i = 0; i < probeTimes.length; i++) {
+			probeTimes[i] = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Records the time taken by the last generation and moves the tuning
+	 * state on.
+	 *
+	 * @param time Time taken in nanoseconds.
+	 */
+	private void record(long time) {
+		if (selected == null) {
+			/* Probing, so keep the best time for this candidate */
+			probeTimes[probeIndex] = Math.min(probeTimes[probeIndex], time);
+			if (++probeRound < PROBE_ROUNDS) return;
+			probeRound = 0;
+			if (++probeIndex < candidates.size()) return;
+
+			/* Every candidate has been timed, so lock in the fastest */
+			int best = 0;
+			for (int i = 1; i < probeTimes.length; i++) {
+				if (probeTimes[i] < probeTimes[best]) best = i;
+			}
+			selected = candidates.get(best);
+			selectedTime = probeTimes[best];
+			averageTime = selectedTime;
+			generationsSinceProbe = 0;
+		} else {
+			/* Locked in, so watch for drift and the reprobe interval */
+			averageTime = 0.9 * averageTime + 0.1 * time;
+			generationsSinceProbe++;
+			boolean drifted = (generationsSinceProbe >= MIN_LOCKED) &&
+					((averageTime > selectedTime * DRIFT_FACTOR) ||
+					(averageTime < selectedTime / DRIFT_FACTOR));
+			if (drifted || (generationsSinceProbe >= reprobeInterval)) {
+				startProbing();
+			}
+		}
+	}
+
+	/**
+	 * A partitioning strategy: the tiles the board is split into and the
+	 * number of threads used to compute them.
+	 */
+	public static class Candidate {
+		/** Width of tiles, board dimension for line partitioning. */
+		public final int tileWidth;
+		/** Height of tiles. */
+		public final int tileHeight;
+		/** Number of threads computing tiles. */
+		public final int threads;
+
+		/* Offset into board[] and size of each tile */
+		final int[] starts, widths, heights;
+
+		/**
+		 * Constructor. Tiles at the right and bottom edges are clipped to the
+		 * board.
+		 *
+		 * @param boardDim Size of board dimension.
+		 * @param tileWidth Width of tiles.
+		 * @param tileHeight Height of tiles.
+		 * @param threads Number of threads computing tiles.
+		 */
+		public Candidate(int boardDim, int tileWidth, int tileHeight,
+				int threads) {
+			this.tileWidth = tileWidth;
+			this.tileHeight = tileHeight;
+			this.threads = threads;
+
+			int across = (boardDim + tileWidth - 1) / tileWidth;
+			int down = (boardDim + tileHeight - 1) / tileHeight;
+			this.starts = new int[across * down];
+			this.widths = new int[across * down];
+			this.heights = new int[across * down];
+			int tile = 0;
+			for (int y = 0; y < boardDim; y += tileHeight) {
+				for (int x = 0; x < boardDim; x += tileWidth) {
+					starts[tile] = (y + 1) * (boardDim + 2) + x + 1;
+					widths[tile] = Math.min(tileWidth, boardDim - x);
+					heights[tile] = Math.min(tileHeight, boardDim - y);
+					tile++;
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return tileWidth + "x" + tileHeight + " tiles on " + threads +
+					" thread" + ((threads == 1) ? "" : "s");
+		}
+	}
+
+}
@@ -9,14 +9,18 @@
 package org.campbelll.life;
 
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Block parallel implementation of {@link Life}.
  * <p>
- * Blocks of the board are processed in parallel. Blocks are generated by 
- * splitting the board 32 ways along its x and y axis.
+ * Blocks of the board are processed in parallel. Blocks are planned by the 
+ * {@link PartitionPlanner}, which splits a square board 32 ways along its x 
+ * and y axis, and a rectangular board into as many blocks of balanced sizes. 
+ * Blocks are submitted 
+ * in order of their time in the previous generation by a 
+ * {@link TileScheduler}.
  * 
  * @author Campbell Lockley
  */
@@ -24,8 +28,11 @@ public class BlockParallelLife extends ParallelLife {
 	/* Board is split into 32 x 32 blocks */
 	protected final static int numDivisions = 32;
 	
+	/* Blocks of the board */
+	private PartitionPlanner.Partition partition;
+	
 	/* Parameters for call() */
-	private int start, blockDim;
+	private int start, width, height;
 
 	/**
 	 * Constructor. Use when intending to use as a 
@@ -33,37 +40,79 @@ public class BlockParallelLife extends ParallelLife {
 	 * 
 	 * @param board Pointer to pre-existing board.
 	 * @param nextGen Pointer to accompanying nextGen.
-	 * @param neighbours Pointer to pre-computed neighbour indexes
 	 * @param boardDim Size of board dimension.
 	 * @param blockDim Size of block dimensions.
 	 * @param start Offset into board[] to start at.
 	 * @see java.util.concurrent.Callable
 	 */
-	public BlockParallelLife(char[] board, char[] nextGen, int[] neighbours, 
-			int boardDim, int blockDim, int start) {
+	public BlockParallelLife(char[] board, char[] nextGen, int boardDim, 
+			int blockDim, int start) {
+		this(board, nextGen, boardDim, start, blockDim, blockDim);
+	}
+	
+	/**
+	 * Constructor for a block which may not be square. Use when intending to 
+	 * use as a {@link java.util.concurrent.Callable Callable}.
+	 * 
+	 * @param board Pointer to pre-existing board.
+	 * @param nextGen Pointer to accompanying nextGen.
+	 * @param boardDim Width of the board.
+	 * @param start Offset into board[] to start at.
+	 * @param width Width of the block.
+	 * @param height Height of the block.
+	 * @see java.util.concurrent.Callable
+	 */
+	public BlockParallelLife(char[] board, char[] nextGen, int boardDim, 
+			int start, int width, int height) {
 		this.board = board;
 		this.nextGen = nextGen;
-		this.neighbours = neighbours;
 		this.boardDim = boardDim;
-		this.blockDim = blockDim;
 		this.start = start;
+		this.width = width;
+		this.height = height;
 	}
 
 	/**
 	 * Constructor.
-	 * <p>
-	 * For BlockParallelLife the dimensions of the game of life board must be 
-	 * at least 32, and also be divisible by 32.
 	 * 
 	 * @param boardDim Size of board dimension.
 	 * @param numThreads Number of threads for the thread pool to use.
 	 */
 	public BlockParallelLife(int boardDim, int numThreads) {
 		super(boardDim, numThreads);
-		
-		/* Board dimensions must be at least 32 and divisible by 32 */
-		assert (boardDim >= numDivisions);
-		assert (boardDim % numDivisions == 0);
+		plan();
+	}
+	
+	/**
+	 * Constructor for a rectangular board.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 */
+	public BlockParallelLife(int width, int height, int numThreads) {
+		super(width, height, numThreads);
+		plan();
+	}
+	
+	/**
+	 * Constructor for a BlockParallelLife which shares a thread pool.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param pool Thread pool to submit jobs to.
+	 */
+	public BlockParallelLife(int boardDim, ExecutorService pool) {
+		super(boardDim, pool);
+		plan();
+	}
+	
+	/**
+	 * Plans the blocks, 32 x 32 of them where the board is large enough.
+	 */
+	private void plan() {
+		partition = PartitionPlanner.plan(boardDim, boardHeight, 
+				numDivisions * numDivisions, Integer.MAX_VALUE, 
+				Integer.MAX_VALUE);
 	}
 
 	/**
@@ -77,35 +126,26 @@ public class BlockParallelLife extends ParallelLife {
 	 */
 	@Override
 	public void age() throws TimeoutException {
+		startGeneration();
+		
 		ArrayList<BlockParallelLife> jobs = 
-				new ArrayList<BlockParallelLife>(boardDim);
+				new ArrayList<BlockParallelLife>(partition.size());
 		
-		/* Create jobs where each job is a 32^2 way split of the board */
-		int blockDim = boardDim / numDivisions;
-		for (int y = 0; y < numDivisions; y++) {
-			for (int x = 0; x < numDivisions; x++) {
-				jobs.add(new BlockParallelLife(board, nextGen, neighbours, 
-						boardDim, blockDim,
-						(y*blockDim + 1) * (boardDim + 2) + x*blockDim + 1));
-			}
+		/* Create jobs where each job is a block of the partition */
+		for (int i = 0; i < partition.size(); i++) {
+			jobs.add(new BlockParallelLife(board, nextGen, boardDim, 
+					partition.getStart(i), partition.getWidth(i), 
+					partition.getHeight(i)));
 		}
 
-		/* Submit the jobs to executor and wait for completion */
-		try {
-			pool.invokeAll(jobs, timeout, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			/* Shutdown thread pool and pass on interrupt */
-			pool.shutdownNow();
-			Thread.currentThread().interrupt();
-		}
-		
-		/* Copy edges to handle wrapping */
-		copyEdges(nextGen);
+		/* Pass shared state on to the jobs */
+		for (BlockParallelLife job : jobs) inherit(job);
+
+		/* Submit the jobs to executor, costliest first, and wait */
+		invoke(schedule(jobs));
 		
-		/* Swap boards over */
-		char[] tmp = board;
-		board = nextGen;
-		nextGen = tmp;
+		/* Copy edges, swap boards over and publish delta */
+		finishGeneration();
 	}
 	
 	/**
@@ -120,13 +160,7 @@ public class BlockParallelLife extends ParallelLife {
 	@Override
 	public Object call() {
 		/* Do a block of cells */
-		int index;
-		for (int y = 0; y < blockDim; y++) {
-			index = start + y * (boardDim + 2);
-			for (int x = 0; x < blockDim; x++) {
-				nextGen[index + x] = live(index + x);
-			}
-		}
+		ageBlock(start, width, height);
 		
 		return null;	// Nothing to return
 	}
@@ -9,23 +9,27 @@
 package org.campbelll.life;
 
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Cache parallel implementation of {@link Life}.
  * <p>
  * Blocks of the board are processed in parallel. The board is split into 
- * blocks, where each block is calculated to take up 1/4 of the L1 cache.
- * <p>
- * CacheParallelLife has very poor performance as the blocks are so small that 
- * threads spend most of their time waiting for new jobs.
+ * blocks by the {@link PartitionPlanner}, where each block is at most 1/4 of 
+ * the L1 cache wide, and there are at least {@link #BLOCKS_PER_THREAD} blocks 
+ * per thread so the threads stay balanced. Blocks are submitted in order of 
+ * their time in the previous generation by a {@link TileScheduler}, with 
+ * cheap blocks batched together.
  * 
  * @author Campbell Lockley
  */
 public class CacheParallelLife extends ParallelLife {
-	/* Dimension of block */
-	private int blockDim;
+	/** Minimum number of blocks per thread. */
+	public final static int BLOCKS_PER_THREAD = 4;
+	
+	/* Blocks of the board */
+	private PartitionPlanner.Partition partition;
 	
 	/* Parameters for call() */
 	private int start, width, height;
@@ -36,18 +40,16 @@ public class CacheParallelLife extends ParallelLife {
 	 * 
 	 * @param board Pointer to pre-existing board.
 	 * @param nextGen Pointer to accompanying nextGen.
-	 * @param neighbours Pointer to pre-computed neighbour indexes
 	 * @param boardDim Size of board dimension.
 	 * @param start Offset into board[] to start at.
 	 * @param width Width of block to compute.
 	 * @param height Height of block to compute.
 	 * @see java.util.concurrent.Callable
 	 */
-	public CacheParallelLife(char[] board, char[] nextGen, int[] neighbours, 
-			int boardDim, int start, int width, int height) {
+	public CacheParallelLife(char[] board, char[] nextGen, int boardDim, 
+			int start, int width, int height) {
 		this.board = board;
 		this.nextGen = nextGen;
-		this.neighbours = neighbours;
 		this.boardDim = boardDim;
 		this.start = start;
 		this.width = width;
@@ -69,10 +71,51 @@ public class CacheParallelLife extends ParallelLife {
 	 */
 	public CacheParallelLife(int boardDim, int numThreads, int l1CacheSize) {
 		super(boardDim, numThreads);
-		
+		plan(numThreads, l1CacheSize);
+	}
+	
+	/**
+	 * Constructor for a rectangular board.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 * @param l1CacheSize Size of the L1 cache in KB for the CPU this program 
+	 * is being run on.
+	 */
+	public CacheParallelLife(int width, int height, int numThreads, 
+			int l1CacheSize) {
+		super(width, height, numThreads);
+		plan(numThreads, l1CacheSize);
+	}
+	
+	/**
+	 * Constructor for a CacheParallelLife which shares a thread pool. Blocks 
+	 * are planned for the number of threads of the pool.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param pool Thread pool to submit jobs to.
+	 * @param l1CacheSize Size of the L1 cache in KB for the CPU this program 
+	 * is being run on.
+	 */
+	public CacheParallelLife(int boardDim, ExecutorService pool, 
+			int l1CacheSize) {
+		super(boardDim, pool);
+		plan(parallelism(pool), l1CacheSize);
+	}
+	
+	/**
+	 * Plans the blocks of the board.
+	 * 
+	 * @param numThreads Number of threads the blocks are shared between.
+	 * @param l1CacheSize Size of the L1 cache in KB.
+	 */
+	private void plan(int numThreads, int l1CacheSize) {
 		/* Calculate block width so a single block line is 1/4 of L1 cache */
 		assert (l1CacheSize % 4 == 0);
-		this.blockDim = ((l1CacheSize * 1024) / 4) / 2;
+		final int blockDim = Math.max(1, ((l1CacheSize * 1024) / 4) / 2);
+		partition = PartitionPlanner.plan(boardDim, boardHeight, 
+				numThreads * BLOCKS_PER_THREAD, blockDim, blockDim);
 	}
 
 	/**
@@ -86,64 +129,26 @@ public class CacheParallelLife extends ParallelLife {
 	 */
 	@Override
 	public void age() throws TimeoutException {
+		startGeneration();
+		
 		ArrayList<CacheParallelLife> jobs = 
-				new ArrayList<CacheParallelLife>(boardDim);
+				new ArrayList<CacheParallelLife>(partition.size());
 		
-		/* Create jobs where each block is 1/4 of the L1 cache wide */
-		int y, x, start, rem = boardDim % blockDim;
-		for (y = 0; y < (boardDim - 1); y += blockDim) {
-			for (x = 0; x < (boardDim - 1); x += blockDim) {
-				start = (y*blockDim + 1) * (boardDim + 2) + x*blockDim + 1;
-				jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-						boardDim, start, blockDim, blockDim));
-			} 
-			/* Check x bounds */
-			start = (y*blockDim + 1) * (boardDim + 2) + x*blockDim + 1;
-			if (rem == 0) {
-				jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-						boardDim, start, blockDim, blockDim));
-			} else {
-				jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-						boardDim, start, rem, blockDim));
-			}
-		}
-		/* Check y bounds */
-		for (x = 0; x < (boardDim - 1); x += blockDim) {
-			start = (y*blockDim + 1) * (boardDim + 2) + x*blockDim + 1;
-			if (rem == 0) {
-				jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-						boardDim, start, blockDim, blockDim));
-			} else {
-				jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-						boardDim, start, blockDim, rem));
-			}
-		}
-		/* Check x-y bounds */
-		start = (y*blockDim + 1) * (boardDim + 2) + x*blockDim + 1;
-		if (rem == 0) {
-			jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-					boardDim, start, blockDim, blockDim));
-		} else {
-			jobs.add(new CacheParallelLife(board, nextGen, neighbours, 
-					boardDim, start, rem, rem));
+		/* Create jobs where each job is a block of the partition */
+		for (int i = 0; i < partition.size(); i++) {
+			jobs.add(new CacheParallelLife(board, nextGen, boardDim, 
+					partition.getStart(i), partition.getWidth(i), 
+					partition.getHeight(i)));
 		}
 
-		/* Submit the jobs to executor and wait for completion */
-		try {
-			pool.invokeAll(jobs, timeout, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			/* Shutdown thread pool and pass on interrupt */
-			pool.shutdownNow();
-			Thread.currentThread().interrupt();
-		}
-		
-		/* Copy edges to handle wrapping */
-		copyEdges(nextGen);
+		/* Pass shared state on to the jobs */
+		for (CacheParallelLife job : jobs) inherit(job);
+
+		/* Submit the jobs to executor, costliest first, and wait */
+		invoke(schedule(jobs));
 		
-		/* Swap boards over */
-		char[] tmp = board;
-		board = nextGen;
-		nextGen = tmp;
+		/* Copy edges, swap boards over and publish delta */
+		finishGeneration();
 	}
 	
 	/**
@@ -158,13 +163,7 @@ public class CacheParallelLife extends ParallelLife {
 	@Override
 	public Object call() {
 		/* Do a block of cells */
-		int index;
-		for (int y = 0; y < height; y++) {
-			index = start + y * (boardDim + 2);
-			for (int x = 0; x < width; x++) {
-				nextGen[index + x] = live(index + x);
-			}
-		}
+		ageBlock(start, width, height);
 		
 		return null;	// Nothing to return
 	}
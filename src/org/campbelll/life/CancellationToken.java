@@ -0,0 +1,129 @@
+/* ************************************************************************* *
+ * Name:		CancellationToken.java
+ * Description:	Cooperative cancellation of the workers of a generation.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Flag shared by the workers of one generation, telling them to stop.
+ * <p>
+ * A token is cancelled by {@link #cancel()}, or once its deadline passes.
+ * Workers call {@link #checkpoint()} before each row and give up on their
+ * block when it returns true, so a cancelled generation stops within a row
+ * and is never finished. Jobs run through {@link #guard(Callable)} are
+ * counted, so the engine can wait with {@link #awaitIdle()} until no worker
+ * is still writing to nextGen before it returns.
+ *
+ * @author Campbell Lockley
+ */
+public class CancellationToken {
+	/* Deadline in System.nanoTime() terms, if there is one */
+	private final long deadline;
+	private final boolean hasDeadline;
+
+	/* Set once any worker should stop */
+	private volatile boolean cancelled = false;
+
+	/* Number of guarded jobs running */
+	private int running = 0;
+
+	/** Constructor for a token with no deadline. */
+	public CancellationToken() {
+		this.deadline = 0;
+		this.hasDeadline = false;
+	}
+
+	/**
+	 * Constructor for a token which cancels itself at a deadline.
+	 *
+	 * @param deadline Deadline, as a value of {@link System#nanoTime()}.
+	 */
+	public CancellationToken(long deadline) {
+		this.deadline = deadline;
+		this.hasDeadline = true;
+	}
+
+	/**
+	 * Cancels the token, so workers stop at their next checkpoint.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Tests whether the token has been cancelled, either by
+	 * {@link #cancel()} or by a worker finding the deadline had passed. A
+	 * deadline which has passed without a worker noticing doesn't count, as
+	 * no work was skipped.
+	 *
+	 * @return True if work was skipped.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Checks whether a worker should stop, cancelling the token if the
+	 * deadline has passed. Called by workers before each row.
+	 *
+	 * @return True if the worker should stop.
+	 */
+	public boolean checkpoint() {
+		if (cancelled) return true;
+		if (hasDeadline && (System.nanoTime() - deadline >= 0)) {
+			cancelled = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Wraps a job so that it is counted while it runs, and skipped if the
+	 * token was cancelled before it started.
+	 *
+	 * @param job Job to wrap.
+	 * @return Guarded job.
+	 */
+	public Callable<Object> guard(final Callable<Object> job) {
+		return new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				/* Count the job before checking, so awaitIdle() can't miss it */
+				synchronized (CancellationToken.this) {
+					running++;
+				}
+				try {
+					if (checkpoint()) return null;
+					return job.call();
+				} finally {
+					synchronized (CancellationToken.this) {
+						if (--running == 0) CancellationToken.this.notifyAll();
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Waits until no guarded job is running. Jobs which are cancelled by the
+	 * thread pool may still be finishing a row after the pool has given up
+	 * on them.
+	 */
+	public synchronized void awaitIdle() {
+		boolean interrupted = false;
+		while (running > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				/* Keep waiting, the workers stop at their next row */
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+}
@@ -0,0 +1,407 @@
+/* ************************************************************************* *
+ * Name:		CowLife.java
+ * Description:	Implementation of game of life on copy-on-write tiles which
+ * 				forks share.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Game of Life on a board of reference counted tiles, so that many
+ * simulations forked from one large board share every tile none of them
+ * have changed.
+ * <p>
+ * The board is split into tiles of 64 x 64 cells, each row of a tile being
+ * a long with bit x the cell x. {@link #fork()} copies only the array of
+ * tiles, and every tile gains a reference. A tile is only written in place
+ * while one board holds it; {@link #setCell(int, int, boolean)} on a shared
+ * tile copies it first. Ageing builds a new array of tiles, reusing a tile
+ * rather than creating one when its next generation is the same, so still
+ * or empty regions stay shared between forks from generation to generation.
+ * Empty tiles are all the one {@link Tile#EMPTY} tile, and a tile whose 3 x 3
+ * neighbourhood of tiles is empty isn't computed at all.
+ * <p>
+ * Cells are computed 64 at a time with the adder logic of
+ * {@link EnsembleLife}, the neighbours of a row being the rows above and
+ * below and the rows shifted by one cell.
+ * <p>
+ * A CowLife, and its forks, may each be aged on its own thread, but one
+ * board must only be used by one thread at a time. Once finished with,
+ * {@link #cleanUp()} releases its references so forks can write in place.
+ *
+ * @author Campbell Lockley
+ */
+public class CowLife {
+	/** Width and height of a tile in cells. */
+	public final static int TILE_DIM = 64;
+
+	/* Board dimension, tiles per side and tiles row-major */
+	private final int boardDim, tilesPerSide;
+	private Tile[] tiles;
+
+	/* Generation counter */
+	private long generation;
+
+	/* Rows of a tile's neighbourhood: 66 rows of left, centre, right words */
+	private final long[] window = new long[(TILE_DIM + 2) * 3];
+	private final long[] next = new long[TILE_DIM];
+
+	/**
+	 * Constructor. The board starts empty.
+	 *
+	 * @param boardDim Size of board dimension, a multiple of
+	 * {@link #TILE_DIM}.
+	 */
+	public CowLife(int boardDim) {
+		if ((boardDim < TILE_DIM) || (boardDim % TILE_DIM != 0)) {
+			throw new IllegalArgumentException(
+					"Board dimension must be a multiple of " + TILE_DIM);
+		}
+		this.boardDim = boardDim;
+		this.tilesPerSide = boardDim / TILE_DIM;
+		this.tiles = new Tile[tilesPerSide * tilesPerSide];
+		Arrays.fill(tiles, Tile.EMPTY);
+	}
+
+	/**
+	 * Constructor for forks.
+	 *
+	 * @param parent Board to share the tiles of.
+	 */
+	private CowLife(CowLife parent) {
+		this.boardDim = parent.boardDim;
+		this.tilesPerSide = parent.tilesPerSide;
+		this.generation = parent.generation;
+		this.tiles = parent.tiles.clone();
+		for (Tile tile : tiles) tile.retain();
+	}
+
+	/**
+	 * Creates a board sharing every tile of this board, at the same
+	 * generation.
+	 *
+	 * @return New board.
+	 */
+	public CowLife fork() {
+		return new CowLife(this);
+	}
+
+	/**
+	 * Calculates the next generation.
+	 */
+	public void age() {
+		Tile[] nextTiles = new Tile[tiles.length];
+		for (int ty = 0; ty < tilesPerSide; ty++) {
+			for (int tx = 0; tx < tilesPerSide; tx++) {
+				nextTiles[ty * tilesPerSide + tx] = ageTile(tx, ty);
+			}
+		}
+
+		/* Old tiles no longer held by this board */
+		for (Tile tile : tiles) tile.release();
+		tiles = nextTiles;
+		generation++;
+	}
+
+	/**
+	 * Calculates the next generation of a tile.
+	 *
+	 * @param tx x position of the tile.
+	 * @param ty y position of the tile.
+	 * @return Tile of the next generation, holding a reference for the
+	 * caller.
+	 */
+	private Tile ageTile(int tx, int ty) {
+		final int left = (tx + tilesPerSide - 1) % tilesPerSide;
+		final int right = (tx + 1) % tilesPerSide;
+		final int up = (ty + tilesPerSide - 1) % tilesPerSide;
+		final int down = (ty + 1) % tilesPerSide;
+		final Tile centre = tile(tx, ty);
+
+		/* Nothing is born next to nothing */
+		if (isEmpty(left, tx, right, up) && isEmpty(left, tx, right, ty) &&
+				isEmpty(left, tx, right, down)) {
+			return Tile.EMPTY.retain();
+		}
+
+		/* Gather the rows above, of and below the tile, with wrapping */
+		fillRow(0, tile(left, up), tile(tx, up), tile(right, up),
+				TILE_DIM - 1);
+		for (int r = 0; r < TILE_DIM; r++) {
+			fillRow(r + 1, tile(left, ty), centre, tile(right, ty), r);
+		}
+		fillRow(TILE_DIM + 1, tile(left, down), tile(tx, down),
+				tile(right, down), 0);
+
+		/* Neighbours are the rows around, shifted by a cell either way */
+		long aboveW, above, aboveE, midW, mid, midE, belowW, below, belowE;
+		boolean same = true, none = true;
+		int i;
+		for (int r = 0; r < TILE_DIM; r++) {
+			i = r * 3;
+			above = window[i + 1];
+			aboveW = (above << 1) | (window[i] >>> 63);
+			aboveE = (above >>> 1) | (window[i + 2] << 63);
+			mid = window[i + 4];
+			midW = (mid << 1) | (window[i + 3] >>> 63);
+			midE = (mid >>> 1) | (window[i + 5] << 63);
+			below = window[i + 7];
+			belowW = (below << 1) | (window[i + 6] >>> 63);
+			belowE = (below >>> 1) | (window[i + 8] << 63);
+
+			next[r] = EnsembleLife.rule(mid, aboveW, above, aboveE, midW,
+					midE, belowW, below, belowE);
+			same &= (next[r] == mid);
+			none &= (next[r] == 0);
+		}
+
+		/* Share rather than copy where nothing changed */
+		if (none) return Tile.EMPTY.retain();
+		if (same) return centre.retain();
+		return new Tile(next.clone());
+	}
+
+	/**
+	 * Fills a row of the window from a row of a tile and its neighbours.
+	 *
+	 * @param row Row of the window.
+	 * @param left Tile to the left.
+	 * @param centre Tile.
+	 * @param right Tile to the right.
+	 * @param r Row of the tiles.
+	 */
+	private void fillRow(int row, Tile left, Tile centre, Tile right, int r) {
+		window[row * 3] = left.rows[r];
+		window[row * 3 + 1] = centre.rows[r];
+		window[row * 3 + 2] = right.rows[r];
+	}
+
+	/**
+	 * Tests whether three tiles of a row of tiles are empty.
+	 *
+	 * @param left x position of the left tile.
+	 * @param tx x position of the middle tile.
+	 * @param right x position of the right tile.
+	 * @param ty y position of the tiles.
+	 * @return True if all three are {@link Tile#EMPTY}.
+	 */
+	private boolean isEmpty(int left, int tx, int right, int ty) {
+		return (tile(left, ty) == Tile.EMPTY) && (tile(tx, ty) == Tile.EMPTY) &&
+				(tile(right, ty) == Tile.EMPTY);
+	}
+
+	/**
+	 * Gets a tile.
+	 *
+	 * @param tx x position of the tile.
+	 * @param ty y position of the tile.
+	 * @return Tile.
+	 */
+	Tile tile(int tx, int ty) {
+		return tiles[ty * tilesPerSide + tx];
+	}
+
+	/**
+	 * Sets a cell, copying its tile first if another board shares it.
+	 *
+	 * @param x x position of the cell. Wraps at the edges of the board.
+	 * @param y y position of the cell. Wraps at the edges of the board.
+	 * @param alive Whether the cell is alive.
+	 */
+	public void setCell(int x, int y, boolean alive) {
+		x = ((x % boardDim) + boardDim) % boardDim;
+		y = ((y % boardDim) + boardDim) % boardDim;
+		final int t = (y / TILE_DIM) * tilesPerSide + x / TILE_DIM;
+		final long bit = 1L << x;
+		Tile tile = tiles[t];
+		if (((tile.rows[y % TILE_DIM] & bit) != 0) == alive) return;
+
+		if (tile.isShared()) {
+			Tile copy = new Tile(tile.rows.clone());
+			tile.release();
+			tiles[t] = tile = copy;
+		}
+		tile.rows[y % TILE_DIM] ^= bit;
+	}
+
+	/**
+	 * Tests whether a cell is alive.
+	 *
+	 * @param x x position of the cell.
+	 * @param y y position of the cell.
+	 * @return True if the cell is alive.
+	 */
+	public boolean isAlive(int x, int y) {
+		return (tiles[(y / TILE_DIM) * tilesPerSide + x / TILE_DIM]
+				.rows[y % TILE_DIM] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Loads a pattern onto the board, in the format of
+	 * {@link Life#loadPattern(InputStream)}.
+	 *
+	 * @param in Input stream to read the pattern from.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if format of pattern is incorrect.
+	 */
+	public void loadPattern(InputStream in)
+			throws IOException, FileFormatException {
+		Stamp stamp = Stamp.parse(in);
+		if ((stamp.getWidth() > boardDim) || (stamp.getHeight() > boardDim)) {
+			throw new FileFormatException(
+					"Input pattern is larger than board size");
+		}
+		for (int y = 0; y < stamp.getHeight(); y++) {
+			for (int x = 0; x < stamp.getWidth(); x++) {
+				if (stamp.isAlive(x, y)) {
+					setCell(stamp.getX() + x, stamp.getY() + y, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the current board of a {@link Life}.
+	 *
+	 * @param life Life to copy from. Must have the same board dimension.
+	 */
+	public void loadBoard(Life life) {
+		if (life.boardDim != boardDim) {
+			throw new IllegalArgumentException("Board dimensions differ");
+		}
+		for (int y = 0; y < boardDim; y++) {
+			for (int x = 0; x < boardDim; x++) {
+				setCell(x, y, life.isAlive(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Counts the living cells of the board.
+	 *
+	 * @return Population of the board.
+	 */
+	public long population() {
+		long population = 0;
+		for (Tile tile : tiles) {
+			if (tile == Tile.EMPTY) continue;
+			for (long row : tile.rows) population += Long.bitCount(row);
+		}
+		return population;
+	}
+
+	/**
+	 * Counts the tiles this board shares with another board at the same
+	 * position, empty tiles included.
+	 *
+	 * @param other Other board.
+	 * @return Number of tiles held by both boards.
+	 */
+	public int countShared(CowLife other) {
+		int shared = 0;
+		for (int t = 0; t < tiles.length; t++) {
+			if (tiles[t] == other.tiles[t]) shared++;
+		}
+		return shared;
+	}
+
+	/**
+	 * Gets the number of tiles of the board.
+	 *
+	 * @return Tiles per side squared.
+	 */
+	public int getTileCount() {
+		return tiles.length;
+	}
+
+	/**
+	 * Gets the dimension of the board.
+	 *
+	 * @return Size of board dimension.
+	 */
+	public int getBoardDim() {
+		return boardDim;
+	}
+
+	/**
+	 * Gets the number of generations computed.
+	 *
+	 * @return Generation number, counted from the first board forked from.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Releases the tiles of this board, which must not be used after.
+	 */
+	public void cleanUp() {
+		for (Tile tile : tiles) tile.release();
+		tiles = new Tile[0];
+	}
+
+	/**
+	 * Tile of 64 x 64 cells, written only while held by one board.
+	 */
+	static final class Tile {
+		/** The empty tile, shared by every board and never written. */
+		static final Tile EMPTY = new Tile(new long[TILE_DIM]);
+
+		/* Rows, bit x being cell x */
+		final long[] rows;
+
+		/* Boards holding the tile */
+		private final AtomicInteger refs = new AtomicInteger(1);
+
+		/**
+		 * Constructor. The tile starts held by the board creating it.
+		 *
+		 * @param rows Rows of the tile.
+		 */
+		Tile(long[] rows) {
+			this.rows = rows;
+		}
+
+		/**
+		 * Adds a reference.
+		 *
+		 * @return This tile.
+		 */
+		Tile retain() {
+			if (this != EMPTY) refs.incrementAndGet();
+			return this;
+		}
+
+		/**
+		 * Drops a reference.
+		 */
+		void release() {
+			if (this != EMPTY) refs.decrementAndGet();
+		}
+
+		/**
+		 * Tests whether another board may hold the tile.
+		 *
+		 * @return True if the tile must be copied before being written.
+		 */
+		boolean isShared() {
+			return (this == EMPTY) || (refs.get() > 1);
+		}
+
+		/**
+		 * Gets the number of boards holding the tile.
+		 *
+		 * @return Reference count.
+		 */
+		int getRefs() {
+			return refs.get();
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+/* ************************************************************************* *
+ * Name:		Delta.java
+ * Description:	Run-length encoded set of cells which flipped in a generation.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The cells which flipped (were born or died) in one generation of a
+ * {@link Life}.
+ * <p>
+ * Cells are identified by their position <code>y * boardDim + x</code>,
+ * where x and y are 0 based board coordinates (i.e. excluding the wrapped
+ * edges). Flipped cells are stored as runs of consecutive positions within a
+ * row, so a delta of a sparse board is only a few kilobytes.
+ * <p>
+ * Deltas are filled in by the workers computing a generation and are not
+ * modified once handed to a {@link DeltaListener}, so they may be passed to
+ * other threads.
+ *
+ * @author Campbell Lockley
+ */
+public class Delta {
+	/* Generation this delta produces and board it belongs to */
+	private final long generation;
+	private final int boardDim;
+
+	/* Runs added by each worker: position, length, position, length, ... */
+	private final List<int[]> chunks = new ArrayList<int[]>();
+	private int[] runs;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param generation Generation that applying this delta produces.
+	 * @param boardDim Size of board dimension.
+	 */
+	public Delta(long generation, int boardDim) {
+		this.generation = generation;
+		this.boardDim = boardDim;
+	}
+
+	/**
+	 * Constructor for a delta with its runs already known.
+	 *
+	 * @param generation Generation that applying this delta produces.
+	 * @param boardDim Size of board dimension.
+	 * @param runs Runs as position, length pairs, sorted by position.
+	 */
+	public Delta(long generation, int boardDim, int[] runs) {
+		this(generation, boardDim);
+		this.runs = runs;
+	}
+
+	/**
+	 * Adds runs of flipped cells. Called by workers once they have finished
+	 * their part of the board.
+	 *
+	 * @param runs Runs as position, length pairs.
+	 * @param length Number of ints of runs[] in use.
+	 */
+	synchronized void add(int[] runs, int length) {
+		if (length > 0) chunks.add(Arrays.copyOf(runs, length));
+	}
+
+	/**
+	 * Flips cells in the delta, so cells already in it are removed and others 
+	 * are added. Used for cells changed after they were computed, such as by 
+	 * mutations applied between generations.
+	 *
+	 * @param positions Positions of cells to flip, in any order. A cell 
+	 * appearing twice is flipped twice.
+	 * @param count Number of positions in use.
+	 */
+	synchronized void toggle(int[] positions, int count) {
+		int[] current = getRuns();
+		int[] toggles = Arrays.copyOf(positions, count);
+		Arrays.sort(toggles);
+
+		/* Expand the runs into cells */
+		int[] cells = new int[size()];
+		int length = 0;
+		for (int i = 0; i < current.length; i += 2) {
+			for (int j = 0; j < current[i + 1]; j++) {
+				cells[length++] = current[i] + j;
+			}
+		}
+
+		/* Symmetric difference with cells toggled an odd number of times */
+		int[] merged = new int[length + count];
+		int size = 0, a = 0, b = 0, p, n;
+		while (b < count) {
+			p = toggles[b];
+			for (n = 0; (b < count) && (toggles[b] == p); b++) n++;
+			while ((a < length) && (cells[a] < p)) merged[size++] = cells[a++];
+			boolean present = (a < length) && (cells[a] == p);
+			if (present) a++;
+			if (present != (n % 2 == 1)) merged[size++] = p;
+		}
+		while (a < length) merged[size++] = cells[a++];
+
+		/* Rebuild runs, which don't cross rows */
+		int[] rebuilt = new int[size * 2];
+		int runsLength = 0;
+		for (int i = 0; i < size; i++) {
+			p = merged[i];
+			if ((runsLength > 0) && (p % boardDim != 0) && 
+					(rebuilt[runsLength - 2] + rebuilt[runsLength - 1] == p)) {
+				rebuilt[runsLength - 1]++;
+			} else {
+				rebuilt[runsLength++] = p;
+				rebuilt[runsLength++] = 1;
+			}
+		}
+		runs = Arrays.copyOf(rebuilt, runsLength);
+	}
+
+	/**
+	 * Gets the generation that applying this delta produces.
+	 *
+	 * @return Generation number.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Gets the dimension of the board this delta belongs to.
+	 *
+	 * @return Size of board dimension.
+	 */
+	public int getBoardDim() {
+		return boardDim;
+	}
+
+	/**
+	 * Gets the runs of flipped cells in raster order.
+	 *
+	 * @return Runs as position, length pairs, sorted by position. Must not be
+	 * modified.
+	 */
+	public synchronized int[] getRuns() {
+		if (runs == null) {
+			/* Pack each run into a long so they sort by position */
+			int count = 0;
+			for (int[] chunk : chunks) count += chunk.length / 2;
+			long[] packed = new long[count];
+			int i = 0;
+			for (int[] chunk : chunks) {
+				for (int j = 0; j < chunk.length; j += 2) {
+					packed[i++] = ((long) chunk[j] << 32) | chunk[j + 1];
+				}
+			}
+			Arrays.sort(packed);
+
+			runs = new int[count * 2];
+			for (i = 0; i < count; i++) {
+				runs[2 * i] = (int) (packed[i] >>> 32);
+				runs[2 * i + 1] = (int) packed[i];
+			}
+			chunks.clear();
+		}
+		return runs;
+	}
+
+	/**
+	 * Counts the flipped cells.
+	 *
+	 * @return Number of cells which were born or died.
+	 */
+	public int size() {
+		int[] runs = getRuns();
+		int size = 0;
+		for (int i = 1; i < runs.length; i += 2) size += runs[i];
+		return size;
+	}
+
+	/**
+	 * Calls the visitor with every flipped cell, in raster order.
+	 *
+	 * @param visitor Visitor to call.
+	 */
+	public void forEach(Visitor visitor) {
+		int[] runs = getRuns();
+		for (int i = 0; i < runs.length; i += 2) {
+			int y = runs[i] / boardDim, x = runs[i] % boardDim;
+			for (int j = 0; j < runs[i + 1]; j++) visitor.flipped(x + j, y);
+		}
+	}
+
+	/**
+	 * Applies this delta to a board laid out as in {@link Life}, flipping
+	 * every cell in the delta. Edges are not copied.
+	 *
+	 * @param board Board holding the previous generation.
+	 */
+	public void apply(char[] board) {
+		int[] runs = getRuns();
+		for (int i = 0; i < runs.length; i += 2) {
+			int y = runs[i] / boardDim, x = runs[i] % boardDim;
+			int index = (y + 1) * (boardDim + 2) + x + 1;
+			for (int j = index; j < index + runs[i + 1]; j++) {
+				board[j] = (board[j] == Life.ALIVE) ? Life.DEAD : Life.ALIVE;
+			}
+		}
+	}
+
+	/**
+	 * Receives the cells of a {@link Delta}.
+	 */
+	public interface Visitor {
+		/**
+		 * Called for a cell which flipped.
+		 *
+		 * @param x x position of the cell, 0 based.
+		 * @param y y position of the cell, 0 based.
+		 */
+		void flipped(int x, int y);
+	}
+
+}
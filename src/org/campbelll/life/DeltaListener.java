@@ -0,0 +1,28 @@
+/* ************************************************************************* *
+ * Name:		DeltaListener.java
+ * Description:	Callback for the cells which flipped in each generation.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+/**
+ * Receives a {@link Delta} for every generation computed by a {@link Life}.
+ * <p>
+ * Register with {@link Life#addDeltaListener(DeltaListener)}.
+ *
+ * @author Campbell Lockley
+ */
+public interface DeltaListener {
+
+	/**
+	 * Called once a generation has been computed and the boards swapped.
+	 * <p>
+	 * Called on the thread which called {@link Life#age()}, so implementations
+	 * which do slow work should hand the delta to another thread.
+	 *
+	 * @param delta Cells which flipped in the generation.
+	 */
+	void generationComputed(Delta delta);
+
+}
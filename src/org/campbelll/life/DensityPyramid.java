@@ -0,0 +1,313 @@
+/* ************************************************************************* *
+ * Name:		DensityPyramid.java
+ * Description:	Live cell counts of a board at several resolutions.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Live cell counts of one generation of a {@link Life} board, at several
+ * resolutions.
+ * <p>
+ * Level k of the pyramid holds the number of living cells in each
+ * 2<sup>k</sup> x 2<sup>k</sup> block of the board, so level 1 counts 2 x 2
+ * blocks and level 10 counts 1024 x 1024 blocks. Each level is as many
+ * blocks wide and high as it takes to cover the board, so a level of a
+ * rectangular board is rectangular too. Blocks at the right and bottom of a
+ * board whose dimensions are not a multiple of the block size are clipped to
+ * the board.
+ * <p>
+ * Level 1 is counted from the board, in parallel if a thread pool is given,
+ * and every other level is summed from the level below. Counts are kept in
+ * the narrowest type which holds a whole block, bytes up to level
+ * {@link #BYTE_LEVELS} and shorts up to level {@link #SHORT_LEVELS}, so level
+ * 1 takes a quarter of a byte per cell rather than an int per 2 x 2 block.
+ * Get a pyramid with {@link Life#getDensityPyramid()}, which caches it until
+ * the board changes and reuses its arrays for the next one.
+ *
+ * @author Campbell Lockley
+ */
+public class DensityPyramid {
+	/** Default number of levels, giving 1024 x 1024 blocks at the top. */
+	public final static int DEFAULT_LEVELS = 10;
+	/** Highest level counted in bytes, whose blocks hold at most 64 cells. */
+	public final static int BYTE_LEVELS = 3;
+	/** Highest level counted in shorts, whose blocks hold at most 16384. */
+	public final static int SHORT_LEVELS = 7;
+
+	/* Generation counted and size of board */
+	private final long generation;
+	private final int boardDim, boardHeight;
+
+	/*
+	 * Counts of each level, indexed [level - 1][by * width + bx]. Only the
+	 * array of the level's type is set.
+	 */
+	private final byte[][] bytes;
+	private final short[][] shorts;
+	private final int[][] ints;
+	private final int[] widths, heights;
+
+	/**
+	 * Constructor. Counts the living cells of a board.
+	 *
+	 * @param life Life whose current board is counted.
+	 * @param levels Number of levels to build.
+	 * @param pool Thread pool to count level 1 with, or null to count on the
+	 * calling thread.
+	 * @throws TimeoutException if counting with the thread pool times out or 
+	 * is interrupted.
+	 */
+	public DensityPyramid(Life life, int levels, ExecutorService pool)
+			throws TimeoutException {
+		this(life, levels, pool, null);
+	}
+
+	/**
+	 * Constructor which reuses the arrays of an older pyramid of the same
+	 * board, if it has the same levels. The older pyramid's counts are
+	 * overwritten and it must not be used again.
+	 *
+	 * @param life Life whose current board is counted.
+	 * @param levels Number of levels to build.
+	 * @param pool Thread pool to count level 1 with, or null to count on the
+	 * calling thread.
+	 * @param recycled Older pyramid whose arrays are reused, or null.
+	 * @throws TimeoutException if counting with the thread pool times out or 
+	 * is interrupted.
+	 */
+	public DensityPyramid(final Life life, int levels, ExecutorService pool,
+			DensityPyramid recycled) throws TimeoutException {
+		this.generation = life.generation;
+		this.boardDim = life.boardDim;
+		this.boardHeight = life.boardHeight;
+
+		/* Stop once a single block covers the longer side of the board */
+		final int side = Math.max(boardDim, boardHeight);
+		int maxLevels = 1;
+		while ((1 << maxLevels) < side) maxLevels++;
+		levels = Math.max(1, Math.min(levels, maxLevels));
+		if ((recycled != null) && (recycled.boardDim == boardDim) &&
+				(recycled.boardHeight == boardHeight) &&
+				(recycled.getLevels() == levels)) {
+			this.bytes = recycled.bytes;
+			this.shorts = recycled.shorts;
+			this.ints = recycled.ints;
+			this.widths = recycled.widths;
+			this.heights = recycled.heights;
+			for (int level = 1; level <= levels; level++) {
+				if (level <= BYTE_LEVELS) {
+					Arrays.fill(bytes[level - 1], (byte) 0);
+				} else if (level <= SHORT_LEVELS) {
+					Arrays.fill(shorts[level - 1], (short) 0);
+				} else {
+					Arrays.fill(ints[level - 1], 0);
+				}
+			}
+		} else {
+			this.bytes = new byte[levels][];
+			this.shorts = new short[levels][];
+			this.ints = new int[levels][];
+			this.widths = new int[levels];
+			this.heights = new int[levels];
+			for (int level = 1; level <= levels; level++) {
+				int size = 1 << level;
+				widths[level - 1] = (boardDim + size - 1) / size;
+				heights[level - 1] = (boardHeight + size - 1) / size;
+				int blocks = widths[level - 1] * heights[level - 1];
+				if (level <= BYTE_LEVELS) {
+					bytes[level - 1] = new byte[blocks];
+				} else if (level <= SHORT_LEVELS) {
+					shorts[level - 1] = new short[blocks];
+				} else {
+					ints[level - 1] = new int[blocks];
+				}
+			}
+		}
+
+		/* Count level 1 from the board, a band of rows per job */
+		final int height = heights[0];
+		if (pool == null) {
+			countRows(life, 0, height);
+		} else {
+			List<Callable<Object>> jobs = new ArrayList<Callable<Object>>();
+			final int bandHeight = Math.max(1, height / 64);
+			for (int row = 0; row < height; row += bandHeight) {
+				final int first = row;
+				final int last = Math.min(height, row + bandHeight);
+				jobs.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						countRows(life, first, last);
+						return null;	// Nothing to return
+					}
+				});
+			}
+			try {
+				for (Future<Object> future : pool.invokeAll(jobs,
+						ParallelLife.timeout, TimeUnit.MILLISECONDS)) {
+					if (future.isCancelled()) {
+						throw new TimeoutException(
+								"Counting density pyramid timed out");
+					}
+				}
+			} catch (InterruptedException e) {
+				/* Some bands may not be counted, so there is no pyramid */
+				Thread.currentThread().interrupt();
+				throw new TimeoutException(
+						"Interrupted while counting density pyramid");
+			}
+		}
+
+		/* Sum each level from the one below */
+		for (int level = 2; level <= levels; level++) {
+			int belowWidth = widths[level - 2], aboveWidth = widths[level - 1];
+			for (int by = 0; by < heights[level - 2]; by++) {
+				for (int bx = 0; bx < belowWidth; bx++) {
+					add(level, (by / 2) * aboveWidth + bx / 2,
+							count(level - 1, by * belowWidth + bx));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets a count from the array of its level.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @param i Index of the block in the level.
+	 * @return Number of living cells.
+	 */
+	private int count(int level, int i) {
+		if (level <= BYTE_LEVELS) return bytes[level - 1][i];
+		if (level <= SHORT_LEVELS) return shorts[level - 1][i];
+		return ints[level - 1][i];
+	}
+
+	/**
+	 * Adds to a count in the array of its level.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @param i Index of the block in the level.
+	 * @param n Number of living cells to add.
+	 */
+	private void add(int level, int i, int n) {
+		if (level <= BYTE_LEVELS) {
+			bytes[level - 1][i] += n;
+		} else if (level <= SHORT_LEVELS) {
+			shorts[level - 1][i] += n;
+		} else {
+			ints[level - 1][i] += n;
+		}
+	}
+
+	/**
+	 * Counts living cells into rows of level 1.
+	 *
+	 * @param life Life whose current board is counted.
+	 * @param first First level 1 row to count.
+	 * @param last Level 1 row to stop before.
+	 */
+	private void countRows(Life life, int first, int last) {
+		final byte[] level1 = bytes[0];
+		final int width = widths[0];
+		final char[] board = life.board;
+		for (int y = first * 2; y < Math.min(boardHeight, last * 2); y++) {
+			for (int x = 0; x < boardDim; x++) {
+				if (board[life.cellIndex(x, y)] == Life.ALIVE) {
+					level1[(y / 2) * width + x / 2]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the generation these counts are of.
+	 *
+	 * @return Generation number.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Gets the number of levels in the pyramid.
+	 *
+	 * @return Number of the top level.
+	 */
+	public int getLevels() {
+		return widths.length;
+	}
+
+	/**
+	 * Gets the number of blocks across a level.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @return Width of the level in blocks.
+	 */
+	public int getWidth(int level) {
+		return widths[level - 1];
+	}
+
+	/**
+	 * Gets the number of blocks down a level.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @return Height of the level in blocks.
+	 */
+	public int getHeight(int level) {
+		return heights[level - 1];
+	}
+
+	/**
+	 * Gets the number of living cells in a block.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @param bx x position of the block in the level.
+	 * @param by y position of the block in the level.
+	 * @return Number of living cells.
+	 */
+	public int getCount(int level, int bx, int by) {
+		return count(level, by * widths[level - 1] + bx);
+	}
+
+	/**
+	 * Gets the fraction of cells in a block which are alive. Clipped blocks
+	 * are divided by the area inside the board.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @param bx x position of the block in the level.
+	 * @param by y position of the block in the level.
+	 * @return Density between 0 and 1.
+	 */
+	public double getDensity(int level, int bx, int by) {
+		int size = 1 << level;
+		int width = Math.min(size, boardDim - bx * size);
+		int height = Math.min(size, boardHeight - by * size);
+		return getCount(level, bx, by) / (double) (width * height);
+	}
+
+	/**
+	 * Gets the counts of a whole level.
+	 *
+	 * @param level Level, from 1 to {@link #getLevels()}.
+	 * @return Copy of the counts, indexed by 
+	 * <code>by * getWidth(level) + bx</code>.
+	 */
+	public int[] getCounts(int level) {
+		int[] counts = new int[widths[level - 1] * heights[level - 1]];
+		for (int i = 0; i < counts.length; i++) counts[i] = count(level, i);
+		return counts;
+	}
+
+}
@@ -0,0 +1,363 @@
+/* ************************************************************************* *
+ * Name:		EnsembleLife.java
+ * Description:	Bit-sliced implementation of game of life which runs 64
+ * 				independent boards at once.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bit-sliced ensemble of 64 independent Game of Life boards of the same size.
+ * <p>
+ * Each cell of the board is a long, and bit i of the long is the state of
+ * that cell on board (slice) i. One pass of full adder logic over the longs
+ * advances all 64 boards, so rule and soup sweeps of small boards run 64 at
+ * a time instead of one {@link SequentialLife} after another.
+ * <p>
+ * Boards are laid out as in {@link Life}, with the edges copied to the
+ * opposite side to handle wrapping.
+ *
+ * @author Campbell Lockley
+ */
+public class EnsembleLife {
+	/** Number of boards run at once. */
+	public final static int SLICES = 64;
+
+	/* Boards, one bit per slice, and generation number */
+	protected long[] board;
+	protected long[] nextGen;
+	protected final int boardDim;
+	protected long generation;
+
+	/**
+	 * Constructor. Every board starts empty.
+	 *
+	 * @param boardDim Size of board dimension.
+	 */
+	public EnsembleLife(int boardDim) {
+		this.boardDim = boardDim;
+		this.board = new long[(boardDim + 2) * (boardDim + 2)];
+		this.nextGen = new long[(boardDim + 2) * (boardDim + 2)];
+	}
+
+	/**
+	 * Calculates the next generation of all 64 boards.
+	 */
+	public void age() {
+		final int stride = boardDim + 2;
+		int index;
+		for (int y = 1; y <= boardDim; y++) {
+			index = y * stride;
+			for (int x = 1; x <= boardDim; x++) {
+				nextGen[index + x] = rule(board[index + x],
+						board[index + x - stride - 1],
+						board[index + x - stride],
+						board[index + x - stride + 1],
+						board[index + x - 1],
+						board[index + x + 1],
+						board[index + x + stride - 1],
+						board[index + x + stride],
+						board[index + x + stride + 1]);
+			}
+		}
+
+		/* Copy edges to handle wrapping */
+		copyEdges(nextGen);
+
+		/* Swap boards over */
+		long[] tmp = board;
+		board = nextGen;
+		nextGen = tmp;
+		generation++;
+	}
+
+	/**
+	 * Applies the rules of Life to 64 cells at once.
+	 * <p>
+	 * The 8 neighbours are summed with full and half adders into ones, twos
+	 * and "four or more" bits. A cell lives if it has 3 neighbours, or 2 and
+	 * is already alive.
+	 *
+	 * @param alive Current state of the cells.
+	 * @param n0 First neighbour.
+	 * @param n1 Second neighbour.
+	 * @param n2 Third neighbour.
+	 * @param n3 Fourth neighbour.
+	 * @param n4 Fifth neighbour.
+	 * @param n5 Sixth neighbour.
+	 * @param n6 Seventh neighbour.
+	 * @param n7 Eighth neighbour.
+	 * @return Next state of the cells.
+	 */
+	static long rule(long alive, long n0, long n1, long n2, long n3,
+			long n4, long n5, long n6, long n7) {
+		/* Sum neighbours in groups of 3, 3 and 2 */
+		long s0 = n0 ^ n1 ^ n2;
+		long c0 = (n0 & n1) | (n2 & (n0 ^ n1));
+		long s1 = n3 ^ n4 ^ n5;
+		long c1 = (n3 & n4) | (n5 & (n3 ^ n4));
+		long s2 = n6 ^ n7;
+		long c2 = n6 & n7;
+
+		/* Ones bit, and carry into twos */
+		long ones = s0 ^ s1 ^ s2;
+		long c3 = (s0 & s1) | (s2 & (s0 ^ s1));
+
+		/* Twos bit, and any carry into fours */
+		long t = c0 ^ c1 ^ c2;
+		long c4 = (c0 & c1) | (c2 & (c0 ^ c1));
+		long twos = t ^ c3;
+		long fours = c4 | (t & c3);
+
+		return twos & ~fours & (ones | alive);
+	}
+
+	/**
+	 * Copies edges of board to facilitate wrapping.
+	 *
+	 * @param board Board to perform edge copies on.
+	 */
+	protected void copyEdges(long[] board) {
+		final int stride = boardDim + 2;
+		/* Copy last row to top and first row to bottom */
+		System.arraycopy(board, boardDim * stride, board, 0, stride);
+		System.arraycopy(board, stride, board, (boardDim + 1) * stride,
+				stride);
+		/* Copy right most column to left and left most column to right */
+		for (int y = 0; y < stride; y++) {
+			board[y * stride] = board[y * stride + boardDim];
+			board[y * stride + boardDim + 1] = board[y * stride + 1];
+		}
+	}
+
+	/**
+	 * Gets the dimension of every board.
+	 *
+	 * @return Size of board dimension.
+	 */
+	public int getBoardDim() {
+		return boardDim;
+	}
+
+	/**
+	 * Gets the number of generations computed since construction.
+	 *
+	 * @return Generation number of the boards.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Sets the state of a cell of one board.
+	 *
+	 * @param slice Board to change, from 0 to 63.
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @param alive New state of the cell.
+	 */
+	public void setCell(int slice, int x, int y, boolean alive) {
+		int index = (y + 1) * (boardDim + 2) + x + 1;
+		if (alive) {
+			board[index] |= 1L << slice;
+		} else {
+			board[index] &= ~(1L << slice);
+		}
+		copyEdges(board);
+	}
+
+	/**
+	 * Tests whether a cell of one board is alive.
+	 *
+	 * @param slice Board to test, from 0 to 63.
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @return True if the cell is alive.
+	 */
+	public boolean isAlive(int slice, int x, int y) {
+		return (board[(y + 1) * (boardDim + 2) + x + 1] & (1L << slice)) != 0;
+	}
+
+	/**
+	 * Clears one board.
+	 *
+	 * @param slice Board to clear, from 0 to 63.
+	 */
+	public void clear(int slice) {
+		final long mask = ~(1L << slice);
+		for (int i = 0; i < board.length; i++) board[i] &= mask;
+	}
+
+	/**
+	 * Fills one board with a random soup.
+	 *
+	 * @param slice Board to fill, from 0 to 63.
+	 * @param seed Seed of the soup.
+	 * @param density Chance of each cell being alive.
+	 */
+	public void randomise(int slice, long seed, double density) {
+		randomise(slice, seed, density, 0, 0, boardDim, boardDim);
+	}
+
+	/**
+	 * Fills a region of one board with a random soup, leaving the rest of
+	 * the board alone.
+	 *
+	 * @param slice Board to fill, from 0 to 63.
+	 * @param seed Seed of the soup.
+	 * @param density Chance of each cell being alive.
+	 * @param left x position of the left of the region, 0 based.
+	 * @param top y position of the top of the region, 0 based.
+	 * @param width Width of the region.
+	 * @param height Height of the region.
+	 */
+	public void randomise(int slice, long seed, double density, int left,
+			int top, int width, int height) {
+		final long bit = 1L << slice;
+		Random random = new Random(seed);
+		int index;
+		for (int y = top + 1; y <= top + height; y++) {
+			index = y * (boardDim + 2);
+			for (int x = left + 1; x <= left + width; x++) {
+				if (random.nextDouble() < density) {
+					board[index + x] |= bit;
+				} else {
+					board[index + x] &= ~bit;
+				}
+			}
+		}
+		copyEdges(board);
+	}
+
+	/**
+	 * Loads a pattern onto one board, in the format used by
+	 * {@link Life#loadPattern(InputStream)}.
+	 *
+	 * @param slice Board to load the pattern onto, from 0 to 63.
+	 * @param in Input stream to load the pattern from.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if format of pattern in the InputStream is
+	 * incorrect, or the pattern is larger than the board.
+	 */
+	public void loadPattern(int slice, InputStream in)
+			throws IOException, FileFormatException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(in));
+		try {
+			String[] tokens = br.readLine().split(" ");
+			int xStart = Integer.parseInt(tokens[0]);
+			int yStart = Integer.parseInt(tokens[1]);
+
+			/* Populate board from input stream */
+			String line;
+			for (int y = yStart; (line = br.readLine()) != null; y++) {
+				for (int x = 0; x < line.length(); x++) {
+					if (line.charAt(x) == ' ') continue;
+					if ((xStart + x >= boardDim) || (y >= boardDim)) {
+						throw new FileFormatException(
+								"Input pattern is larger than board size");
+					}
+					board[(y + 1) * (boardDim + 2) + xStart + x + 1] |=
+							1L << slice;
+				}
+			}
+			copyEdges(board);
+		} catch (NumberFormatException e) {
+			throw new FileFormatException("Invalid pattern start position");
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * Copies the current board of a {@link Life} onto one board.
+	 *
+	 * @param slice Board to copy onto, from 0 to 63.
+	 * @param life Life to copy from. Must have the same board dimension.
+	 */
+	public void loadBoard(int slice, Life life) {
+		if (life.boardDim != boardDim) {
+			throw new IllegalArgumentException("Board dimensions differ");
+		}
+		final long bit = 1L << slice;
+		for (int y = 0; y < boardDim; y++) {
+			for (int x = 0; x < boardDim; x++) {
+				int index = (y + 1) * (boardDim + 2) + x + 1;
+				if (life.isAlive(x, y)) {
+					board[index] |= bit;
+				} else {
+					board[index] &= ~bit;
+				}
+			}
+		}
+		copyEdges(board);
+	}
+
+	/**
+	 * Extracts one board laid out as in {@link Life}, with edges copied.
+	 *
+	 * @param slice Board to extract, from 0 to 63.
+	 * @return New board array of {@link Life#ALIVE} and {@link Life#DEAD}.
+	 */
+	public char[] extractBoard(int slice) {
+		char[] result = new char[board.length];
+		for (int i = 0; i < board.length; i++) {
+			result[i] = ((board[i] >>> slice) & 1) != 0 ?
+					Life.ALIVE : Life.DEAD;
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the living cells of every board in a single pass.
+	 *
+	 * @return Population of each board, indexed by slice.
+	 */
+	public long[] populations() {
+		long[] populations = new long[SLICES];
+		long cells;
+		int index;
+		for (int y = 1; y <= boardDim; y++) {
+			index = y * (boardDim + 2);
+			for (int x = 1; x <= boardDim; x++) {
+				cells = board[index + x];
+				while (cells != 0) {
+					populations[Long.numberOfTrailingZeros(cells)]++;
+					cells &= cells - 1;
+				}
+			}
+		}
+		return populations;
+	}
+
+	/**
+	 * Copies the raw bit-sliced board, without edges.
+	 *
+	 * @return Cells indexed by <code>y * boardDim + x</code>, bit i of each
+	 * being the cell of board i.
+	 */
+	public long[] getCells() {
+		long[] cells = new long[boardDim * boardDim];
+		for (int y = 0; y < boardDim; y++) {
+			System.arraycopy(board, (y + 1) * (boardDim + 2) + 1,
+					cells, y * boardDim, boardDim);
+		}
+		return cells;
+	}
+
+	/**
+	 * Clears every board.
+	 */
+	public void clearAll() {
+		Arrays.fill(board, 0);
+		Arrays.fill(nextGen, 0);
+	}
+
+}
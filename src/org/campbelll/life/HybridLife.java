@@ -0,0 +1,305 @@
+/* ************************************************************************* *
+ * Name:		HybridLife.java
+ * Description:	Sequential implementation of game of life which switches
+ * 				between dense and sparse representations of the board.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hybrid dense and sparse implementation of {@link Life}.
+ * <p>
+ * While the board is dense every cell is computed with
+ * {@link #ageBlock(int, int, int)}, as in {@link SequentialLife}. Once the
+ * board has decayed below {@link #getSparseBelow()} live cells, the live
+ * cells are kept as a sorted array of positions and each generation
+ * only visits the cells around them: every live cell adds the positions of
+ * its 3 x 3 neighbourhood to a candidate array, which is sorted so the
+ * number of times a position appears is the sum used by the rules in
+ * {@link SlidingColumnKernel}. If the board grows above
+ * {@link #getDenseAbove()} live cells it goes back to being computed densely.
+ * The gap between the two thresholds stops it switching back and forth every
+ * generation.
+ * <p>
+ * Cells which flip in sparse mode are written to the board as well, so the
+ * board is always current and switching back is immediate. Population is
+ * only counted in dense mode when few cells flipped, as a board can't have
+ * become sparse otherwise, and then at most every {@link #CHECK_INTERVAL}
+ * generations.
+ *
+ * @author Campbell Lockley
+ */
+public class HybridLife extends Life {
+	/** Default density below which the board is run sparse. */
+	public final static double DEFAULT_SPARSE_BELOW = 0.02;
+	/** Default density above which the board is run dense again. */
+	public final static double DEFAULT_DENSE_ABOVE = 0.05;
+	/** Minimum generations between population counts in dense mode. */
+	public final static int CHECK_INTERVAL = 8;
+
+	/* Switching thresholds in live cells */
+	private final long sparseBelow, denseAbove;
+
+	/* Sorted positions (y * boardDim + x) of live cells, null when dense */
+	private int[] live;
+
+	/* Generation of the next population count in dense mode */
+	private long nextCheck;
+
+	/**
+	 * Constructor, using the default thresholds.
+	 *
+	 * @param boardDim Size of board dimension.
+	 */
+	public HybridLife(int boardDim) {
+		this(boardDim, DEFAULT_SPARSE_BELOW, DEFAULT_DENSE_ABOVE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of board dimension. boardDim * boardDim must fit
+	 * in an int.
+	 * @param sparseBelow Density below which the board is run sparse.
+	 * @param denseAbove Density above which the board is run dense again.
+	 * Must be greater than sparseBelow.
+	 */
+	public HybridLife(int boardDim, double sparseBelow, double denseAbove) {
+		super(boardDim);
+		if (!(denseAbove > sparseBelow) ||
+				((long) boardDim * boardDim > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("Invalid hybrid parameters");
+		}
+		if (getHeight() != getWidth()) {
+			throw new IllegalArgumentException("Board must be square");
+		}
+		final long cells = (long) boardDim * boardDim;
+		this.sparseBelow = (long) (sparseBelow * cells);
+		this.denseAbove = (long) (denseAbove * cells);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation of age() computes every cell while the board is
+	 * dense, and only the cells around living cells while it is sparse.
+	 */
+	@Override
+	public void age() {
+		startGeneration();
+
+		if (live == null) {
+			/* Do every cell, leaving the board alone if cancelled part way */
+			ageBlock(boardDim + 3, boardDim, boardDim);
+			if (isCancelled()) return;
+			finishGeneration();
+
+			/* Few flips may mean the board has decayed */
+			if ((activity <= sparseBelow) && (generation >= nextCheck)) {
+				if (population() < sparseBelow) {
+					toSparse();
+				} else {
+					nextCheck = generation + CHECK_INTERVAL;
+				}
+			}
+		} else {
+			ageSparse();
+			finishGeneration(true);
+
+			if ((live != null) && (live.length > denseAbove)) live = null;
+		}
+	}
+
+	/**
+	 * Computes the next generation from the live cells, updating the live
+	 * cells and the flipped cells of the board.
+	 */
+	private void ageSparse() {
+		/* Each live cell adds its neighbourhood, including itself */
+		final int[] candidates = new int[live.length * NEIGH_NUM];
+		int k = 0, x, y, up, down, left, right;
+		for (int p : live) {
+			x = p % boardDim;
+			y = p / boardDim;
+			up = ((y + boardDim - 1) % boardDim) * boardDim;
+			down = ((y + 1) % boardDim) * boardDim;
+			left = (x + boardDim - 1) % boardDim;
+			right = (x + 1) % boardDim;
+			y *= boardDim;
+			candidates[k++] = up + left;
+			candidates[k++] = up + x;
+			candidates[k++] = up + right;
+			candidates[k++] = y + left;
+			candidates[k++] = y + x;
+			candidates[k++] = y + right;
+			candidates[k++] = down + left;
+			candidates[k++] = down + x;
+			candidates[k++] = down + right;
+		}
+		Arrays.sort(candidates);
+
+		/* Equal positions are adjacent, and their count is the sum */
+		int[] next = new int[candidates.length];
+		int[] flips = new int[candidates.length];
+		int nextLength = 0, flipLength = 0, sum, p, index;
+		boolean alive, lives;
+		char old;
+		for (int i = 0; i < candidates.length; i += sum) {
+			p = candidates[i];
+			sum = 1;
+			while ((i + sum < candidates.length) &&
+					(candidates[i + sum] == p)) sum++;
+
+			old = board[cellIndex(p % boardDim, p / boardDim)];
+			alive = old == ALIVE;
+			lives = SlidingColumnKernel.rule(old, sum) == ALIVE;
+			if (lives) next[nextLength++] = p;
+			if (lives != alive) flips[flipLength++] = p;
+		}
+
+		/* Write flips to the board, recording runs of them in the delta */
+		int[] runs = ((delta == null) && (heatmap == null)) ? null : 
+				new int[flipLength * 2];
+		int length = 0;
+		for (int i = 0; i < flipLength; i++) {
+			p = flips[i];
+			index = cellIndex(p % boardDim, p / boardDim);
+			board[index] = (board[index] == ALIVE) ? DEAD : ALIVE;
+			if (runs == null) continue;
+			if ((length > 0) && (p % boardDim != 0) &&
+					(runs[length - 2] + runs[length - 1] == p)) {
+				runs[length - 1]++;
+			} else {
+				runs[length++] = p;
+				runs[length++] = 1;
+			}
+		}
+		if (delta != null) delta.add(runs, length);
+		if (heatmap != null) heatmap.addRuns(runs, length, 0, boardDim);
+		activity += flipLength;
+
+		live = Arrays.copyOf(next, nextLength);
+	}
+
+	/**
+	 * Counts the living cells of the board.
+	 *
+	 * @return Population of the board.
+	 */
+	private long population() {
+		long population = 0;
+		int index;
+		for (int y = 1; y <= boardDim; y++) {
+			index = y * (boardDim + 2);
+			for (int x = 1; x <= boardDim; x++) {
+				if (board[index + x] == ALIVE) population++;
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Switches to sparse mode, collecting the positions of live cells.
+	 */
+	private void toSparse() {
+		int[] positions = new int[(int) sparseBelow + 1];
+		int length = 0, index;
+		for (int y = 1; y <= boardDim; y++) {
+			index = y * (boardDim + 2);
+			for (int x = 1; x <= boardDim; x++) {
+				if (board[index + x] == ALIVE) {
+					if (length == positions.length) {
+						positions = Arrays.copyOf(positions, length * 2);
+					}
+					positions[length++] = (y - 1) * boardDim + x - 1;
+				}
+			}
+		}
+		live = Arrays.copyOf(positions, length);
+	}
+
+	/**
+	 * Tests whether the board is currently being run sparse.
+	 *
+	 * @return True if sparse, false if dense.
+	 */
+	public boolean isSparse() {
+		return live != null;
+	}
+
+	/**
+	 * Gets the density below which the board is run sparse.
+	 *
+	 * @return Threshold in live cells.
+	 */
+	public long getSparseBelow() {
+		return sparseBelow;
+	}
+
+	/**
+	 * Gets the density above which the board is run dense again.
+	 *
+	 * @return Threshold in live cells.
+	 */
+	public long getDenseAbove() {
+		return denseAbove;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The board goes back to dense mode, and is checked again after the next
+	 * generation.
+	 */
+	@Override
+	protected void boardWritten() {
+		live = null;
+		nextCheck = 0;
+		super.boardWritten();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If any cells changed the board goes back to dense mode, and is checked
+	 * again after the next generation.
+	 */
+	@Override
+	protected int applyMutations(char[] target) {
+		int changed = super.applyMutations(target);
+		if (changed > 0) {
+			live = null;
+			nextCheck = 0;
+		}
+		return changed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The board goes back to dense mode as the live cells are not restored.
+	 */
+	@Override
+	public void warmup(int times) throws TimeoutException {
+		try {
+			super.warmup(times);
+		} finally {
+			live = null;
+			nextCheck = 0;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version of {@link Life} has nothing to clean up.
+	 */
+	public void cleanUp() {
+		return;
+	}
+
+}
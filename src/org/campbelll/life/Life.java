@@ -10,8 +10,19 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * Abstract class representing Conway's Game of Life implementations in 
@@ -33,43 +44,158 @@ public abstract class Life {
 	/* Java handles chars much faster than booleans and ints */
 	protected char[] board;				// Game of Life board
 	protected char[] nextGen;			// Next generation of the Game of Life
-	protected int boardDim;				// Dimension size of the board
-	protected int[] neighbours;			// Indexes of neighbours (incl. self)
+	protected int boardDim;				// Width (dimension size) of the board
+	protected int boardHeight;			// Height, boardDim if square
+	protected volatile long generation;	// Number of generations computed
+	
+	/* Listeners for deltas, and delta being filled in by workers */
+	protected List<DeltaListener> deltaListeners;
+	protected Delta delta;
+	
+	/* Cells flipped by this instance in the current generation */
+	protected int activity;
+	
+	/* Density pyramid of the current board, built on request */
+	protected DensityPyramid pyramid;
+	
+	/* Last pyramid built, whose arrays the next one reuses */
+	private DensityPyramid lastPyramid;
+	
+	/* Number of times the board was written other than by ageing */
+	private volatile long edits;
+	
+	/* Heatmap of flips, updated by the workers when set */
+	protected ActivityHeatmap heatmap;
+	
+	/* Cancellation of the current generation, checked by workers per row */
+	protected CancellationToken cancellation;
+	
+	/* Runs flipped in place by ageRowsInPlace(), to undo a cancelled band */
+	protected int[] undo;
+	protected int undoLength;
+	
+	/* Deadline set by runUntil(), in System.nanoTime() terms */
+	private long deadline;
+	private boolean hasDeadline;
+	
+	/* Kernel used by ageBlock(), for the row stride of its last block */
+	protected SlidingColumnKernel kernel;
+	
+	/* Mutations queued by other threads, applied between generations */
+	private final Queue<Mutation> mutations = 
+			new ConcurrentLinkedQueue<Mutation>();
+	private boolean mutationsHeld;
+	
+	/* Spare board and last published generation, for async ageing */
+	protected char[] spare;
+	private boolean lastInPlace;
+	private volatile Frame published;
+	private CompletableFuture<Void> pending = 
+			CompletableFuture.completedFuture(null);
+	
+	/* Driver threads running async generations */
+	private static final ExecutorService driver = 
+			Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, 
+							"Life-driver-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	
+	/* Positions of cells changed by mutations, for the delta */
+	private int[] mutated;
+	private int mutatedLength;
 	
 	/** Default constructor. */
 	protected Life() {
 	}
 	
 	/**
-	 * Constructor.
-	 * <p>
-	 * The game of life board must be a size which is a power of 2.
+	 * Constructor for a square board.
 	 * 
 	 * @param boardDim Size of board dimension.
 	 */
 	public Life(int boardDim) {
-		/* Size of board must be a power of 2 */
-		assert (boardDim % 2 == 0);
-		
-		this.boardDim = boardDim;
+		this(boardDim, true);
+	}
+	
+	/**
+	 * Constructor for engines which may update the board in place.
+	 * <p>
+	 * Without nextGen, {@link #finishGeneration()} only copies the edges of 
+	 * the board, and {@link #loadPattern(InputStream)} loads straight onto 
+	 * the board.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param allocateNextGen Whether to allocate nextGen.
+	 */
+	protected Life(int boardDim, boolean allocateNextGen) {
+		this(boardDim, boardDim, allocateNextGen);
+	}
+	
+	/**
+	 * Constructor for a rectangular board, for engines which support one.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 */
+	protected Life(int width, int height) {
+		this(width, height, true);
+	}
+	
+	/**
+	 * Constructor for a rectangular board, which may be updated in place.
+	 * <p>
+	 * Rows are width + 2 long, so {@link #boardDim} is the width, and the 
+	 * height is {@link #boardHeight}.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 * @param allocateNextGen Whether to allocate nextGen.
+	 */
+	protected Life(int width, int height, boolean allocateNextGen) {
 		/* Edge of board is copied to opposite side of board for wrapping */
-		this.board = new char[(boardDim + 2) * (boardDim + 2)];
-		this.nextGen = new char[(boardDim + 2) * (boardDim + 2)];
+		this(width, height, (long) (width + 2) * (height + 2), 
+				allocateNextGen);
+	}
+	
+	/**
+	 * Constructor for engines which lay the board out other than in rows of 
+	 * width + 2, such as in tiles with edges of their own. Such engines 
+	 * override {@link #cellIndex(int, int)} and {@link #copyEdges(char[])}.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 * @param length Length of board[], and of nextGen[] if allocated.
+	 * @param allocateNextGen Whether to allocate nextGen.
+	 */
+	protected Life(int width, int height, long length, 
+			boolean allocateNextGen) {
+		if ((width < 1) || (height < 1) || (length > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("Invalid board size");
+		}
+		this.boardDim = width;
+		this.boardHeight = height;
+		this.board = new char[(int) length];
 		Arrays.fill(board, DEAD);
-		Arrays.fill(nextGen, DEAD);
-		this.neighbours = new int[NEIGH_NUM];
-		
-		/* Calculate neighbour index arrays */
-		int index = 0;
-		for (int y = -1; y <= 1; y++) {
-			for (int x = -1; x <= 1; x++) {
-				neighbours[index++] = y * (boardDim + 2) + x;
-			}
+		if (allocateNextGen) {
+			this.nextGen = new char[(int) length];
+			Arrays.fill(nextGen, DEAD);
 		}
 	}
 	
 	/**
 	 * Calculates the next generation in the Game of Life.
+	 * <p>
+	 * Engines which compute into nextGen never publish half a generation. If 
+	 * the generation times out, or the deadline of {@link #runUntil(long)} 
+	 * passes, the workers stop at their next row and the board is left as it 
+	 * was.
 	 * 
 	 * @throws TimeoutException if a blocking method call in age() times out, 
 	 * causing age() to fail.
@@ -84,16 +210,365 @@ public abstract class Life {
 	/**
 	 * Runs the {@link SequentialLife#age() age()} method the specified number 
 	 * of times to give the JIT compiler opportunity to do some optimisation.
+	 * <p>
+	 * The board and generation count are restored afterwards, and no deltas 
+	 * are sent to listeners and no flips are counted in the heatmap for the 
+	 * warmup generations. Queued mutations are held until the first 
+	 * generation after warmup.
 	 * 
 	 * @param times Number of warmup iterations. 100 times works well.
 	 * @throws TimeoutException if age() times out.
 	 */
 	public void warmup(int times) throws TimeoutException {
 		char[] tmp = Arrays.copyOf(board, board.length);
+		long tmpGeneration = generation;
+		List<DeltaListener> tmpListeners = deltaListeners;
+		ActivityHeatmap tmpHeatmap = heatmap;
+		deltaListeners = null;
+		heatmap = null;
+		mutationsHeld = true;
 		
-		for (int i = 0; i < times; i++) age();
+		try {
+			for (int i = 0; i < times; i++) age();
+		} finally {
+			board = tmp;
+			generation = tmpGeneration;
+			deltaListeners = tmpListeners;
+			heatmap = tmpHeatmap;
+			mutationsHeld = false;
+		}
+	}
+	
+	/**
+	 * Ages the board for as many generations as fit in a time budget.
+	 * 
+	 * @param budget Time to run for.
+	 * @return Number of generations computed.
+	 * @throws TimeoutException if a generation times out before the budget 
+	 * is spent.
+	 * @see #runUntil(long)
+	 */
+	public long runFor(Duration budget) throws TimeoutException {
+		return runUntil(System.nanoTime() + budget.toNanos());
+	}
+	
+	/**
+	 * Ages the board until a deadline.
+	 * <p>
+	 * The generation running when the deadline passes is cancelled, and the 
+	 * board is left at the last complete generation. Engines which update the 
+	 * board in place undo the rows they have already written. HybridLife's 
+	 * sparse step can't be abandoned, so it finishes its generation instead.
+	 * 
+	 * @param deadline Deadline, as a value of {@link System#nanoTime()}.
+	 * @return Number of generations computed.
+	 * @throws TimeoutException if a generation times out before the deadline.
+	 */
+	public long runUntil(long deadline) throws TimeoutException {
+		final long start = generation;
+		this.deadline = deadline;
+		this.hasDeadline = true;
+		try {
+			while (System.nanoTime() - deadline < 0) {
+				try {
+					age();
+				} catch (TimeoutException e) {
+					/* Cancelled by the deadline rather than timed out */
+					if (System.nanoTime() - deadline >= 0) break;
+					throw e;
+				}
+			}
+		} finally {
+			this.hasDeadline = false;
+		}
+		return generation - start;
+	}
+	
+	/**
+	 * Tests whether the current generation has been cancelled, in which case 
+	 * it must not be finished.
+	 * 
+	 * @return True if workers stopped before computing every row.
+	 */
+	protected boolean isCancelled() {
+		return (cancellation != null) && cancellation.isCancelled();
+	}
+	
+	/**
+	 * Gets the number of generations computed since construction.
+	 * 
+	 * @return Generation number of the current board.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Gets the width of the board.
+	 * 
+	 * @return Width in cells.
+	 */
+	public int getWidth() {
+		return boardDim;
+	}
+	
+	/**
+	 * Gets the height of the board.
+	 * 
+	 * @return Height in cells.
+	 */
+	public int getHeight() {
+		return boardHeight;
+	}
+	
+	/**
+	 * Calculates the next generation on a driver thread, leaving the calling 
+	 * thread free.
+	 * 
+	 * @return Future completing once the generation has been computed.
+	 * @see #advanceAsync(int)
+	 */
+	public CompletableFuture<Void> ageAsync() {
+		return advanceAsync(1);
+	}
+	
+	/**
+	 * Calculates a number of generations on a driver thread, leaving the 
+	 * calling thread free to write out or render the published generation.
+	 * <p>
+	 * Async calls run one after another in the order they were made. The 
+	 * board must not be aged or changed directly until they have completed, 
+	 * except through the mutation methods such as 
+	 * {@link #setCell(int, int, boolean)}.
+	 * <p>
+	 * Once async calls are used the engine keeps a spare board, so the board 
+	 * of the last generation is left untouched while the next one is 
+	 * computed. After each generation it is published as a {@link Frame}, 
+	 * which is left untouched until two more generations have been computed. 
+	 * Engines which update the board in place publish a copy instead.
+	 * 
+	 * @param generations Number of generations to compute.
+	 * @return Future completing once every generation has been computed, or 
+	 * exceptionally if age() fails.
+	 */
+	public synchronized CompletableFuture<Void> advanceAsync(
+			final int generations) {
+		final CompletableFuture<Void> result = new CompletableFuture<Void>();
+		final CompletableFuture<Void> previous = pending;
+		pending = result;
 		
-		board = tmp;
+		/* Run after the previous call, whether or not it failed */
+		previous.whenCompleteAsync(new BiConsumer<Void, Throwable>() {
+			@Override
+			public void accept(Void ignored, Throwable failure) {
+				try {
+					if ((spare == null) && (nextGen != null)) {
+						spare = new char[board.length];
+						Arrays.fill(spare, DEAD);
+					}
+					if (published == null) publish();
+					for (int i = 0; i < generations; i++) {
+						age();
+						publish();
+					}
+					result.complete(null);
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				}
+			}
+		}, driver);
+		return result;
+	}
+	
+	/**
+	 * Publishes the current board as a {@link Frame}.
+	 */
+	private void publish() {
+		if (lastInPlace || (nextGen == null)) {
+			/* Board will be updated in place, so publish a copy */
+			published = new Frame(Arrays.copyOf(board, board.length), 
+					generation, true);
+		} else {
+			published = new Frame(board, generation, false);
+		}
+	}
+	
+	/**
+	 * Gets the last generation published by {@link #advanceAsync(int)}.
+	 * 
+	 * @return Published frame, or null if no async call has started.
+	 */
+	public Frame getPublished() {
+		return published;
+	}
+	
+	/**
+	 * A generation published by an async call, readable while later 
+	 * generations are computed.
+	 */
+	public class Frame {
+		/* Board of the generation, its number and whether it is a copy */
+		private final char[] frame;
+		private final long frameGeneration;
+		private final boolean copy;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param frame Board of the generation.
+		 * @param frameGeneration Generation number.
+		 * @param copy True if the board is a copy which is never reused.
+		 */
+		Frame(char[] frame, long frameGeneration, boolean copy) {
+			this.frame = frame;
+			this.frameGeneration = frameGeneration;
+			this.copy = copy;
+		}
+		
+		/**
+		 * Gets the generation number of this frame.
+		 * 
+		 * @return Generation number.
+		 */
+		public long getGeneration() {
+			return frameGeneration;
+		}
+		
+		/**
+		 * Tests whether a cell of this frame is alive.
+		 * 
+		 * @param x x position of the cell, 0 based.
+		 * @param y y position of the cell, 0 based.
+		 * @return True if the cell is alive.
+		 */
+		public boolean isAlive(int x, int y) {
+			return frame[cellIndex(x, y)] == ALIVE;
+		}
+		
+		/**
+		 * Tests whether this frame may have started to be overwritten, 
+		 * because two more generations have been computed. Check after 
+		 * reading a frame to know that what was read is consistent.
+		 * 
+		 * @return True if the frame is still valid.
+		 */
+		public boolean isValid() {
+			return copy || (generation <= frameGeneration + 1);
+		}
+	}
+	
+	/**
+	 * Gets live cell counts of the current board at several resolutions, 
+	 * for an overview of the whole board.
+	 * <p>
+	 * The pyramid is built on the first call after the board changes and 
+	 * then cached until the next generation. Each pyramid reuses the arrays 
+	 * of the one before, so a pyramid's counts are only valid until the next 
+	 * call after the board changes.
+	 * 
+	 * @return Density pyramid of the current board.
+	 * @throws TimeoutException if building the pyramid times out or is 
+	 * interrupted, in which case nothing is cached.
+	 */
+	public synchronized DensityPyramid getDensityPyramid() 
+			throws TimeoutException {
+		DensityPyramid current = pyramid;
+		if ((current == null) || (current.getGeneration() != generation)) {
+			current = buildDensityPyramid(lastPyramid);
+			pyramid = current;
+			lastPyramid = current;
+		}
+		return current;
+	}
+	
+	/**
+	 * Records that the board was written between generations other than by 
+	 * ageing or queued mutations, such as by a stamp or pattern, so the 
+	 * cells which changed aren't in any delta. Drops the cached density 
+	 * pyramid.
+	 */
+	protected void boardWritten() {
+		pyramid = null;
+		edits++;
+	}
+	
+	/**
+	 * Gets the number of times the board has been written between 
+	 * generations by {@link #loadPattern(InputStream)}, 
+	 * {@link #stamp(Stamp, int, int)}, {@link #stampAll(List)} or 
+	 * {@link #clearBoard()}. Listeners which follow the board by its deltas 
+	 * can compare it with the last count they saw to find changes the deltas 
+	 * missed.
+	 * 
+	 * @return Number of writes outside generations.
+	 */
+	public long getEdits() {
+		return edits;
+	}
+	
+	/**
+	 * Builds a density pyramid of the current board.
+	 * 
+	 * @param recycled Older pyramid whose arrays may be reused, or null.
+	 * @return New density pyramid with 
+	 * {@link DensityPyramid#DEFAULT_LEVELS} levels.
+	 * @throws TimeoutException if building the pyramid times out.
+	 */
+	protected DensityPyramid buildDensityPyramid(DensityPyramid recycled) 
+			throws TimeoutException {
+		return new DensityPyramid(this, DensityPyramid.DEFAULT_LEVELS, null, 
+				recycled);
+	}
+	
+	/**
+	 * Sets a heatmap to count the cells which flip in every following 
+	 * generation. The workers add to it as they compute each block.
+	 * 
+	 * @param heatmap Heatmap to add to, or null to stop counting. Must be 
+	 * for a board of the same dimension.
+	 */
+	public void setHeatmap(ActivityHeatmap heatmap) {
+		if ((heatmap != null) && ((heatmap.getBoardDim() != boardDim) || 
+				(boardHeight != boardDim))) {
+			throw new IllegalArgumentException("Board dimensions differ");
+		}
+		this.heatmap = heatmap;
+	}
+	
+	/**
+	 * Gets the heatmap flips are being counted in.
+	 * 
+	 * @return The heatmap, or null if none is set.
+	 */
+	public ActivityHeatmap getHeatmap() {
+		return heatmap;
+	}
+	
+	/**
+	 * Registers a listener to be sent a {@link Delta} of the cells which 
+	 * flipped in every following generation.
+	 * <p>
+	 * Deltas are only collected while at least one listener is registered. 
+	 * Changes made by {@link #loadPattern(InputStream)} and 
+	 * {@link #clearBoard()} are not part of any delta.
+	 * 
+	 * @param listener Listener to register.
+	 */
+	public void addDeltaListener(DeltaListener listener) {
+		if (deltaListeners == null) {
+			deltaListeners = new CopyOnWriteArrayList<DeltaListener>();
+		}
+		deltaListeners.add(listener);
+	}
+	
+	/**
+	 * Unregisters a listener added with 
+	 * {@link #addDeltaListener(DeltaListener)}.
+	 * 
+	 * @param listener Listener to unregister.
+	 */
+	public void removeDeltaListener(DeltaListener listener) {
+		if (deltaListeners != null) deltaListeners.remove(listener);
 	}
 	
 	/**
@@ -117,10 +592,13 @@ public abstract class Life {
 	 */
 	public void loadPattern(InputStream in) 
 			throws IOException, FileFormatException {
-		/* Backup old board */
+		/* Backup old board, unless updating in place */
+		final boolean backup = (nextGen != null);
 		char[] tmp = board;
-		board = nextGen;
-		nextGen = tmp;
+		if (backup) {
+			board = nextGen;
+			nextGen = tmp;
+		}
 		
 		BufferedReader br = new BufferedReader(new InputStreamReader(in));
 		
@@ -145,18 +623,21 @@ public abstract class Life {
 				} else if (c == creturn) {	// Ignore carriage returns (\r)
 					continue;
 				} else if (c != space) {	// This is a "living" cell
-					board[y * (boardDim + 2) + x] = ALIVE;
+					board[cellIndex(x - 1, y - 1)] = ALIVE;
 				}
 				x++;
 			}
 
 			/* Copy edges to handle wrapping */
 			copyEdges(board);
+			boardWritten();
 		} catch (IndexOutOfBoundsException e) {
 			/* On error restore old board */
-			tmp = board;
-			board = nextGen;
-			nextGen = tmp;
+			if (backup) {
+				tmp = board;
+				board = nextGen;
+				nextGen = tmp;
+			}
 			throw new FileFormatException(
 					"Input pattern is larger than board size");
 		} finally {
@@ -175,22 +656,357 @@ public abstract class Life {
 	public void printBoard(int width, int height) 
 			throws IllegalArgumentException {
 		/* Bounds check the parameters */
-		if ((width > boardDim) || (height > boardDim)) {
+		if ((width > boardDim) || (height > boardHeight)) {
 			throw new IllegalArgumentException(
 					"Width and heigth cannot be > board dimension size");
 		}
 		
 		/* Print board to stdout */
-		for (int y = 1; y < (height + 1); y++) {
-			for (int x = 1; x < (width + 1); x++) {
-				System.out.print(
-						(board[y * (boardDim + 2) + x] == ALIVE) ? "#" : " ");
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				System.out.print(isAlive(x, y) ? "#" : " ");
 			}
 			System.out.println();
 		}
 		System.out.flush();;
 	}
 
+	/**
+	 * Tests whether a cell of the current board is alive.
+	 * 
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @return True if the cell is alive.
+	 */
+	public boolean isAlive(int x, int y) {
+		return board[cellIndex(x, y)] == ALIVE;
+	}
+
+	/**
+	 * Computes the state of a window of the board a number of generations
+	 * ahead, without ageing the board.
+	 * <p>
+	 * A cell after n generations depends only on the cells within n cells of
+	 * it, so only the window grown by n cells on each side (its backward
+	 * light cone) is copied out and aged. The cone shrinks by one cell on
+	 * each side per generation until only the window is left. Where the cone
+	 * would cover the whole board along an axis it wraps onto itself, so
+	 * that axis is copied whole and wrapped as for the board.
+	 * <p>
+	 * The window may cross the edges of the board, and wraps as the board
+	 * does. The board, generation count and listeners are not affected.
+	 *
+	 * @param x x position of the left of the window, 0 based.
+	 * @param y y position of the top of the window, 0 based.
+	 * @param width Width of the window, at most the board's width.
+	 * @param height Height of the window, at most the board's height.
+	 * @param generations Number of generations ahead to compute.
+	 * @return Cells of the window, indexed by <code>y * width + x</code>,
+	 * each {@link #ALIVE} or {@link #DEAD}.
+	 */
+	public char[] computeRegion(int x, int y, int width, int height,
+			int generations) {
+		if ((width < 1) || (width > boardDim) || (height < 1) ||
+				(height > boardHeight) || (generations < 0)) {
+			throw new IllegalArgumentException("Invalid region");
+		}
+
+		/* Light cone, whole axes where it wraps onto itself */
+		final boolean wrapX = width + 2L * generations >= boardDim;
+		final boolean wrapY = height + 2L * generations >= boardHeight;
+		final int coneWidth = wrapX ? boardDim : width + 2 * generations;
+		final int coneHeight = wrapY ? boardHeight : height + 2 * generations;
+		final int left = wrapX ? 0 : x - generations;
+		final int top = wrapY ? 0 : y - generations;
+		final int stride = coneWidth + 2;
+
+		/* Copy the cone out of the board */
+		char[] cone = new char[stride * (coneHeight + 2)];
+		char[] next = new char[cone.length];
+		Arrays.fill(cone, DEAD);
+		Arrays.fill(next, DEAD);
+		for (int cy = 0; cy < coneHeight; cy++) {
+			for (int cx = 0; cx < coneWidth; cx++) {
+				cone[(cy + 1) * stride + cx + 1] = isAlive(
+						Math.floorMod(left + cx, boardDim),
+						Math.floorMod(top + cy, boardHeight)) ? ALIVE : DEAD;
+			}
+		}
+
+		/* Age the cone, shrinking along the axes which don't wrap */
+		final SlidingColumnKernel coneKernel = new SlidingColumnKernel(stride);
+		char[] tmp;
+		for (int gen = 1; gen <= generations; gen++) {
+			/* Copy edges of the wrapped axes */
+			if (wrapY) {
+				System.arraycopy(cone, coneHeight * stride, cone, 0, stride);
+				System.arraycopy(cone, stride, cone,
+						(coneHeight + 1) * stride, stride);
+			}
+			if (wrapX) {
+				for (int cy = 0; cy < coneHeight + 2; cy++) {
+					cone[cy * stride] = cone[cy * stride + coneWidth];
+					cone[cy * stride + coneWidth + 1] = cone[cy * stride + 1];
+				}
+			}
+
+			final int x0 = wrapX ? 0 : gen;
+			final int x1 = wrapX ? coneWidth : coneWidth - gen;
+			final int y0 = wrapY ? 0 : gen;
+			final int y1 = wrapY ? coneHeight : coneHeight - gen;
+			for (int cy = y0; cy < y1; cy++) {
+				coneKernel.ageRow(cone, next, (cy + 1) * stride + 1 + x0,
+						x1 - x0);
+			}
+
+			tmp = cone;
+			cone = next;
+			next = tmp;
+		}
+
+		/* Copy the window out of the centre of the cone */
+		char[] region = new char[width * height];
+		int cx, cy;
+		for (int ry = 0; ry < height; ry++) {
+			cy = wrapY ? Math.floorMod(y + ry, boardHeight) : generations + ry;
+			for (int rx = 0; rx < width; rx++) {
+				cx = wrapX ? Math.floorMod(x + rx, boardDim) : generations + rx;
+				region[ry * width + rx] = cone[(cy + 1) * stride + cx + 1];
+			}
+		}
+		return region;
+	}
+
+	/**
+	 * Gets the index of a cell in board[].
+	 * <p>
+	 * Board coordinates are 0 based and exclude the wrapped edges, so (0, 0) 
+	 * is the top left cell of the board proper. This is the only place the 
+	 * row-major layout is assumed outside of the engines themselves, so 
+	 * engines with another layout override it.
+	 * 
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @return Index of the cell in board[].
+	 */
+	protected int cellIndex(int x, int y) {
+		return (y + 1) * (boardDim + 2) + x + 1;
+	}
+
+	/**
+	 * Places the live cells of a {@link Stamp} onto the board. Cells which 
+	 * are dead in the stamp are left as they were, and the stamp wraps at the 
+	 * edges of the board.
+	 * <p>
+	 * As with {@link #loadPattern(InputStream)}, the change is not part of 
+	 * any delta.
+	 * 
+	 * @param stamp Stamp to place.
+	 * @param x x position of the left of the stamp's bounding box.
+	 * @param y y position of the top of the stamp's bounding box.
+	 */
+	public void stamp(Stamp stamp, int x, int y) {
+		place(stamp, x, y);
+		
+		/* Copy edges to handle wrapping */
+		copyEdges(board);
+		boardWritten();
+	}
+	
+	/**
+	 * Places many stamps onto the board, copying the edges once at the end. 
+	 * Placements may overlap, as they only ever make cells alive.
+	 * 
+	 * @param placements Stamps to place, with their positions and transforms.
+	 * @throws TimeoutException if placing the stamps times out.
+	 * @see #stamp(Stamp, int, int)
+	 */
+	public void stampAll(List<Stamp.Placement> placements) 
+			throws TimeoutException {
+		for (Stamp.Placement placement : placements) {
+			place(placement.stamp, placement.x, placement.y);
+		}
+		
+		/* Copy edges to handle wrapping */
+		copyEdges(board);
+		boardWritten();
+	}
+	
+	/**
+	 * Sets the live cells of a stamp alive on the board, without copying 
+	 * edges. Safe to call from several threads at once, as every write makes 
+	 * a cell alive.
+	 * 
+	 * @param stamp Stamp to place.
+	 * @param x x position of the left of the stamp's bounding box.
+	 * @param y y position of the top of the stamp's bounding box.
+	 */
+	protected void place(Stamp stamp, int x, int y) {
+		long word;
+		int column, row;
+		for (int sy = 0; sy < stamp.getHeight(); sy++) {
+			row = Math.floorMod(y + sy, boardHeight);
+			for (int w = 0; w < stamp.getWordsPerRow(); w++) {
+				/* Visit only the live cells of the word */
+				word = stamp.getWord(sy, w);
+				while (word != 0) {
+					column = x + (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					board[cellIndex(Math.floorMod(column, boardDim), row)] = 
+							ALIVE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queues setting the state of a cell. Safe to call from any thread, 
+	 * including while the board is being aged.
+	 * <p>
+	 * Queued mutations are applied in order between generations, once the 
+	 * next generation has been computed and before its edges are copied, so 
+	 * they first show in the board of the next generation. They are part of 
+	 * the delta of that generation.
+	 * 
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @param alive New state of the cell.
+	 * @throws IndexOutOfBoundsException if the cell is not on the board.
+	 */
+	public void setCell(final int x, final int y, final boolean alive) {
+		if ((x < 0) || (x >= boardDim) || (y < 0) || (y >= boardHeight)) {
+			throw new IndexOutOfBoundsException(
+					"Cell (" + x + ", " + y + ") is not on the board");
+		}
+		mutations.add(new Mutation() {
+			@Override
+			void apply(char[] target) {
+				mutate(target, x, y, alive ? ALIVE : DEAD);
+			}
+		});
+	}
+	
+	/**
+	 * Queues flipping every cell of a region, which wraps at the edges of the 
+	 * board. Safe to call from any thread.
+	 * 
+	 * @param x x position of the left of the region.
+	 * @param y y position of the top of the region.
+	 * @param width Width of the region, at most the board's width.
+	 * @param height Height of the region, at most the board's height.
+	 * @see #setCell(int, int, boolean)
+	 */
+	public void toggleRegion(final int x, final int y, final int width, 
+			final int height) {
+		if ((width < 0) || (width > boardDim) || (height < 0) || 
+				(height > boardHeight)) {
+			throw new IllegalArgumentException("Invalid region");
+		}
+		mutations.add(new Mutation() {
+			@Override
+			void apply(char[] target) {
+				int cx, cy;
+				for (int ry = 0; ry < height; ry++) {
+					cy = Math.floorMod(y + ry, boardHeight);
+					for (int rx = 0; rx < width; rx++) {
+						cx = Math.floorMod(x + rx, boardDim);
+						mutate(target, cx, cy, 
+								(target[cellIndex(cx, cy)] == ALIVE) ? 
+										DEAD : ALIVE);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Queues placing a {@link Stamp}, as {@link #stamp(Stamp, int, int)} 
+	 * does immediately. Safe to call from any thread.
+	 * 
+	 * @param stamp Stamp to place.
+	 * @param x x position of the left of the stamp's bounding box.
+	 * @param y y position of the top of the stamp's bounding box.
+	 * @see #setCell(int, int, boolean)
+	 */
+	public void queueStamp(final Stamp stamp, final int x, final int y) {
+		mutations.add(new Mutation() {
+			@Override
+			void apply(char[] target) {
+				for (int sy = 0; sy < stamp.getHeight(); sy++) {
+					for (int sx = 0; sx < stamp.getWidth(); sx++) {
+						if (!stamp.isAlive(sx, sy)) continue;
+						mutate(target, Math.floorMod(x + sx, boardDim), 
+								Math.floorMod(y + sy, boardHeight), ALIVE);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Tests whether any mutations are waiting for the next generation.
+	 * 
+	 * @return True if mutations are queued.
+	 */
+	public boolean hasPendingMutations() {
+		return !mutations.isEmpty();
+	}
+	
+	/**
+	 * Applies every queued mutation to the board of the next generation. 
+	 * Called by {@link #finishGeneration(boolean)} before edges are copied.
+	 * 
+	 * @param target Board of the next generation.
+	 * @return Number of cells changed.
+	 */
+	protected int applyMutations(char[] target) {
+		if (mutationsHeld || mutations.isEmpty()) return 0;
+		
+		mutatedLength = 0;
+		Mutation mutation;
+		while ((mutation = mutations.poll()) != null) mutation.apply(target);
+		
+		/* Changed cells flip in the delta, relative to computed values */
+		if ((delta != null) && (mutatedLength > 0)) {
+			delta.toggle(mutated, mutatedLength);
+		}
+		return mutatedLength;
+	}
+	
+	/**
+	 * Sets a cell of the next generation for a mutation, recording it if it 
+	 * changed.
+	 * 
+	 * @param target Board of the next generation.
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @param c New state of the cell.
+	 */
+	private void mutate(char[] target, int x, int y, char c) {
+		int index = cellIndex(x, y);
+		if (target[index] == c) return;
+		target[index] = c;
+		
+		if (mutated == null) {
+			mutated = new int[64];
+		} else if (mutatedLength == mutated.length) {
+			mutated = Arrays.copyOf(mutated, mutatedLength * 2);
+		}
+		mutated[mutatedLength++] = y * boardDim + x;
+	}
+	
+	/**
+	 * A change to the board queued by another thread.
+	 */
+	private abstract class Mutation {
+		/**
+		 * Applies the change.
+		 * 
+		 * @param target Board of the next generation.
+		 */
+		abstract void apply(char[] target);
+	}
+
 	/**
 	 * Clears the Game of Life board.
 	 * <p>
@@ -199,47 +1015,295 @@ public abstract class Life {
 	 */
 	public void clearBoard() {
 		Arrays.fill(board, DEAD);
-		Arrays.fill(nextGen, DEAD);
+		if (nextGen != null) Arrays.fill(nextGen, DEAD);
+		boardWritten();
 	}
 
 	/**
-	 * Calculates whether this cell will live or die in the next generation. 
-	 * Rules are:
-	 * <ul>
-	 * 	<li>A live cell with < 2 living neighbours dies</li>
-	 * 	<li>A live cell with 2 or 3 living neighbours lives</li>
-	 * 	<li>A live cell with < 3 living neighbours die</li>
-	 * 	<li>A dead cell with exactly 3 living neighbours lives</li>
-	 * </ul>
-	 * These rules can be shortened to:
-	 * <ul>
-	 * 	<li>If the sum of living neighbours and itself is 3, the cell will 
-	 * live</li>
-	 * 	<li>If the sum of living neighbours and itself is 4, the cell will 
-	 * remain in its previous state</li>
-	 * 	<li>Any other sum results in the cell being dead</li>
-	 * </ul>
+	 * Computes the next generation for a block of the board into nextGen.
+	 * <p>
+	 * The number of cells which flipped is added to {@link #activity}. If a 
+	 * delta is being collected the flipped cells are recorded as they are 
+	 * computed, so no second pass over the board is needed.
+	 * 
+	 * @param start Offset into board[] of the top left cell of the block.
+	 * @param width Width of the block.
+	 * @param height Height of the block.
+	 */
+	protected void ageBlock(int start, int width, int height) {
+		ageBlock(start, width, height, boardDim + 2, 
+				(start / (boardDim + 2) - 1) * boardDim 
+				+ (start % (boardDim + 2) - 1));
+	}
+	
+	/**
+	 * Computes the next generation for a block of the board into nextGen, 
+	 * for engines whose board is not laid out in rows of boardDim + 2.
+	 * 
+	 * @param start Offset into board[] of the top left cell of the block.
+	 * @param width Width of the block.
+	 * @param height Height of the block.
+	 * @param stride Distance in board[] between rows of the block.
+	 * @param position Position (<code>y * boardDim + x</code>) of the top 
+	 * left cell of the block, used for deltas.
+	 * @see #ageBlock(int, int, int)
+	 */
+	protected void ageBlock(int start, int width, int height, int stride, 
+			int position) {
+		if ((delta != null) || (heatmap != null)) {
+			ageBlockRecording(start, width, height, stride, position);
+			return;
+		}
+		
+		/* Do a block of cells, counting flips */
+		final SlidingColumnKernel kernel = kernel(stride);
+		final CancellationToken token = cancellation;
+		int flipped = 0;
+		for (int y = 0; y < height; y++) {
+			if ((token != null) && token.checkpoint()) return;
+			flipped += kernel.ageRow(board, nextGen, start + y * stride, width);
+		}
+		activity += flipped;
+	}
+	
+	/**
+	 * Gets a {@link SlidingColumnKernel} for a row stride, keeping it 
+	 * for following blocks of the same stride.
+	 * 
+	 * @param stride Distance in board[] between rows.
+	 * @return Kernel for the stride.
+	 */
+	protected SlidingColumnKernel kernel(int stride) {
+		SlidingColumnKernel current = kernel;
+		if ((current == null) || (current.getStride() != stride)) {
+			current = new SlidingColumnKernel(stride);
+			kernel = current;
+		}
+		return current;
+	}
+	
+	/**
+	 * Version of {@link #ageBlock(int, int, int, int, int)} which records 
+	 * runs of flipped cells into the delta and heatmap, whichever are in use.
+	 * 
+	 * @param start Offset into board[] of the top left cell of the block.
+	 * @param width Width of the block.
+	 * @param height Height of the block.
+	 * @param stride Distance in board[] between rows of the block.
+	 * @param position Position of the top left cell of the block.
+	 */
+	private void ageBlockRecording(int start, int width, int height, 
+			int stride, int position) {
+		int[] runs = new int[64];
+		int length = 0, flipped = 0;
+		final int left = position % boardDim;
+		
+		final SlidingColumnKernel kernel = kernel(stride);
+		final CancellationToken token = cancellation;
+		int index, runStart;
+		for (int y = 0; y < height; y++) {
+			/* Abandoned blocks don't count towards the heatmap */
+			if ((token != null) && token.checkpoint()) return;
+			index = start + y * stride;
+			kernel.ageRow(board, nextGen, index, width);
+			runStart = -1;
+			for (int x = 0; x <= width; x++) {
+				if (x < width) {
+					if (nextGen[index + x] != board[index + x]) {
+						if (runStart < 0) runStart = x;
+						continue;
+					}
+				}
+				
+				/* End of a run (or of the row) */
+				if (runStart >= 0) {
+					flipped += x - runStart;
+					if (length == runs.length) {
+						runs = Arrays.copyOf(runs, runs.length * 2);
+					}
+					runs[length++] = position + runStart;
+					runs[length++] = x - runStart;
+					runStart = -1;
+				}
+			}
+			position += boardDim;
+		}
+		
+		if (delta != null) delta.add(runs, length);
+		if (heatmap != null) heatmap.addRuns(runs, length, left, width);
+		activity += flipped;
+	}
+	
+	/**
+	 * Computes the next generation for a band of whole rows of the board in 
+	 * place, without nextGen.
+	 * <p>
+	 * The old values of each row and the rows either side of it are kept in 
+	 * a window of three rows, from which the row is computed by the 
+	 * {@link SlidingColumnKernel} before its new values are written over 
+	 * it. The edges of the board keep their old values until 
+	 * {@link #finishGeneration()}. Flips are counted and recorded as in 
+	 * {@link #ageBlock(int, int, int, int, int)}, and also kept so that 
+	 * {@link #undoInPlace()} can put the band back if the generation is 
+	 * cancelled, in which case the band stops at its next row.
 	 * 
-	 * @param index Index of this cell in the board.
-	 * @param neighbours Array of indices to neighbours in the board.
-	 * @return True if this cell will live in the next generation, 
-	 * false otherwise.
+	 * @param first First row of the band, 1 based as in board[].
+	 * @param last Last row of the band, 1 based as in board[].
+	 * @param above Old values of the row above the band, including edges.
+	 * @param below Old values of the row below the band, including edges, or 
+	 * null if that row of the board still has its old values.
 	 */
-	protected char live(int index) {
-		int sum = 0;
+	protected void ageRowsInPlace(int first, int last, char[] above, 
+			char[] below) {
+		final int stride = boardDim + 2;
+		final SlidingColumnKernel kernel = kernel(stride);
+		int[] runs = new int[64];
+		int length = 0, flipped = 0;
+		final CancellationToken token = cancellation;
 		
-		/* It its just as fast to use a loop as to unroll it */
-		/* It is faster to test-branch-increment than to += the chars */
+		/* Old values of the rows above, at and below the row being aged */
+		char[] window = new char[3 * stride];
+		char[] out = new char[3 * stride];
+		System.arraycopy(above, 0, window, 0, stride);
+		System.arraycopy(board, first * stride, window, stride, stride);
 		
-		/* Sum living neighbours, including itself */
-		for (int i = 0; i < NEIGH_NUM; i++) {
-			if (board[index + neighbours[i]] == ALIVE) sum++;
+		int base, runStart;
+		for (int y = first; y <= last; y++) {
+			if ((token != null) && token.checkpoint()) break;
+			base = y * stride;
+			if ((y == last) && (below != null)) {
+				System.arraycopy(below, 0, window, 2 * stride, stride);
+			} else {
+				System.arraycopy(board, base + stride, window, 2 * stride, 
+						stride);
+			}
+			
+			/* Compute the row, then write it over the old row */
+			kernel.ageRow(window, out, stride + 1, boardDim);
+			runStart = -1;
+			for (int x = 1; x <= boardDim + 1; x++) {
+				if ((x <= boardDim) && (out[stride + x] != board[base + x])) {
+					board[base + x] = out[stride + x];
+					flipped++;
+					if (runStart < 0) runStart = x;
+					continue;
+				}
+				
+				/* End of a run (or of the row) */
+				if (runStart >= 0) {
+					if (length == runs.length) {
+						runs = Arrays.copyOf(runs, runs.length * 2);
+					}
+					runs[length++] = (y - 1) * boardDim + runStart - 1;
+					runs[length++] = x - runStart;
+				}
+				runStart = -1;
+			}
+			
+			/* Slide the window down, the old row being above the next */
+			System.arraycopy(window, stride, window, 0, 2 * stride);
 		}
 		
-		/* Apply shortened rules */
-		if (sum == 3) return ALIVE;
-		else if (sum == 4) return board[index];
-		else return DEAD;
+		/* Keep the flips, so a cancelled generation can be undone */
+		undo = runs;
+		undoLength = length;
+		if ((token != null) && token.isCancelled()) return;
+		
+		activity += flipped;
+		if (delta != null) delta.add(runs, length);
+		if (heatmap != null) heatmap.addRuns(runs, length, 0, boardDim);
+	}
+	
+	/**
+	 * Flips back the cells flipped by the last call to 
+	 * {@link #ageRowsInPlace(int, int, char[], char[])}, putting the rows it 
+	 * wrote back to the current generation. The edges are never written 
+	 * until the generation is finished, so they are still correct.
+	 */
+	protected void undoInPlace() {
+		for (int i = 0; i < undoLength; i += 2) {
+			for (int p = undo[i]; p < undo[i] + undo[i + 1]; p++) {
+				final int index = cellIndex(p % boardDim, p / boardDim);
+				board[index] = (board[index] == ALIVE) ? DEAD : ALIVE;
+			}
+		}
+		undoLength = 0;
+	}
+	
+	/**
+	 * Prepares for computing a generation. Must be called by 
+	 * {@link #age()} before any cells are computed.
+	 */
+	protected void startGeneration() {
+		activity = 0;
+		cancellation = hasDeadline ? 
+				new CancellationToken(deadline) : new CancellationToken();
+		delta = (deltaListeners == null || deltaListeners.isEmpty()) ? 
+				null : new Delta(generation + 1, boardDim);
+	}
+	
+	/**
+	 * Finishes a generation once nextGen has been computed. Copies edges of 
+	 * nextGen, swaps the boards over and sends the delta to listeners.
+	 * <p>
+	 * Engines without nextGen have updated the board in place, so only its 
+	 * edges are copied.
+	 */
+	protected void finishGeneration() {
+		finishGeneration(nextGen == null);
+	}
+	
+	/**
+	 * Finishes a generation, either once nextGen has been computed or once 
+	 * the board has been updated in place.
+	 * 
+	 * @param inPlace True if the board was updated in place, so only its 
+	 * edges are copied and nextGen is left alone.
+	 */
+	protected void finishGeneration(boolean inPlace) {
+		if (inPlace) {
+			applyMutations(board);
+			copyEdges(board);
+		} else {
+			/* Apply queued mutations, then copy edges to handle wrapping */
+			applyMutations(nextGen);
+			copyEdges(nextGen);
+			
+			/* Swap boards over, keeping the old board aside if there's a spare */
+			char[] tmp = board;
+			board = nextGen;
+			if (spare == null) {
+				nextGen = tmp;
+			} else {
+				nextGen = spare;
+				spare = tmp;
+			}
+		}
+		lastInPlace = inPlace;
+		generation++;
+		
+		/* Publish the delta */
+		if (delta != null) {
+			Delta published = delta;
+			delta = null;
+			for (DeltaListener listener : deltaListeners) {
+				listener.generationComputed(published);
+			}
+		}
+	}
+	
+	/**
+	 * Passes state shared by all workers of a generation, such as the delta 
+	 * being collected, on to a job instance.
+	 * 
+	 * @param job Job instance created by {@link #age()}.
+	 * @return The job.
+	 */
+	protected <T extends Life> T inherit(T job) {
+		job.delta = delta;
+		job.heatmap = heatmap;
+		job.cancellation = cancellation;
+		return job;
 	}
 
 	/**
@@ -255,11 +1319,11 @@ public abstract class Life {
 	protected char[] copyEdges(char[] board) {
 		/* Copy last row to top and first row to bottom */
 		for (int x = 0; x < (boardDim + 2); x++) {
-			board[x] = board[boardDim*(boardDim+2)+x];
-			board[(boardDim+1)*(boardDim+2)+x] = board[(boardDim+2)+x];
+			board[x] = board[boardHeight*(boardDim+2)+x];
+			board[(boardHeight+1)*(boardDim+2)+x] = board[(boardDim+2)+x];
 		}
 		/* Copy right most column to left and left most column to right */
-		for (int y = 0; y < (boardDim + 2); y++) {
+		for (int y = 0; y < (boardHeight + 2); y++) {
 			board[y*(boardDim+2)] = board[y*(boardDim+2)+boardDim];
 			board[y*(boardDim+2)+boardDim+1] = board[y*(boardDim+2)+1];
 		}
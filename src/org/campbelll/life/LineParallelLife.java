@@ -9,7 +9,7 @@
 package org.campbelll.life;
 
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -33,22 +33,30 @@ public class LineParallelLife extends ParallelLife {
 		super(boardDim, numThreads);
 	}
 	
+	/**
+	 * Constructor for a LineParallelLife which shares a thread pool.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param pool Thread pool to submit jobs to.
+	 */
+	public LineParallelLife(int boardDim, ExecutorService pool) {
+		super(boardDim, pool);
+	}
+	
 	/**
 	 * Constructor. Use when intending to use as a 
 	 * {@link java.util.concurrent.Callable Callable}.
 	 * 
 	 * @param board Pointer to pre-existing board.
 	 * @param nextGen Pointer to accompanying nextGen.
-	 * @param neighbours Pointer to pre-computed neighbour indexes
 	 * @param boardDim Size of board dimension.
 	 * @param line Line number of board to compute.
 	 * @see java.util.concurrent.Callable
 	 */
-	protected LineParallelLife(char[] board, char[] nextGen, int[] neighbours,
-			int boardDim, int line) {
+	protected LineParallelLife(char[] board, char[] nextGen, int boardDim,
+			int line) {
 		this.board = board;
 		this.nextGen = nextGen;
-		this.neighbours = neighbours;
 		this.boardDim = boardDim;
 		this.line = line;
 	}
@@ -64,31 +72,24 @@ public class LineParallelLife extends ParallelLife {
 	 */
 	@Override
 	public void age() throws TimeoutException {
+		startGeneration();
+		
 		ArrayList<LineParallelLife> jobs = 
 				new ArrayList<LineParallelLife>(boardDim);
 		
 		/* Create jobs where each job is a line of the board */
 		for (int y = 0; y < boardDim; y++) {
-			jobs.add(new LineParallelLife(board, nextGen, neighbours, 
-					boardDim, y));
+			jobs.add(new LineParallelLife(board, nextGen, boardDim, y));
 		}
 
+		/* Pass shared state on to the jobs */
+		for (LineParallelLife job : jobs) inherit(job);
+
 		/* Submit the jobs to executor and wait for completion */
-		try {
-			pool.invokeAll(jobs, timeout, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			/* Shutdown thread pool and pass on interrupt */
-			pool.shutdownNow();
-			Thread.currentThread().interrupt();
-		}
+		invoke(jobs);
 		
-		/* Copy edges to handle wrapping */
-		copyEdges(nextGen);
-		
-		/* Swap boards over */
-		char[] tmp = board;
-		board = nextGen;
-		nextGen = tmp;
+		/* Copy edges, swap boards over and publish delta */
+		finishGeneration();
 	}
 	
 	/**
@@ -102,10 +103,7 @@ public class LineParallelLife extends ParallelLife {
 	 */
 	public Object call() {
 		/* Do a line of cells */
-		int index = (line + 1) * (boardDim + 2) + 1;
-		for (int i = index; i < (index + boardDim); i++) {
-			nextGen[i] = live(i);
-		}
+		ageBlock((line + 1) * (boardDim + 2) + 1, boardDim, 1);
 		
 		return null;	// Nothing to return
 	}
@@ -1,118 +1,375 @@
 package org.campbelll.life;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Main program for running the Game-of-Life jar.
  * <p>
  * Copied from life.Main by Mark Utting
+ * <p>
+ * Runs a scaling study of one engine over a range of thread counts, printing
+ * the time of every run with its speedup and parallel efficiency, and the
+ * serial fraction of Amdahl's law fitted to the mean times. Usage:
+ * <pre>
+ * Main [-e engine] [-s boardSize] [-g generations] [-t minThreads-maxThreads]
+ *      [-p pattern] [-r repeats] [-w warmup] [-c cacheSizeKB] [-d tileDim]
+ *      [-f text|csv|json] [--preset my|amazon]
+ * </pre>
+ * Engines are sequential, line, block, cache, tiled, rolling, rollingband,
+ * hybrid and auto. The pattern is a classpath resource, or a file if no
+ * resource has that name. Speedup and efficiency are relative to the mean
+ * time of the smallest thread count, which should be 1 for the usual
+ * meanings.
  *
  * @author Campbell Lockley
  */
 public class Main {
-	/* Run parameters */
-//	final static int GENERATIONS = 4080;	// My parameters
-//	final static int BOARD_SIZE = 1024;
-//	final static int NUM_THREADS = 4;
-//	final static int CACHE_SIZE = 32;
-	final static int GENERATIONS = 20;		// Amazon parameters
-	final static int BOARD_SIZE = 32768;
-	final static int NUM_THREADS = 32;
-	final static int CACHE_SIZE = 32;
+	/* Engines createLife() knows */
+	final static List<String> ENGINES = Arrays.asList("sequential", "line",
+			"block", "cache", "tiled", "rolling", "rollingband", "hybrid",
+			"auto");
+
+	/* Patterns, parsed once for every run */
+	final static PatternLibrary library = new PatternLibrary();
+
+	/* Run parameters, "Amazon parameters" by default */
+	int generations = 20;
+	int boardSize = 32768;
+	int minThreads = 1;
+	int maxThreads = 32;
+	int cacheSize = 32;
+	int tileDim = 64;
+	int repeats = 1;
+	int warmup = 100;
+	String engine = "line";
+	String pattern = "/gosperGliderGun.patt";
+	String format = "text";
 
 	/**
 	 * Entry point when running the jar.
-	 * 
+	 *
 	 * @param args Command line arguments.
 	 */
 	public static void main(String[] args)  {
-		Life life;
-
-		/* Run all LineParallelLife runs */
-		System.out.println("LineParallelLife: Starting " + GENERATIONS + 
-				" generations of " + BOARD_SIZE + "x" + BOARD_SIZE);
-		for (int i = 1; i <= NUM_THREADS; i++) {
-			System.out.print(i + " Thread: ");
-			life = new LineParallelLife(BOARD_SIZE, i);
-			try {
-				runTest(life);
-			} catch (IOException | FileFormatException e) {
-				System.err.println("LineParallelLife run "+i+" failed.");
-			}
+		Main main = new Main();
+		try {
+			main.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: Main [-e engine] [-s boardSize] "
+					+ "[-g generations] [-t minThreads-maxThreads] "
+					+ "[-p pattern] [-r repeats] [-w warmup] [-c cacheSizeKB] "
+					+ "[-d tileDim] [-f text|csv|json] [--preset my|amazon]");
+			System.exit(1);
 		}
-		
-		/* Run all BlockParallelLife runs */
-		System.out.println("BlockParallelLife: Starting " + GENERATIONS + 
-				" generations of " + BOARD_SIZE + "x" + BOARD_SIZE);
-		for (int i = 1; i <= NUM_THREADS; i++) {
-			System.out.print(i + " Thread: ");
-			life = new BlockParallelLife(BOARD_SIZE, i);
-			try {
-				runTest(life);
-			} catch (IOException | FileFormatException e) {
-				System.err.println("BlockParallelLife run "+i+" failed.");
-			}
+
+		try {
+			main.report(main.runAll(), System.out);
+		} catch (IOException | FileFormatException | TimeoutException e) {
+			System.err.println(main.engine + " run failed: " + e);
+			System.exit(1);
 		}
+	}
 
-		/* Run SequentialLife run */
-		System.out.println("SequentialLife: Starting " + GENERATIONS + 
-				" generations of " + BOARD_SIZE + "x" + BOARD_SIZE);
-		life = new SequentialLife(BOARD_SIZE);
+	/**
+	 * Sets run parameters from command line arguments.
+	 *
+	 * @param args Command line arguments.
+	 * @throws IllegalArgumentException if an argument is invalid.
+	 */
+	void parse(String[] args) {
 		try {
-			runTest(life);
-		} catch (IOException | FileFormatException e) {
-			System.err.println("SequentialLife run failed.");
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException("Missing value for "
+							+ args[i]);
+				}
+				String value = args[i + 1];
+				switch (args[i]) {
+				case "-e":	engine = value;							break;
+				case "-s":	boardSize = Integer.parseInt(value);	break;
+				case "-g":	generations = Integer.parseInt(value);	break;
+				case "-p":	pattern = value;						break;
+				case "-r":	repeats = Integer.parseInt(value);		break;
+				case "-w":	warmup = Integer.parseInt(value);		break;
+				case "-c":	cacheSize = Integer.parseInt(value);	break;
+				case "-d":	tileDim = Integer.parseInt(value);		break;
+				case "-f":	format = value;							break;
+				case "-t":
+					String[] range = value.split("-");
+					minThreads = Integer.parseInt(range[0]);
+					maxThreads = Integer.parseInt(range[range.length - 1]);
+					break;
+				case "--preset":
+					if (value.equals("my")) {			// My parameters
+						generations = 4080;
+						boardSize = 1024;
+						maxThreads = 4;
+						cacheSize = 32;
+					} else if (value.equals("amazon")) {	// Amazon parameters
+						generations = 20;
+						boardSize = 32768;
+						maxThreads = 32;
+						cacheSize = 32;
+					} else {
+						throw new IllegalArgumentException("Unknown preset "
+								+ value);
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option "
+							+ args[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: "
+					+ e.getMessage());
 		}
-		
-		/* Run all CacheParallelLife runs */
-		System.out.println("CacheParallelLife: Starting " + GENERATIONS + 
-				" generations of " + BOARD_SIZE + "x" + BOARD_SIZE);
-		for (int i = 1; i <= NUM_THREADS; i++) {
-			System.out.print(i + " Thread: ");
-			life = new CacheParallelLife(BOARD_SIZE, i, CACHE_SIZE);
-			try {
-				runTest(life);
-			} catch (IOException | FileFormatException e) {
-				System.err.println("CacheParallelLife run "+i+" failed.");
+		if ((minThreads < 1) || (maxThreads < minThreads) || (repeats < 1) ||
+				(generations < 1) || (boardSize < 1) || (warmup < 0)) {
+			throw new IllegalArgumentException("Invalid run parameters");
+		}
+		if (!format.equals("text") && !format.equals("csv") &&
+				!format.equals("json")) {
+			throw new IllegalArgumentException("Unknown format " + format);
+		}
+		if (!ENGINES.contains(engine)) {
+			throw new IllegalArgumentException("Unknown engine " + engine);
+		}
+	}
+
+	/**
+	 * Creates an instance of the engine being run.
+	 *
+	 * @param threads Number of threads for the engine to use.
+	 * @return New engine.
+	 * @throws IllegalArgumentException if the engine is unknown.
+	 */
+	Life createLife(int threads) {
+		switch (engine) {
+		case "sequential":	return new SequentialLife(boardSize);
+		case "line":		return new LineParallelLife(boardSize, threads);
+		case "block":		return new BlockParallelLife(boardSize, threads);
+		case "cache":
+			return new CacheParallelLife(boardSize, threads, cacheSize);
+		case "tiled":
+			return new TiledParallelLife(boardSize, threads, tileDim);
+		case "rolling":		return new RollingRowLife(boardSize);
+		case "rollingband":
+			return new RollingBandParallelLife(boardSize, threads,
+					Math.min(boardSize, threads * 4));
+		case "hybrid":		return new HybridLife(boardSize);
+		case "auto":
+			return new AutoTuningLife(boardSize, threads, cacheSize);
+		default:
+			throw new IllegalArgumentException("Unknown engine " + engine);
+		}
+	}
+
+	/**
+	 * Tests whether the engine being run uses threads.
+	 *
+	 * @return False for sequential engines, which are only run once.
+	 */
+	boolean isParallel() {
+		return !engine.equals("sequential") && !engine.equals("rolling") &&
+				!engine.equals("hybrid");
+	}
+
+	/**
+	 * Runs every thread count the given number of times.
+	 *
+	 * @return Runs, in the order they were run.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the pattern file is formated incorrectly.
+	 * @throws TimeoutException if a generation times out.
+	 */
+	List<Run> runAll()
+			throws IOException, FileFormatException, TimeoutException {
+		Stamp stamp = loadStamp();
+		List<Run> runs = new ArrayList<Run>();
+		final int last = isParallel() ? maxThreads : minThreads;
+		for (int threads = minThreads; threads <= last; threads++) {
+			for (int repeat = 0; repeat < repeats; repeat++) {
+				if (format.equals("text")) {
+					System.out.print(engine + " " + threads + " Thread: ");
+				}
+				Life life = createLife(threads);
+				double seconds = runTest(life, stamp) / 1.0e9;
+				runs.add(new Run(threads, repeat, seconds));
+				if (format.equals("text")) {
+					System.out.println("Time taken was " + seconds + " secs");
+				}
 			}
 		}
+		return runs;
 	}
-	
+
 	/**
-	 * Sets up and runs a given implementation of {@link Life}.
-	 * 
-	 * @param life The Game of Life implementation to run.
+	 * Gets the pattern being run from the library, parsing it from a file if
+	 * there is no resource of that name.
+	 *
+	 * @return Stamp of the pattern.
 	 * @throws IOException if there is an I/O error.
 	 * @throws FileFormatException if the pattern file is formated incorrectly.
 	 */
-	public static void runTest(Life life) 
-			throws IOException, FileFormatException {
-		InputStream input = Main.class
-				.getResourceAsStream("/gosperGliderGun.patt");
-		life.loadPattern(input);
-		
+	Stamp loadStamp() throws IOException, FileFormatException {
+		if (!library.contains(pattern) &&
+				(Main.class.getResource(pattern) == null)) {
+			File file = new File(pattern);
+			if (!file.isFile()) {
+				throw new FileFormatException("Pattern " + pattern
+						+ " not found");
+			}
+			library.put(pattern, Stamp.parse(new FileInputStream(file)));
+		}
+		return library.get(pattern);
+	}
+
+	/**
+	 * Sets up and times a given implementation of {@link Life}.
+	 *
+	 * @param life The Game of Life implementation to run.
+	 * @param stamp Pattern to place on the board.
+	 * @return Time taken by the generations in nanoseconds.
+	 * @throws TimeoutException if a generation times out.
+	 */
+	long runTest(Life life, Stamp stamp) throws TimeoutException {
 		try {
-			life.warmup(100);
-		} catch (TimeoutException e) {
-			System.err.println("warmup() timed out");
-			e.printStackTrace();
+			life.stamp(stamp, stamp.getX(), stamp.getY());
+			life.warmup(warmup);
+
+			final long startTime = System.nanoTime();
+			for (int gen = 0; gen < generations; gen++) life.age();
+			return System.nanoTime() - startTime;
+		} finally {
+			life.cleanUp();
 		}
-		
-		final long startTime = System.nanoTime();
-		for (int gen = 0; gen < GENERATIONS; gen++) {
-			try {
-				life.age();
-			} catch (TimeoutException e) {
-				System.err.println("age() timed out");
-				e.printStackTrace();
+	}
+
+	/**
+	 * Prints runs with their speedup and efficiency, and the fitted serial
+	 * fraction, in the chosen format.
+	 *
+	 * @param runs Runs to report.
+	 * @param out Stream to print to.
+	 */
+	void report(List<Run> runs, PrintStream out) {
+		/* Mean time of each thread count */
+		final int counts = runs.get(runs.size() - 1).threads - minThreads + 1;
+		int[] threads = new int[counts];
+		double[] means = new double[counts];
+		for (int i = 0; i < counts; i++) threads[i] = minThreads + i;
+		for (Run run : runs) {
+			means[run.threads - minThreads] += run.seconds / repeats;
+		}
+		final double base = means[0];
+		final double serial = serialFraction(threads, means);
+
+		if (format.equals("csv")) {
+			out.println("engine,boardSize,generations,threads,repeat,seconds,"
+					+ "speedup,efficiency,serialFraction");
+			for (Run run : runs) {
+				out.println(String.format(Locale.ROOT,
+						"%s,%d,%d,%d,%d,%.6f,%.4f,%.4f,%.4f", engine, boardSize,
+						generations, run.threads, run.repeat, run.seconds,
+						base / run.seconds, efficiency(base, run), serial));
+			}
+		} else if (format.equals("json")) {
+			out.println("{");
+			out.println("  \"engine\": \"" + engine + "\",");
+			out.println("  \"boardSize\": " + boardSize + ",");
+			out.println("  \"generations\": " + generations + ",");
+			out.println("  \"pattern\": \"" + pattern.replace("\\", "\\\\")
+					.replace("\"", "\\\"") + "\",");
+			out.println(String.format(Locale.ROOT,
+					"  \"serialFraction\": %.4f,", serial));
+			out.println("  \"runs\": [");
+			for (int i = 0; i < runs.size(); i++) {
+				Run run = runs.get(i);
+				out.println(String.format(Locale.ROOT,
+						"    { \"threads\": %d, \"repeat\": %d, "
+						+ "\"seconds\": %.6f, \"speedup\": %.4f, "
+						+ "\"efficiency\": %.4f }%s", run.threads, run.repeat,
+						run.seconds, base / run.seconds, efficiency(base, run),
+						(i + 1 < runs.size()) ? "," : ""));
+			}
+			out.println("  ]");
+			out.println("}");
+		} else {
+			for (int i = 0; i < counts; i++) {
+				out.println(String.format(Locale.ROOT,
+						"%d threads: mean %.4f secs, speedup %.2f, "
+						+ "efficiency %.2f", threads[i], means[i],
+						base / means[i],
+						base / means[i] * minThreads / threads[i]));
 			}
+			out.println(String.format(Locale.ROOT,
+					"Amdahl serial fraction %.4f", serial));
 		}
-		final long endTime = System.nanoTime();
-		System.out.println("Time taken was " + (endTime - startTime) / 1.0e9 + 
-				" secs");
-		life.cleanUp();
 	}
-	
+
+	/**
+	 * Gets the parallel efficiency of a run, relative to the base time.
+	 *
+	 * @param base Mean time of the smallest thread count.
+	 * @param run Run.
+	 * @return Speedup divided by the relative number of threads.
+	 */
+	private double efficiency(double base, Run run) {
+		return base / run.seconds * minThreads / run.threads;
+	}
+
+	/**
+	 * Fits the serial fraction f of Amdahl's law, T(p) = T(1) (f + (1 - f) /
+	 * p), to mean times by least squares.
+	 * <p>
+	 * With n = p / p0 for the smallest thread count p0, a = T(p) / T(p0) -
+	 * 1 / n and b = 1 - 1 / n, the law is a = f b, so f = sum(a b) / sum(b^2).
+	 *
+	 * @param threads Thread counts, smallest first.
+	 * @param means Mean time of each thread count.
+	 * @return Serial fraction, 1 if there is only one thread count.
+	 */
+	static double serialFraction(int[] threads, double[] means) {
+		double ab = 0, bb = 0, a, b;
+		for (int i = 1; i < threads.length; i++) {
+			b = 1 - (double) threads[0] / threads[i];
+			a = means[i] / means[0] - (double) threads[0] / threads[i];
+			ab += a * b;
+			bb += b * b;
+		}
+		return (bb == 0) ? 1 : ab / bb;
+	}
+
+	/**
+	 * Time of one run.
+	 */
+	static class Run {
+		/* Threads used, repeat number and seconds taken */
+		final int threads, repeat;
+		final double seconds;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param threads Threads used.
+		 * @param repeat Repeat number, from 0.
+		 * @param seconds Seconds taken by the generations.
+		 */
+		Run(int threads, int repeat, double seconds) {
+			this.threads = threads;
+			this.repeat = repeat;
+			this.seconds = seconds;
+		}
+	}
+
 }
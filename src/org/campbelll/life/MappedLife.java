@@ -0,0 +1,453 @@
+/* ************************************************************************* *
+ * Name:		MappedLife.java
+ * Description:	Out of core implementation of game of life which streams
+ * 				bands of rows between memory-mapped files.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.campbelll.life.Life.ALIVE;
+import static org.campbelll.life.Life.DEAD;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Out of core game of life, for boards larger than the heap or RAM.
+ * <p>
+ * The board is kept in a file, a bit per cell, with bit (x &amp; 7) of byte
+ * x / 8 of a row being cell x. A generation reads the board from one file
+ * and writes the next generation to a second file, and the two files swap
+ * roles each generation as board[] and nextGen[] do in {@link Life}.
+ * <p>
+ * The board is streamed through a window of three bands of rows: the band
+ * before, the band being computed and the band after. The last row of the
+ * band before and the first row of the band after are the rows around the
+ * band being computed, so only one band is unpacked into cells at a time. The
+ * row above the first band and the row below the last band wrap round to
+ * the bottom and top of the board, as {@link Life#copyEdges(char[])} does in
+ * memory, and are read at the start of each generation. Bands are read by a
+ * background reader thread, two bands ahead of the band being computed, so
+ * I/O is done in large sequential chunks which overlap with computation.
+ * <p>
+ * Each file is mapped once, in segments of up to a gigabyte holding a whole
+ * number of bands, and the mappings are kept for the life of the object, so
+ * the number of mapped regions doesn't grow with the number of generations.
+ * <p>
+ * Once a MappedLife has finished being used {@link #cleanUp()} must be
+ * called to stop the reader thread and close the files.
+ *
+ * @author Campbell Lockley
+ */
+public class MappedLife {
+	/** Timeout for reading a band in milliseconds */
+	public final static long timeout = 10000;
+	/** Largest mapped segment of a file in bytes, unless a band is larger. */
+	public final static long SEGMENT_BYTES = 1L << 30;
+
+	/* Board dimension, rows per band, bytes per packed row and band count */
+	private final int boardDim, bandRows, rowBytes, bands;
+	private final int stride;
+
+	/* Rows in each mapped segment, a whole number of bands */
+	private final int segmentRows;
+
+	/* Files holding the board and the next generation, and their mappings */
+	private File current, next;
+	private FileChannel boardFile, nextGenFile;
+	private MappedByteBuffer[] board, nextGen;
+
+	/* Window of the band being computed, with a row above and below */
+	private final char[] window, result;
+
+	/* Packed rows of the band being written */
+	private final byte[] packed;
+
+	/* Generation counter */
+	private long generation;
+
+	/* Kernel for the stride of the window */
+	private final SlidingColumnKernel kernel;
+
+	/* Background thread reading bands ahead */
+	private final ExecutorService reader;
+
+	/**
+	 * Constructor. A board file which is already the size of the board is
+	 * kept, so a run can be continued, otherwise the board starts empty.
+	 *
+	 * @param boardDim Size of board dimension.
+	 * @param bandRows Number of rows in each band, at most boardDim. A band
+	 * must fit in an int of bytes.
+	 * @param current File holding the board.
+	 * @param next File for the next generation.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public MappedLife(int boardDim, int bandRows, File current, File next)
+			throws IOException {
+		if ((bandRows < 1) || (bandRows > boardDim) ||
+				((long) bandRows * ((boardDim + 7) >>> 3) > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("Invalid band parameters");
+		}
+		this.boardDim = boardDim;
+		this.bandRows = bandRows;
+		this.rowBytes = (boardDim + 7) >>> 3;
+		this.bands = (boardDim + bandRows - 1) / bandRows;
+		this.stride = boardDim + 2;
+		this.segmentRows = (int) Math.min(boardDim, bandRows * 
+				Math.max(1, SEGMENT_BYTES / ((long) bandRows * rowBytes)));
+
+		this.current = current;
+		this.next = next;
+		this.boardFile = open(current);
+		this.nextGenFile = open(next);
+		this.board = map(boardFile);
+		this.nextGen = map(nextGenFile);
+
+		this.window = new char[(bandRows + 2) * stride];
+		this.result = new char[(bandRows + 2) * stride];
+		this.packed = new byte[bandRows * rowBytes];
+		this.kernel = new SlidingColumnKernel(stride);
+
+		this.reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "mapped-reader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Opens a board file, sizing it to the board.
+	 *
+	 * @param file File to open.
+	 * @return Channel of the file.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private FileChannel open(File file) throws IOException {
+		@SuppressWarnings("resource")
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		final long length = (long) boardDim * rowBytes;
+		if (raf.length() != length) {
+			raf.setLength(0);
+			raf.setLength(length);
+		}
+		return raf.getChannel();
+	}
+
+	/**
+	 * Maps a board file, a segment of {@link #segmentRows} rows at a time.
+	 *
+	 * @param channel Board file.
+	 * @return Mappings of the segments of the file.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private MappedByteBuffer[] map(FileChannel channel) throws IOException {
+		MappedByteBuffer[] segments = 
+				new MappedByteBuffer[(boardDim + segmentRows - 1) / segmentRows];
+		for (int s = 0; s < segments.length; s++) {
+			final int rows = Math.min(segmentRows, boardDim - s * segmentRows);
+			segments[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+					(long) s * segmentRows * rowBytes, (long) rows * rowBytes);
+		}
+		return segments;
+	}
+
+	/**
+	 * Gets a view of the segment of a mapped board file holding a row, 
+	 * positioned at the row. A band never spans two segments.
+	 *
+	 * @param map Mappings of the board file.
+	 * @param y Row to position at.
+	 * @return View of the segment, with its own position.
+	 */
+	private ByteBuffer row(MappedByteBuffer[] map, int y) {
+		ByteBuffer segment = map[y / segmentRows].duplicate();
+		segment.position((y % segmentRows) * rowBytes);
+		return segment;
+	}
+
+	/**
+	 * Calculates the next generation, streaming every band of the board
+	 * through the window.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 * @throws TimeoutException if reading a band times out.
+	 */
+	public void age() throws IOException, TimeoutException {
+		/* Rows wrapping round the top and bottom of the board */
+		final byte[] lastRow = read(board, boardDim - 1, 1);
+		final byte[] firstRow = read(board, 0, 1);
+
+		/* Read the first two bands ahead */
+		Future<byte[]> following = readAhead(0);
+		Future<byte[]> after = (bands > 1) ? readAhead(1) : null;
+
+		byte[] before = null, band;
+		int rows;
+		for (int b = 0; b < bands; b++) {
+			/* Slide the window on a band, and start reading the next */
+			band = await(following);
+			following = after;
+			after = (b + 2 < bands) ? readAhead(b + 2) : null;
+			rows = Math.min(bandRows, boardDim - b * bandRows);
+
+			/* Unpack the band with the rows around it */
+			if (before == null) {
+				unpack(lastRow, 0, 0);
+			} else {
+				unpack(before, before.length - rowBytes, 0);
+			}
+			for (int y = 0; y < rows; y++) unpack(band, y * rowBytes, y + 1);
+			if (following == null) {
+				unpack(firstRow, 0, rows + 1);
+			} else {
+				/* Only the first row of the band after is needed yet */
+				unpack(await(following), 0, rows + 1);
+			}
+
+			/* Compute and write the band */
+			for (int y = 1; y <= rows; y++) {
+				kernel.ageRow(window, result, y * stride + 1, boardDim);
+			}
+			pack(rows);
+			write(nextGen, b * bandRows, rows);
+			before = band;
+		}
+
+		/* Swap boards */
+		MappedByteBuffer[] tmp = board;
+		board = nextGen;
+		nextGen = tmp;
+		FileChannel tmpChannel = boardFile;
+		boardFile = nextGenFile;
+		nextGenFile = tmpChannel;
+		File tmpFile = current;
+		current = next;
+		next = tmpFile;
+		generation++;
+	}
+
+	/**
+	 * Starts reading a band on the reader thread.
+	 *
+	 * @param b Band to read.
+	 * @return Future of the packed rows of the band.
+	 */
+	private Future<byte[]> readAhead(final int b) {
+		final MappedByteBuffer[] map = board;
+		return reader.submit(new Callable<byte[]>() {
+			public byte[] call() {
+				return read(map, b * bandRows,
+						Math.min(bandRows, boardDim - b * bandRows));
+			}
+		});
+	}
+
+	/**
+	 * Waits for a band to be read.
+	 *
+	 * @param band Future of the band.
+	 * @return Packed rows of the band.
+	 * @throws IOException if reading the band failed.
+	 * @throws TimeoutException if reading the band times out.
+	 */
+	private byte[] await(Future<byte[]> band)
+			throws IOException, TimeoutException {
+		try {
+			return band.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading band");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Reading band failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Reads packed rows of a band, or part of one, from a mapped board file.
+	 *
+	 * @param map Mappings of the board file.
+	 * @param y First row to read.
+	 * @param rows Number of rows to read.
+	 * @return Packed rows.
+	 */
+	private byte[] read(MappedByteBuffer[] map, int y, int rows) {
+		byte[] bytes = new byte[rows * rowBytes];
+		row(map, y).get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Writes the packed rows of the band to a mapped board file.
+	 *
+	 * @param map Mappings of the board file.
+	 * @param y First row to write.
+	 * @param rows Number of rows to write.
+	 */
+	private void write(MappedByteBuffer[] map, int y, int rows) {
+		row(map, y).put(packed, 0, rows * rowBytes);
+	}
+
+	/**
+	 * Unpacks a packed row into a row of the window, including its edges.
+	 *
+	 * @param bytes Packed rows.
+	 * @param offset Offset of the row in bytes.
+	 * @param y Row of the window.
+	 */
+	private void unpack(byte[] bytes, int offset, int y) {
+		final int row = y * stride;
+		for (int x = 0; x < boardDim; x++) {
+			window[row + x + 1] = ((bytes[offset + (x >>> 3)] & (1 << (x & 7)))
+					!= 0) ? ALIVE : DEAD;
+		}
+		window[row] = window[row + boardDim];
+		window[row + boardDim + 1] = window[row + 1];
+	}
+
+	/**
+	 * Packs the computed rows of the band.
+	 *
+	 * @param rows Number of rows in the band.
+	 */
+	private void pack(int rows) {
+		Arrays.fill(packed, (byte) 0);
+		int row;
+		for (int y = 0; y < rows; y++) {
+			row = (y + 1) * stride + 1;
+			for (int x = 0; x < boardDim; x++) {
+				if (result[row + x] == ALIVE) {
+					packed[y * rowBytes + (x >>> 3)] |= 1 << (x & 7);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads a pattern onto the board, in the format of
+	 * {@link Life#loadPattern(InputStream)}.
+	 *
+	 * @param in Input stream to read the pattern from.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if format of pattern is incorrect.
+	 */
+	public void loadPattern(InputStream in)
+			throws IOException, FileFormatException {
+		Stamp stamp = Stamp.parse(in);
+		if ((stamp.getWidth() > boardDim) || (stamp.getHeight() > boardDim)) {
+			throw new FileFormatException(
+					"Input pattern is larger than board size");
+		}
+		for (int y = 0; y < stamp.getHeight(); y++) {
+			for (int x = 0; x < stamp.getWidth(); x++) {
+				if (stamp.isAlive(x, y)) {
+					setCell(stamp.getX() + x, stamp.getY() + y, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets a cell of the board.
+	 *
+	 * @param x x position on the board. Wraps at the edges of the board.
+	 * @param y y position on the board. Wraps at the edges of the board.
+	 * @param alive Whether the cell is alive.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public void setCell(int x, int y, boolean alive) throws IOException {
+		x = ((x % boardDim) + boardDim) % boardDim;
+		y = ((y % boardDim) + boardDim) % boardDim;
+		ByteBuffer segment = row(board, y);
+		final int index = segment.position() + (x >>> 3);
+		byte bits = segment.get(index);
+		bits = (byte) (alive ? (bits | (1 << (x & 7))) : (bits & ~(1 << (x & 7))));
+		segment.put(index, bits);
+	}
+
+	/**
+	 * Tests whether a cell of the board is alive.
+	 *
+	 * @param x x position on the board. Wraps at the edges of the board.
+	 * @param y y position on the board. Wraps at the edges of the board.
+	 * @return True if the cell is alive.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public boolean isAlive(int x, int y) throws IOException {
+		x = ((x % boardDim) + boardDim) % boardDim;
+		y = ((y % boardDim) + boardDim) % boardDim;
+		ByteBuffer segment = row(board, y);
+		return (segment.get(segment.position() + (x >>> 3)) & 
+				(1 << (x & 7))) != 0;
+	}
+
+	/**
+	 * Counts the living cells of the board, a band at a time.
+	 *
+	 * @return Population of the board.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public long population() throws IOException {
+		long population = 0;
+		for (int y = 0; y < boardDim; y += bandRows) {
+			for (byte bits : read(board, y, Math.min(bandRows, boardDim - y))) {
+				population += Integer.bitCount(bits & 0xff);
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Gets the file currently holding the board.
+	 *
+	 * @return Board file, which changes every generation.
+	 */
+	public File getCurrentFile() {
+		return current;
+	}
+
+	/**
+	 * Gets the generation counter.
+	 *
+	 * @return Current generation.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Stops the reader thread and closes the files. The mappings are 
+	 * released once they are garbage collected.
+	 */
+	public void cleanUp() {
+		reader.shutdownNow();
+		try {
+			boardFile.close();
+			nextGenFile.close();
+		} catch (IOException e) {
+			/* Nothing more can be done with them */
+		}
+	}
+
+}
@@ -6,9 +6,16 @@
  * ************************************************************************* */
 package org.campbelll.life;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Abstract class representing parallel Conway's Game of Life implementations.
@@ -24,9 +31,18 @@ import java.util.concurrent.Executors;
 public abstract class ParallelLife extends Life implements Callable<Object> {
 	/** Timeout for thread pool in milliseconds */
 	public final static long timeout = 10000;
+	/** Number of placements placed by each job of stampAll(). */
+	public final static int PLACEMENT_BATCH = 64;
 	
-	/* Thread pool for parallel execution */
+	/* Milliseconds a generation may take before it is cancelled */
+	private long ageTimeout = timeout;
+	
+	/* Thread pool for parallel execution, and whether it is ours to stop */
 	protected ExecutorService pool;
+	protected boolean ownsPool = true;
+	
+	/* Scheduler ordering tile jobs by cost, for engines which use one */
+	protected TileScheduler scheduler;
 	
 	/** Default Constructor. */
 	protected ParallelLife() {
@@ -45,14 +61,261 @@ public abstract class ParallelLife extends Life implements Callable<Object> {
 		this.pool = Executors.newFixedThreadPool(numThreads);
 	}
 	
+	/**
+	 * Constructor for engines which may update the board in place.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param allocateNextGen Whether to allocate nextGen.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 */
+	protected ParallelLife(int boardDim, boolean allocateNextGen, 
+			int numThreads) {
+		super(boardDim, allocateNextGen);
+		
+		this.pool = Executors.newFixedThreadPool(numThreads);
+	}
+	
+	/**
+	 * Constructor for engines which lay the board out other than in rows.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param length Length of board[] and nextGen[].
+	 * @param numThreads Number of threads for the thread pool to use.
+	 * @see Life#Life(int, int, long, boolean)
+	 */
+	protected ParallelLife(int boardDim, long length, int numThreads) {
+		super(boardDim, boardDim, length, true);
+		
+		this.pool = Executors.newFixedThreadPool(numThreads);
+	}
+	
+	/**
+	 * Constructor for a rectangular board.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 */
+	public ParallelLife(int width, int height, int numThreads) {
+		super(width, height);
+		
+		this.pool = Executors.newFixedThreadPool(numThreads);
+	}
+	
+	/**
+	 * Constructor for a ParallelLife which shares a thread pool, such as the 
+	 * one of a {@link SimulationScheduler}.
+	 * <p>
+	 * A shared pool is not shut down by {@link #cleanUp()}.
+	 * 
+	 * @param boardDim Size of board dimension.
+	 * @param pool Thread pool to submit jobs to.
+	 */
+	public ParallelLife(int boardDim, ExecutorService pool) {
+		super(boardDim);
+		
+		this.pool = pool;
+		this.ownsPool = false;
+	}
+	
+	/**
+	 * Sets how long a generation may take before age() cancels it and throws 
+	 * a {@link TimeoutException}. Defaults to {@link #timeout}.
+	 * 
+	 * @param millis Timeout in milliseconds.
+	 */
+	public void setTimeout(long millis) {
+		this.ageTimeout = millis;
+	}
+	
+	/**
+	 * Runs the jobs of a generation on the thread pool and waits for them.
+	 * <p>
+	 * If the jobs time out, the generation is cancelled so the workers stop 
+	 * at their next row, and any worker still finishing a row is waited for. 
+	 * A cancelled generation, whether timed out or stopped by the deadline of 
+	 * {@link #runUntil(long)}, throws rather than returning, so age() never 
+	 * goes on to swap in a half computed board.
+	 * 
+	 * @param jobs Jobs computing the generation.
+	 * @throws TimeoutException if the generation timed out or was cancelled.
+	 */
+	protected void invoke(List<? extends Callable<Object>> jobs) 
+			throws TimeoutException {
+		final CancellationToken token = cancellation;
+		List<Callable<Object>> guarded = 
+				new ArrayList<Callable<Object>>(jobs.size());
+		for (Callable<Object> job : jobs) guarded.add(token.guard(job));
+		
+		try {
+			for (Future<Object> future : invokeAll(guarded, ageTimeout)) {
+				if (future.isCancelled()) token.cancel();
+			}
+		} catch (InterruptedException e) {
+			/* Shutdown thread pool and pass on interrupt */
+			token.cancel();
+			cleanUp();
+			Thread.currentThread().interrupt();
+		}
+		
+		/* Workers abandoned by the pool may still be writing a row */
+		token.awaitIdle();
+		if (token.isCancelled()) {
+			throw new TimeoutException("Generation " + (generation + 1) + 
+					" was cancelled");
+		}
+	}
+	
+	/**
+	 * Submits jobs to the thread pool and waits for them, as 
+	 * {@link ExecutorService#invokeAll(java.util.Collection, long, TimeUnit)}.
+	 * <p>
+	 * When the pool is a shared {@link ForkJoinPool}, the caller may itself 
+	 * be one of its workers, such as a simulation run by a 
+	 * {@link SimulationScheduler}. The wait is then a managed block, so the 
+	 * pool can start a spare worker rather than have every worker waiting 
+	 * for jobs that no worker is free to run.
+	 * 
+	 * @param jobs Jobs to run.
+	 * @param millis Timeout in milliseconds.
+	 * @return Futures of the jobs, cancelled if they timed out.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	private List<Future<Object>> invokeAll(
+			final List<? extends Callable<Object>> jobs, final long millis) 
+			throws InterruptedException {
+		if (!(pool instanceof ForkJoinPool)) {
+			return pool.invokeAll(jobs, millis, TimeUnit.MILLISECONDS);
+		}
+		
+		final List<List<Future<Object>>> result = 
+				new ArrayList<List<Future<Object>>>(1);
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+			@Override
+			public boolean block() throws InterruptedException {
+				result.add(pool.invokeAll(jobs, millis, 
+						TimeUnit.MILLISECONDS));
+				return true;
+			}
+			
+			@Override
+			public boolean isReleasable() {
+				return !result.isEmpty();
+			}
+		});
+		return result.get(0);
+	}
+	
+	/**
+	 * Gets the number of threads a thread pool runs jobs on, for engines 
+	 * which plan their work by thread count.
+	 * 
+	 * @param pool Thread pool.
+	 * @return Parallelism of a {@link ForkJoinPool} or size of a fixed 
+	 * {@link ThreadPoolExecutor}, otherwise the number of CPUs.
+	 */
+	protected static int parallelism(ExecutorService pool) {
+		if (pool instanceof ForkJoinPool) {
+			return ((ForkJoinPool) pool).getParallelism();
+		}
+		if (pool instanceof ThreadPoolExecutor) {
+			final int size = ((ThreadPoolExecutor) pool).getMaximumPoolSize();
+			if (size < Integer.MAX_VALUE) return size;	// Not a cached pool
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Orders and groups tile jobs with the {@link TileScheduler}, creating it 
+	 * on first use.
+	 * 
+	 * @param jobs One job per tile, in the same order every generation.
+	 * @return Jobs to submit to the thread pool.
+	 */
+	protected List<Callable<Object>> schedule(
+			List<? extends ParallelLife> jobs) {
+		if ((scheduler == null) || 
+				(scheduler.getTileCount() != jobs.size())) {
+			scheduler = new TileScheduler(jobs.size());
+		}
+		return scheduler.schedule(jobs);
+	}
+	
+	/**
+	 * Gets the scheduler holding per-tile cost statistics of the last 
+	 * generation.
+	 * 
+	 * @return The tile scheduler, or null if this engine doesn't use one or 
+	 * hasn't aged yet.
+	 */
+	public TileScheduler getScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The lowest level is counted in parallel on the thread pool.
+	 */
+	@Override
+	protected DensityPyramid buildDensityPyramid(DensityPyramid recycled) 
+			throws TimeoutException {
+		return new DensityPyramid(this, DensityPyramid.DEFAULT_LEVELS, pool, 
+				recycled);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The placements are split into batches of {@link #PLACEMENT_BATCH} and 
+	 * placed in parallel on the thread pool.
+	 */
+	@Override
+	public void stampAll(final List<Stamp.Placement> placements) 
+			throws TimeoutException {
+		List<Callable<Object>> jobs = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < placements.size(); i += PLACEMENT_BATCH) {
+			final int from = i;
+			final int to = Math.min(placements.size(), i + PLACEMENT_BATCH);
+			jobs.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for (Stamp.Placement placement : 
+							placements.subList(from, to)) {
+						place(placement.stamp, placement.x, placement.y);
+					}
+					return null;	// Nothing to return
+				}
+			});
+		}
+		
+		/* Submit the jobs to executor and wait for completion */
+		try {
+			for (Future<Object> future : invokeAll(jobs, timeout)) {
+				if (future.isCancelled()) {
+					throw new TimeoutException("Placing stamps timed out");
+				}
+			}
+		} catch (InterruptedException e) {
+			/* Shutdown thread pool and pass on interrupt */
+			cleanUp();
+			Thread.currentThread().interrupt();
+		}
+		
+		/* Copy edges to handle wrapping */
+		copyEdges(board);
+		boardWritten();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * Shuts down thread pool and terminates threads. 
+	 * Shuts down thread pool and terminates threads, unless the pool is 
+	 * shared. 
 	 */
 	@Override
 	public void cleanUp() {
-		pool.shutdownNow();
+		if (ownsPool) pool.shutdownNow();
 	}
 
 }
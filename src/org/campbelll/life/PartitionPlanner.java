@@ -0,0 +1,178 @@
+/* ************************************************************************* *
+ * Name:		PartitionPlanner.java
+ * Description:	Splits rectangular boards into balanced tiles for jobs.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+/**
+ * Plans how a board of any width and height is split into tiles, one job
+ * per tile.
+ * <p>
+ * The board is cut into a grid of columns and rows of tiles. The grid starts
+ * as coarse as the largest tile allowed, so tiles fit the cache, and is then
+ * refined one column or row at a time, cutting whichever way the tiles are
+ * longer, until there are at least the minimum number of tiles, so every
+ * thread has work. Cuts are spread evenly, so the widths of any two tiles
+ * differ by at most one cell, as do their heights, whatever the board size.
+ *
+ * @author Campbell Lockley
+ */
+public class PartitionPlanner {
+
+	/** Not instantiable. */
+	private PartitionPlanner() {
+	}
+
+	/**
+	 * Plans the tiles of a board.
+	 *
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 * @param minTiles Minimum number of tiles, if the board has that many
+	 * cells.
+	 * @param maxTileWidth Maximum width of a tile.
+	 * @param maxTileHeight Maximum height of a tile.
+	 * @return Tiles covering the board, in row-major order.
+	 */
+	public static Partition plan(int width, int height, int minTiles,
+			int maxTileWidth, int maxTileHeight) {
+		if ((width < 1) || (height < 1) || (maxTileWidth < 1) ||
+				(maxTileHeight < 1)) {
+			throw new IllegalArgumentException("Invalid partition parameters");
+		}
+
+		/* Coarsest grid whose tiles fit */
+		int columns = (width + maxTileWidth - 1) / maxTileWidth;
+		int rows = (height + maxTileHeight - 1) / maxTileHeight;
+
+		/* Cut the longer side of the tiles until there are enough */
+		while ((long) columns * rows < minTiles) {
+			final boolean wide = (long) width * rows >= (long) height * columns;
+			if ((wide && (columns < width)) || (rows == height)) {
+				if (columns == width) break;
+				columns++;
+			} else {
+				rows++;
+			}
+		}
+		return new Partition(width, height, columns, rows);
+	}
+
+	/**
+	 * Tiles of a board, as planned by {@link PartitionPlanner}.
+	 */
+	public static class Partition {
+		/* Board size, and the grid of tiles */
+		private final int width, height, columns, rows;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param width Width of the board.
+		 * @param height Height of the board.
+		 * @param columns Columns of tiles.
+		 * @param rows Rows of tiles.
+		 */
+		private Partition(int width, int height, int columns, int rows) {
+			this.width = width;
+			this.height = height;
+			this.columns = columns;
+			this.rows = rows;
+		}
+
+		/**
+		 * Gets the number of tiles.
+		 *
+		 * @return Columns times rows.
+		 */
+		public int size() {
+			return columns * rows;
+		}
+
+		/**
+		 * Gets the number of columns of tiles.
+		 *
+		 * @return Tiles across the board.
+		 */
+		public int getColumns() {
+			return columns;
+		}
+
+		/**
+		 * Gets the number of rows of tiles.
+		 *
+		 * @return Tiles down the board.
+		 */
+		public int getRows() {
+			return rows;
+		}
+
+		/**
+		 * Gets the x position of the left of a tile.
+		 *
+		 * @param tile Tile, in row-major order.
+		 * @return x position, 0 based.
+		 */
+		public int getX(int tile) {
+			return cut(tile % columns, columns, width);
+		}
+
+		/**
+		 * Gets the y position of the top of a tile.
+		 *
+		 * @param tile Tile, in row-major order.
+		 * @return y position, 0 based.
+		 */
+		public int getY(int tile) {
+			return cut(tile / columns, rows, height);
+		}
+
+		/**
+		 * Gets the width of a tile.
+		 *
+		 * @param tile Tile, in row-major order.
+		 * @return Width in cells.
+		 */
+		public int getWidth(int tile) {
+			final int column = tile % columns;
+			return cut(column + 1, columns, width) - cut(column, columns, width);
+		}
+
+		/**
+		 * Gets the height of a tile.
+		 *
+		 * @param tile Tile, in row-major order.
+		 * @return Height in cells.
+		 */
+		public int getHeight(int tile) {
+			final int row = tile / columns;
+			return cut(row + 1, rows, height) - cut(row, rows, height);
+		}
+
+		/**
+		 * Gets the offset of the top left cell of a tile in a board laid out
+		 * as in {@link Life}.
+		 *
+		 * @param tile Tile, in row-major order.
+		 * @return Index into board[].
+		 */
+		public int getStart(int tile) {
+			return (getY(tile) + 1) * (width + 2) + getX(tile) + 1;
+		}
+
+		/**
+		 * Gets the position of an evenly spread cut.
+		 *
+		 * @param i Cut number, from 0 to parts.
+		 * @param parts Number of parts.
+		 * @param length Length being cut.
+		 * @return Position of the cut.
+		 */
+		private static int cut(int i, int parts, int length) {
+			return (int) ((long) i * length / parts);
+		}
+	}
+
+}
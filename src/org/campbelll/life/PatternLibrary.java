@@ -0,0 +1,96 @@
+/* ************************************************************************* *
+ * Name:		PatternLibrary.java
+ * Description:	Cache of patterns parsed into stamps.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Library of patterns, each parsed once into a {@link Stamp} and cached.
+ * <p>
+ * Patterns are found as classpath resources by name, e.g.
+ * <code>"/gosperGliderGun.patt"</code>, or added under a name with
+ * {@link #put(String, Stamp)}. The library is thread safe.
+ *
+ * @author Campbell Lockley
+ */
+public class PatternLibrary {
+	/* Stamps by name */
+	private final ConcurrentMap<String, Stamp> stamps =
+			new ConcurrentHashMap<String, Stamp>();
+
+	/**
+	 * Gets a pattern, parsing the classpath resource of that name on first
+	 * use.
+	 *
+	 * @param name Resource name of the pattern.
+	 * @return Stamp of the pattern.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the pattern can't be found, or its format
+	 * is incorrect.
+	 */
+	public Stamp get(String name) throws IOException, FileFormatException {
+		Stamp stamp = stamps.get(name);
+		if (stamp == null) {
+			InputStream in = PatternLibrary.class.getResourceAsStream(name);
+			if (in == null) {
+				throw new FileFormatException("Pattern " + name + " not found");
+			}
+			stamp = Stamp.parse(in);
+			Stamp existing = stamps.putIfAbsent(name, stamp);
+			if (existing != null) stamp = existing;
+		}
+		return stamp;
+	}
+
+	/**
+	 * Gets a rotation or reflection of a pattern.
+	 *
+	 * @param name Resource name of the pattern.
+	 * @param transform Transform to apply.
+	 * @return Transformed stamp, cached by the untransformed stamp.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the pattern can't be found, or its format
+	 * is incorrect.
+	 */
+	public Stamp get(String name, Stamp.Transform transform)
+			throws IOException, FileFormatException {
+		return get(name).transform(transform);
+	}
+
+	/**
+	 * Adds a stamp under a name, replacing any stamp of that name.
+	 *
+	 * @param name Name of the stamp.
+	 * @param stamp Stamp to add.
+	 */
+	public void put(String name, Stamp stamp) {
+		stamps.put(name, stamp);
+	}
+
+	/**
+	 * Tests whether a pattern has been parsed or added.
+	 *
+	 * @param name Name of the pattern.
+	 * @return True if the pattern is cached.
+	 */
+	public boolean contains(String name) {
+		return stamps.containsKey(name);
+	}
+
+	/**
+	 * Gets the number of patterns cached.
+	 *
+	 * @return Number of stamps.
+	 */
+	public int size() {
+		return stamps.size();
+	}
+
+}
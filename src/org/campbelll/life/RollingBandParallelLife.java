@@ -0,0 +1,138 @@
+/* ************************************************************************* *
+ * Name:		RollingBandParallelLife.java
+ * Description:	Parallel implementation of game of life which updates bands
+ * 				of rows of the board in place.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Banded in-place parallel implementation of {@link Life}.
+ * <p>
+ * As in {@link RollingRowLife} there is no nextGen. The board is split into
+ * bands of whole rows, and each band is updated in place by a job. A band
+ * overwrites its own rows only, but its first and last rows need the old
+ * values of the rows just outside it, which neighbouring bands overwrite. So
+ * before any job runs, the row above and the row below each band are copied
+ * for that band, costing two rows per band instead of a second board.
+ * <p>
+ * If a generation times out or is cancelled, each band undoes the cells it 
+ * had flipped, so the board is still the last complete generation.
+ *
+ * @author Campbell Lockley
+ */
+public class RollingBandParallelLife extends ParallelLife {
+	/* Number of bands */
+	private int bands;
+
+	/* Parameters for call() */
+	private int first, last;
+	private char[] above, below;
+
+	/**
+	 * Constructor. Use when intending to use as a
+	 * {@link java.util.concurrent.Callable Callable}.
+	 *
+	 * @param board Pointer to pre-existing board.
+	 * @param boardDim Size of board dimension.
+	 * @param first First row of the band, 1 based as in board[].
+	 * @param last Last row of the band, 1 based as in board[].
+	 * @param above Copy of the old row above the band.
+	 * @param below Copy of the old row below the band.
+	 * @see java.util.concurrent.Callable
+	 */
+	protected RollingBandParallelLife(char[] board, int boardDim, int first,
+			int last, char[] above, char[] below) {
+		this.board = board;
+		this.boardDim = boardDim;
+		this.first = first;
+		this.last = last;
+		this.above = above;
+		this.below = below;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of board dimension.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 * @param bands Number of bands to split the board into, at most boardDim.
+	 */
+	public RollingBandParallelLife(int boardDim, int numThreads, int bands) {
+		super(boardDim, false, numThreads);
+		if ((bands < 1) || (bands > boardDim)) {
+			pool.shutdown();
+			throw new IllegalArgumentException(
+					"Number of bands must be between 1 and board dimension");
+		}
+		this.bands = bands;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation of age() saves the rows around each band, then
+	 * submits each band as a job to a thread pool and waits for every band to
+	 * be updated.
+	 *
+	 * @throws TimeoutException if a blocking method call in age() times out,
+	 * causing age() to fail.
+	 */
+	@Override
+	public void age() throws TimeoutException {
+		startGeneration();
+
+		ArrayList<RollingBandParallelLife> jobs =
+				new ArrayList<RollingBandParallelLife>(bands);
+
+		/* Create jobs where each job is a band, with the rows around it */
+		final int stride = boardDim + 2;
+		int first, last;
+		for (int band = 0; band < bands; band++) {
+			first = band * boardDim / bands + 1;
+			last = (band + 1) * boardDim / bands;
+			jobs.add(new RollingBandParallelLife(board, boardDim, first, last,
+					Arrays.copyOfRange(board, (first - 1) * stride,
+							first * stride),
+					Arrays.copyOfRange(board, (last + 1) * stride,
+							(last + 2) * stride)));
+		}
+
+		/* Pass shared state on to the jobs */
+		for (RollingBandParallelLife job : jobs) inherit(job);
+
+		/* Submit the jobs to executor and wait for completion */
+		try {
+			invoke(jobs);
+		} catch (TimeoutException e) {
+			/* Put back the rows the bands had already written */
+			for (RollingBandParallelLife job : jobs) job.undoInPlace();
+			throw e;
+		}
+
+		/* Copy edges and publish delta */
+		finishGeneration();
+	}
+
+	/**
+	 * Updates a band of the board in place.
+	 * <p>
+	 * Implementation of call() method in
+	 * {@link java.util.concurrent.Callable Callable} interface. Should be used
+	 * only when instantiated specifically as a Callable.
+	 *
+	 * @return null always.
+	 */
+	public Object call() {
+		/* Do a band of rows */
+		ageRowsInPlace(first, last, above, below);
+
+		return null;	// Nothing to return
+	}
+
+}
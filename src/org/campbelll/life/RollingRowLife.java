@@ -0,0 +1,68 @@
+/* ************************************************************************* *
+ * Name:		RollingRowLife.java
+ * Description:	Sequential implementation of game of life which updates the
+ * 				board in place using a rolling row buffer.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.Arrays;
+
+/**
+ * Sequential in-place implementation of {@link Life}.
+ * <p>
+ * There is no nextGen. The old values of each row and the rows either side
+ * of it are kept in a window of three rows, from which the row is computed
+ * and written over the board, so only a few rows of scratch space are needed
+ * instead of a second board. This halves the memory of the board, and the
+ * rows being read are still in cache when they are written.
+ *
+ * @author Campbell Lockley
+ */
+public class RollingRowLife extends Life {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of board dimension.
+	 */
+	public RollingRowLife(int boardDim) {
+		super(boardDim, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation of age() uses a single thread which updates every
+	 * row of the board in place, top to bottom. If the deadline of 
+	 * {@link #runUntil(long)} passes part way through, the rows already 
+	 * written are put back, leaving the board as it was.
+	 */
+	@Override
+	public void age() {
+		startGeneration();
+
+		/* Top edge still holds the old bottom row */
+		final int stride = boardDim + 2;
+		ageRowsInPlace(1, boardDim, Arrays.copyOf(board, stride), null);
+		if (isCancelled()) {
+			/* Deadline passed part way, so put the rows back */
+			undoInPlace();
+			return;
+		}
+
+		/* Copy edges and publish delta */
+		finishGeneration();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version of {@link Life} has nothing to clean up.
+	 */
+	public void cleanUp() {
+		return;
+	}
+
+}
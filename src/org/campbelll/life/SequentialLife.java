@@ -22,30 +22,33 @@ public class SequentialLife extends Life {
 		super(boardDim);
 	}
 	
+	/**
+	 * Constructor for a rectangular board.
+	 * 
+	 * @param width Width of the board.
+	 * @param height Height of the board.
+	 */
+	public SequentialLife(int width, int height) {
+		super(width, height);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * <p>
 	 * This implementation of age() uses a single thread which iterates over 
-	 * every cell in the board.
+	 * every cell in the board. If the deadline of {@link #runUntil(long)} 
+	 * passes part way through, the board is left as it was.
 	 */
 	@Override
 	public void age() {
-		/* Do every cell */
-		int index;
-		for (int y = 1; y < (boardDim + 1); y++) {
-			for (int x = 1; x < (boardDim + 1); x++) {
-				index = y * (boardDim + 2) + x;
-				nextGen[index] = live(index);
-			}
-		}
+		startGeneration();
 		
-		/* Copy edges to handle wrapping */
-		copyEdges(nextGen);
+		/* Do every cell, leaving the board alone if cancelled part way */
+		ageBlock(boardDim + 3, boardDim, boardHeight);
+		if (isCancelled()) return;
 		
-		/* Swap boards over */
-		char[] tmp = board;
-		board = nextGen;
-		nextGen = tmp;
+		/* Copy edges, swap boards over and publish delta */
+		finishGeneration();
 	}
 	
 	/**
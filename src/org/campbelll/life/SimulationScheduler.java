@@ -0,0 +1,233 @@
+/* ************************************************************************* *
+ * Name:		SimulationScheduler.java
+ * Description:	Runs many independent Game of Life simulations on one shared
+ * 				work-stealing thread pool.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs many independent {@link Life} simulations concurrently on one shared
+ * work-stealing thread pool.
+ * <p>
+ * Each simulation runs {@link #sliceGenerations} generations at a time and
+ * then goes to the back of the queue, so thousands of simulations share the
+ * pool fairly by generation. Each simulation has its own generation target
+ * and a future which completes with it once the target is reached.
+ * <p>
+ * Parallel engines can share the pool instead of creating their own by
+ * constructing them with {@link #getPool()}, e.g.
+ * <code>new BlockParallelLife(boardDim, scheduler.getPool())</code>.
+ * <p>
+ * Blocking I/O, such as loading patterns and writing results, runs on a
+ * separate I/O executor via {@link #io(Callable)} so it never ties up a
+ * compute worker.
+ *
+ * @author Campbell Lockley
+ */
+public class SimulationScheduler {
+	/** Default number of generations run before a simulation yields. */
+	public final static int DEFAULT_SLICE_GENERATIONS = 16;
+
+	/* Compute pool, I/O executor and generations per time slice */
+	private final ForkJoinPool pool;
+	private final ExecutorService io;
+	/** Number of generations run before a simulation yields. */
+	protected final int sliceGenerations;
+
+	/* Number of simulations submitted but not yet complete */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * Constructor. Uses one compute thread per CPU.
+	 */
+	public SimulationScheduler() {
+		this(Runtime.getRuntime().availableProcessors(),
+				DEFAULT_SLICE_GENERATIONS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parallelism Number of compute threads.
+	 * @param sliceGenerations Number of generations run before a simulation
+	 * yields to the others.
+	 */
+	public SimulationScheduler(int parallelism, int sliceGenerations) {
+		if (sliceGenerations < 1) {
+			throw new IllegalArgumentException(
+					"Slice must be at least 1 generation");
+		}
+		this.sliceGenerations = sliceGenerations;
+
+		/* FIFO local queues, so a yielding simulation goes to the back */
+		this.pool = new ForkJoinPool(parallelism,
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		this.io = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r,
+						"SimulationScheduler-io-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Submits a simulation to run for a number of generations.
+	 *
+	 * @param life Simulation to run. Must not be aged by anything else until
+	 * the future completes.
+	 * @param generations Number of generations to run it for.
+	 * @return Future completing with the simulation once it has run the
+	 * generations, or exceptionally if age() fails. Cancelling the future
+	 * stops the simulation at the end of its current slice.
+	 */
+	public CompletableFuture<Life> submit(Life life, long generations) {
+		Simulation simulation = new Simulation(life,
+				life.getGeneration() + generations);
+		active.incrementAndGet();
+		pool.execute(simulation);
+		return simulation.future;
+	}
+
+	/**
+	 * Submits a simulation which first loads a pattern. The pattern is opened
+	 * and loaded on the I/O executor, then the simulation is scheduled.
+	 *
+	 * @param life Simulation to run.
+	 * @param pattern Opens the pattern to load, in the format of
+	 * {@link Life#loadPattern(InputStream)}.
+	 * @param generations Number of generations to run it for.
+	 * @return Future completing with the simulation once it has run the
+	 * generations, or exceptionally if loading or age() fails.
+	 */
+	public CompletableFuture<Life> submit(final Life life,
+			final Callable<InputStream> pattern, final long generations) {
+		return io(new Callable<Life>() {
+			@Override
+			public Life call() throws Exception {
+				life.loadPattern(pattern.call());
+				return life;
+			}
+		}).thenCompose(new Function<Life, CompletableFuture<Life>>() {
+			@Override
+			public CompletableFuture<Life> apply(Life loaded) {
+				return submit(loaded, generations);
+			}
+		});
+	}
+
+	/**
+	 * Runs blocking I/O on the I/O executor, off the compute workers.
+	 *
+	 * @param task Task to run.
+	 * @return Future completing with the result of the task.
+	 */
+	public <T> CompletableFuture<T> io(final Callable<T> task) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		io.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					future.complete(task.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Gets the shared compute pool, for parallel engines to submit jobs to.
+	 *
+	 * @return The work-stealing compute pool.
+	 */
+	public ExecutorService getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gets the number of simulations submitted and not yet complete.
+	 *
+	 * @return Number of active simulations.
+	 */
+	public int getActive() {
+		return active.get();
+	}
+
+	/**
+	 * Shuts down the compute pool and I/O executor. Simulations still running
+	 * are abandoned and their futures never complete.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+		io.shutdownNow();
+	}
+
+	/**
+	 * A simulation being run, one time slice per execution.
+	 */
+	private class Simulation implements Runnable {
+		/* Simulation, its target and its future */
+		private final Life life;
+		private final long target;
+		final CompletableFuture<Life> future = new CompletableFuture<Life>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param life Simulation to run.
+		 * @param target Generation to stop at.
+		 */
+		Simulation(Life life, long target) {
+			this.life = life;
+			this.target = target;
+		}
+
+		/**
+		 * Runs one time slice, then yields or completes.
+		 */
+		@Override
+		public void run() {
+			if (future.isDone()) {		// Cancelled
+				active.decrementAndGet();
+				return;
+			}
+			try {
+				for (int i = 0; (i < sliceGenerations) &&
+						(life.getGeneration() < target); i++) {
+					life.age();
+				}
+			} catch (Throwable e) {
+				active.decrementAndGet();
+				future.completeExceptionally(e);
+				return;
+			}
+
+			/* Complete, or go to the back of the queue */
+			if (life.getGeneration() >= target) {
+				active.decrementAndGet();
+				future.complete(life);
+			} else {
+				pool.execute(this);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+/* ************************************************************************* *
+ * Name:		SlidingColumnKernel.java
+ * Description:	Computes rows of the next generation by carrying column sums 
+ * 				along each row.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.campbelll.life.Life.ALIVE;
+
+/**
+ * Computes rows of the next generation for boards whose rows are a fixed 
+ * distance (stride) apart in memory.
+ * <p>
+ * The rules of the Game of Life are:
+ * <ul>
+ * 	<li>A live cell with < 2 living neighbours dies</li>
+ * 	<li>A live cell with 2 or 3 living neighbours lives</li>
+ * 	<li>A live cell with > 3 living neighbours dies</li>
+ * 	<li>A dead cell with exactly 3 living neighbours lives</li>
+ * </ul>
+ * These rules can be shortened to:
+ * <ul>
+ * 	<li>If the sum of living neighbours and itself is 3, the cell will 
+ * live</li>
+ * 	<li>If the sum of living neighbours and itself is 4, the cell will 
+ * remain in its previous state</li>
+ * 	<li>Any other sum results in the cell being dead</li>
+ * </ul>
+ * This is a sliding-column kernel: the sums of each column of three cells 
+ * are carried along the row, so each cell reads three cells instead of 
+ * nine. It is not specialised at runtime. No class is generated per stride 
+ * or per rule; the stride is an ordinary field and the rule is 
+ * {@link #rule(char, int)}, so this one class serves every engine.
+ * 
+ * @author Campbell Lockley
+ */
+public final class SlidingColumnKernel {
+	/* Distance in board[] between rows */
+	private final int stride;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param stride Distance in board[] between rows.
+	 */
+	public SlidingColumnKernel(int stride) {
+		this.stride = stride;
+	}
+	
+	/**
+	 * Gets the row stride of this kernel.
+	 * 
+	 * @return Distance in board[] between rows.
+	 */
+	public int getStride() {
+		return stride;
+	}
+	
+	/**
+	 * Applies the shortened rules to one cell.
+	 * 
+	 * @param old Current state of the cell.
+	 * @param sum Number of living cells in the 3 x 3 neighbourhood of the 
+	 * cell, including itself.
+	 * @return State of the cell in the next generation.
+	 */
+	public static char rule(char old, int sum) {
+		return (sum == 3) ? Life.ALIVE : ((sum == 4) ? old : Life.DEAD);
+	}
+	
+	/**
+	 * Computes the next generation of part of a row into nextGen.
+	 * 
+	 * @param board Current board.
+	 * @param nextGen Board to write the next generation to.
+	 * @param index Offset into board[] of the first cell.
+	 * @param width Number of cells to compute.
+	 * @return Number of cells which flipped.
+	 */
+	public int ageRow(char[] board, char[] nextGen, int index, int width) {
+		final int s = stride;
+		int flipped = 0;
+		
+		/* Column sums to the left of and at the first cell */
+		int left = column(board, index - 1, s);
+		int centre = column(board, index, s);
+		int right, sum;
+		char old, c;
+		for (int i = index, end = index + width; i < end; i++) {
+			right = column(board, i + 1, s);
+			sum = left + centre + right;
+			
+			old = board[i];
+			c = rule(old, sum);
+			nextGen[i] = c;
+			if (c != old) flipped++;
+			
+			left = centre;
+			centre = right;
+		}
+		return flipped;
+	}
+	
+	/**
+	 * Counts the living cells in a column of three.
+	 * 
+	 * @param board Board to count in.
+	 * @param i Index of the middle cell.
+	 * @param s Row stride.
+	 * @return Living cells, 0 to 3.
+	 */
+	private static int column(char[] board, int i, int s) {
+		return ((board[i - s] == ALIVE) ? 1 : 0) 
+				+ ((board[i] == ALIVE) ? 1 : 0) 
+				+ ((board[i + s] == ALIVE) ? 1 : 0);
+	}
+	
+}
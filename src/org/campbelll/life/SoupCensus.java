@@ -0,0 +1,727 @@
+/* ************************************************************************* *
+ * Name:		SoupCensus.java
+ * Description:	Runs random soups to stability and counts the objects left.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Census of the objects left behind by random soups.
+ * <p>
+ * Each soup is a square of random cells in the middle of an otherwise empty
+ * wrapped board. Soups are run 64 at a time in an {@link EnsembleLife}, with
+ * a batch of soups per job on a thread pool. Every {@link #HISTORY}
+ * generations the board is XORed with each of the last {@link #HISTORY}
+ * generations, and a soup has settled once its board repeats, or once its
+ * population does if spaceships are flying round the board. The cells
+ * alive in any phase of a settled soup's last period are segmented into
+ * 8-connected objects, wrapping at the edges, and its slice is refilled
+ * with the next soup.
+ * <p>
+ * Each object is classified by evolving it alone, giving a code as used by
+ * other soup searchers: "xs" and the population for still lifes, "xp" and
+ * the period for oscillators, "xq" and the period for spaceships, or "zz"
+ * for anything else, followed by the rows of its canonical phase in hex.
+ * The canonical phase is the smallest over every phase, rotation and
+ * reflection, so all copies of an object share a code. Classifications are
+ * cached by the canonical form of the phase seen, so after the first few
+ * soups almost every object is a hash lookup.
+ * <p>
+ * As the board wraps, objects which escape the board, such as gliders,
+ * return and may collide with the ash, so boards should be several times
+ * the size of the soups. Once a census has finished {@link #cleanUp()} must
+ * be called to shutdown the thread pool.
+ *
+ * @author Campbell Lockley
+ */
+public class SoupCensus {
+	/** Number of generations kept when looking for a repeat. */
+	public final static int HISTORY = 30;
+	/** Largest number of soups run by each job. */
+	public final static int BATCH_SIZE = 1024;
+	/** Smallest number of soups run by each job, one per lane. */
+	public final static int MIN_BATCH_SIZE = 64;
+	/* Jobs per thread, so threads finishing early can take more */
+	private final static int BATCHES_PER_THREAD = 4;
+	/** Chance of each cell of a soup being alive. */
+	public final static double DENSITY = 0.5;
+
+	/* Board, soup and generation limit of every soup */
+	private final int boardDim, soupDim, maxGenerations;
+
+	/* Thread pool running batches of soups */
+	private final ExecutorService pool;
+	private final int numThreads;
+
+	/* Number of each object found, and soups run */
+	private final ConcurrentHashMap<String, AtomicLong> counts =
+			new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong soups = new AtomicLong();
+	private final AtomicLong unsettled = new AtomicLong();
+
+	/* Codes of objects by the canonical form of a phase */
+	private final ConcurrentHashMap<String, String> cache =
+			new ConcurrentHashMap<String, String>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of the board each soup is run on.
+	 * @param soupDim Size of the random square in the middle of the board.
+	 * @param maxGenerations Generations after which unsettled soups are given
+	 * up on.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 */
+	public SoupCensus(int boardDim, int soupDim, int maxGenerations,
+			int numThreads) {
+		if ((soupDim < 1) || (soupDim > boardDim) || (maxGenerations < 1)) {
+			throw new IllegalArgumentException("Invalid census parameters");
+		}
+		this.boardDim = boardDim;
+		this.soupDim = soupDim;
+		this.maxGenerations = maxGenerations;
+		this.pool = Executors.newFixedThreadPool(numThreads);
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Runs soups and adds the objects they leave to the census. Soup i is
+	 * seeded with <code>firstSeed + i</code>, so a census doesn't depend on
+	 * the number of threads.
+	 * <p>
+	 * If interrupted, the census holds the batches which finished.
+	 *
+	 * @param firstSeed Seed of the first soup.
+	 * @param count Number of soups to run.
+	 */
+	public void run(final long firstSeed, final long count) {
+		final int size = batchSize(count);
+		List<Callable<Object>> jobs = new ArrayList<Callable<Object>>();
+		for (long first = 0; first < count; first += size) {
+			final long batch = first;
+			jobs.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					runBatch(firstSeed + batch, (int) Math.min(size,
+							count - batch));
+					return null;	// Nothing to return
+				}
+			});
+		}
+
+		try {
+			for (Future<Object> future : pool.invokeAll(jobs)) future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Census batch failed",
+					e.getCause());
+		}
+	}
+
+	/**
+	 * Gets the number of soups run by each job of a census, giving each 
+	 * thread several jobs but never fewer soups than there are lanes.
+	 * 
+	 * @param count Number of soups in the census.
+	 * @return Soups per batch, from {@link #MIN_BATCH_SIZE} to 
+	 * {@link #BATCH_SIZE}.
+	 */
+	int batchSize(long count) {
+		final long size = (count + numThreads * BATCHES_PER_THREAD - 1) / 
+				(numThreads * BATCHES_PER_THREAD);
+		return (int) Math.max(MIN_BATCH_SIZE, Math.min(BATCH_SIZE, size));
+	}
+
+	/**
+	 * Runs a batch of soups to stability and counts their objects.
+	 * <p>
+	 * Each of the 64 slices of the ensemble is a lane. Whenever a lane's soup 
+	 * settles, or runs out of generations, it is counted and the lane is 
+	 * refilled with the next soup of the batch, so lanes aren't left idle 
+	 * waiting for the slowest soup. Soups only start in the generation after 
+	 * a check, so each has a whole history of its own by its first check.
+	 *
+	 * @param firstSeed Seed of the first soup.
+	 * @param size Number of soups in the batch.
+	 */
+	private void runBatch(long firstSeed, int size) {
+		EnsembleLife ensemble = new EnsembleLife(boardDim);
+		final int length = ensemble.board.length;
+		long[][] history = new long[HISTORY][length];
+		long[][] populations = new long[HISTORY][];
+		int[] started = new int[EnsembleLife.SLICES];
+
+		/* Fill every lane */
+		int next = 0;
+		long active = 0;
+		for (int slice = 0; (slice < EnsembleLife.SLICES) && (next < size);
+				slice++) {
+			seed(ensemble, slice, firstSeed + next++);
+			active |= 1L << slice;
+		}
+
+		for (int gen = 0; active != 0; ) {
+			ensemble.age();
+			System.arraycopy(ensemble.board, 0, history[gen % HISTORY], 0,
+					length);
+			populations[gen % HISTORY] = ensemble.populations();
+			if (++gen % HISTORY != 0) continue;
+
+			/* Count settled soups, and give up on ones out of generations */
+			final int[] periods = periods(history, populations, gen - 1);
+			long finished = 0, settled = 0;
+			for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+				if ((active & (1L << slice)) == 0) continue;
+				if (periods[slice] > 0) {
+					settled |= 1L << slice;
+				} else if (gen - started[slice] < maxGenerations) {
+					continue;
+				} else {
+					unsettled.incrementAndGet();
+				}
+				finished |= 1L << slice;
+			}
+			if (settled != 0) {
+				final long[] union = union(history, periods, settled, gen - 1);
+				for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+					if ((settled & (1L << slice)) != 0) {
+						segment(ensemble.board, union, slice);
+					}
+				}
+			}
+
+			/* Refill finished lanes */
+			for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+				if ((finished & (1L << slice)) == 0) continue;
+				soups.incrementAndGet();
+				ensemble.clear(slice);
+				if (next < size) {
+					seed(ensemble, slice, firstSeed + next++);
+					started[slice] = gen;
+				} else {
+					active &= ~(1L << slice);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places a random soup in the middle of one board.
+	 *
+	 * @param ensemble Ensemble holding the board.
+	 * @param slice Board to fill.
+	 * @param seed Seed of the soup.
+	 */
+	private void seed(EnsembleLife ensemble, int slice, long seed) {
+		final int offset = (boardDim - soupDim) / 2;
+		ensemble.randomise(slice, seed, DENSITY, offset, offset, soupDim,
+				soupDim);
+	}
+
+	/**
+	 * Gets the cells alive in any phase of the last period of some boards.
+	 *
+	 * @param history Boards of the last {@link #HISTORY} generations.
+	 * @param periods Period of each slice.
+	 * @param slices Slices to include, as a bit mask.
+	 * @param gen Latest generation, 0 based.
+	 * @return Union of the phases, bit-sliced as for the ensemble.
+	 */
+	private static long[] union(long[][] history, int[] periods,
+			long slices, int gen) {
+		long[] union = new long[history[0].length];
+		for (int k = 0; k < HISTORY; k++) {
+			long mask = 0;
+			for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+				if (periods[slice] > k) mask |= 1L << slice;
+			}
+			mask &= slices;
+			if (mask == 0) break;
+			final long[] phase = history[(gen - k) % HISTORY];
+			for (int i = 0; i < union.length; i++) union[i] |= phase[i] & mask;
+		}
+		return union;
+	}
+
+	/**
+	 * Finds the period of each board over the history.
+	 * <p>
+	 * The board is XORed with each earlier generation, and the first which
+	 * leaves no cell set for a slice gives its period. Spaceships flying
+	 * round the wrapped board stop it ever repeating, so failing that a
+	 * slice whose population has repeated for the whole history is taken to
+	 * have settled with the period of its population.
+	 *
+	 * @param history Boards of the last {@link #HISTORY} generations.
+	 * @param populations Populations of the last {@link #HISTORY}
+	 * generations.
+	 * @param gen Latest generation, 0 based.
+	 * @return Period of each slice, or 0 if it hasn't settled.
+	 */
+	private static int[] periods(long[][] history, long[][] populations,
+			int gen) {
+		int[] periods = new int[EnsembleLife.SLICES];
+		final long[] board = history[gen % HISTORY];
+
+		/* Exact repeats */
+		long found = 0;
+		for (int p = 1; (p < HISTORY) && (found != -1L); p++) {
+			final long[] past = history[(gen - p) % HISTORY];
+			long diff = 0;
+			for (int i = 0; i < board.length; i++) diff |= board[i] ^ past[i];
+			long repeated = ~diff & ~found;
+			found |= repeated;
+			while (repeated != 0) {
+				periods[Long.numberOfTrailingZeros(repeated)] = p;
+				repeated &= repeated - 1;
+			}
+		}
+
+		/* Repeating populations, over at least two periods */
+		for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+			if (periods[slice] > 0) continue;
+			for (int p = 1; (p <= HISTORY / 2) && (periods[slice] == 0); p++) {
+				boolean repeats = true;
+				for (int k = 0; (k + p < HISTORY) && repeats; k++) {
+					repeats = populations[(gen - k) % HISTORY][slice] ==
+							populations[(gen - k - p) % HISTORY][slice];
+				}
+				if (repeats) periods[slice] = p;
+			}
+		}
+		return periods;
+	}
+
+	/**
+	 * Splits the ash of one board into 8-connected objects and counts them.
+	 *
+	 * @param board Current phase of the ensemble.
+	 * @param union Cells alive in any recent phase.
+	 * @param slice Board to segment.
+	 */
+	private void segment(long[] board, long[] union, int slice) {
+		final long bit = 1L << slice;
+		final int stride = boardDim + 2;
+		boolean[] visited = new boolean[boardDim * boardDim];
+		int[] xs = new int[boardDim * boardDim];
+		int[] ys = new int[boardDim * boardDim];
+
+		for (int start = 0; start < visited.length; start++) {
+			if (visited[start] || ((union[(start / boardDim + 1) * stride +
+					start % boardDim + 1] & bit) == 0)) {
+				continue;
+			}
+
+			/* Flood fill, keeping coordinates unwrapped */
+			visited[start] = true;
+			xs[0] = start % boardDim;
+			ys[0] = start / boardDim;
+			int size = 1;
+			for (int i = 0; i < size; i++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						final int x = xs[i] + dx, y = ys[i] + dy;
+						final int wx = ((x % boardDim) + boardDim) % boardDim;
+						final int wy = ((y % boardDim) + boardDim) % boardDim;
+						if (visited[wy * boardDim + wx] || ((union[(wy + 1) *
+								stride + wx + 1] & bit) == 0)) {
+							continue;
+						}
+						visited[wy * boardDim + wx] = true;
+						xs[size] = x;
+						ys[size] = y;
+						size++;
+					}
+				}
+			}
+
+			/* Bounding box of the object */
+			int minX = xs[0], maxX = xs[0], minY = ys[0], maxY = ys[0];
+			for (int i = 1; i < size; i++) {
+				minX = Math.min(minX, xs[i]);
+				maxX = Math.max(maxX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxY = Math.max(maxY, ys[i]);
+			}
+
+			/* Current phase of the object, within its box */
+			boolean[][] cells = new boolean[maxY - minY + 1][maxX - minX + 1];
+			int population = 0;
+			for (int i = 0; i < size; i++) {
+				final int wx = ((xs[i] % boardDim) + boardDim) % boardDim;
+				final int wy = ((ys[i] % boardDim) + boardDim) % boardDim;
+				if ((board[(wy + 1) * stride + wx + 1] & bit) != 0) {
+					cells[ys[i] - minY][xs[i] - minX] = true;
+					population++;
+				}
+			}
+			if (population == 0) continue;
+
+			/* Objects wrapping all the way round can't be isolated */
+			final String code = ((maxX - minX + 1 >= boardDim) ||
+					(maxY - minY + 1 >= boardDim)) ?
+					"zz_" + population : lookup(cells);
+			count(code);
+		}
+	}
+
+	/**
+	 * Gets the code of an object, classifying it if it isn't cached.
+	 *
+	 * @param cells Cells of one phase of the object, indexed [y][x].
+	 * @return Code of the object.
+	 */
+	private String lookup(boolean[][] cells) {
+		cells = trim(cells);
+		final String key = canonical(cells);
+		String code = cache.get(key);
+		if (code != null) {
+			hits.incrementAndGet();
+			return code;
+		}
+		misses.incrementAndGet();
+		code = classify(cells);
+		String existing = cache.putIfAbsent(key, code);
+		return (existing == null) ? code : existing;
+	}
+
+	/**
+	 * Trims the empty rows and columns around a phase, which may be smaller 
+	 * than the object's other phases.
+	 *
+	 * @param cells Cells of the phase, indexed [y][x], at least one alive.
+	 * @return Cells within the bounding box of the phase.
+	 */
+	private static boolean[][] trim(boolean[][] cells) {
+		int minX = cells[0].length, maxX = -1, minY = cells.length, maxY = -1;
+		for (int y = 0; y < cells.length; y++) {
+			for (int x = 0; x < cells[y].length; x++) {
+				if (cells[y][x]) {
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+				}
+			}
+		}
+		boolean[][] trimmed = new boolean[maxY - minY + 1][maxX - minX + 1];
+		for (int y = minY; y <= maxY; y++) {
+			System.arraycopy(cells[y], minX, trimmed[y - minY], 0,
+					maxX - minX + 1);
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Adds one to the count of an object.
+	 *
+	 * @param code Code of the object.
+	 */
+	private void count(String code) {
+		AtomicLong count = counts.get(code);
+		if (count == null) {
+			AtomicLong created = new AtomicLong();
+			count = counts.putIfAbsent(code, created);
+			if (count == null) count = created;
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Classifies an object by evolving it alone on a board large enough that
+	 * it can't meet itself within {@link #HISTORY} generations.
+	 *
+	 * @param cells Cells of one phase of the object, indexed [y][x].
+	 * @return Code of the object.
+	 */
+	static String classify(boolean[][] cells) {
+		final int height = cells.length, width = cells[0].length;
+		final int pad = HISTORY + 2;
+		final int dim = Math.max(width, height) + 2 * pad;
+		/* dim may be odd, which only the rectangular constructor allows */
+		SequentialLife life = new SequentialLife(dim, dim);
+		int population = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (cells[y][x]) {
+					life.board[life.cellIndex(pad + x, pad + y)] = Life.ALIVE;
+					population++;
+				}
+			}
+		}
+		life.copyEdges(life.board);
+
+		/* Find the first generation with the same shape, and the phases */
+		int[] origin = new int[2];
+		final String first = shape(life, origin);
+		final int x0 = origin[0], y0 = origin[1];
+		String best = canonical(cells);
+		for (int gen = 1; gen <= HISTORY; gen++) {
+			life.age();
+			final String phase = shape(life, origin);
+			if (phase == null) break;
+			if (phase.equals(first)) {
+				final boolean moved = (origin[0] != x0) || (origin[1] != y0);
+				if (gen == 1 && !moved) {
+					return "xs" + population + "_" + best;
+				}
+				return (moved ? "xq" : "xp") + gen + "_" + best;
+			}
+			final String candidate = canonical(grid(life));
+			if (smaller(candidate, best)) best = candidate;
+		}
+		return "zz_" + best;
+	}
+
+	/**
+	 * Gets the rows of the live cells of a board within their bounding box.
+	 *
+	 * @param life Board to read.
+	 * @param origin Set to the x and y position of the bounding box.
+	 * @return Rows in hex, as for {@link #canonical(boolean[][])} without
+	 * rotating, or null if the board is empty.
+	 */
+	private static String shape(Life life, int[] origin) {
+		boolean[][] grid = grid(life, origin);
+		return (grid == null) ? null : rows(grid, 0);
+	}
+
+	/**
+	 * Copies the live cells of a board within their bounding box.
+	 *
+	 * @param life Board to read.
+	 * @return Cells indexed [y][x].
+	 */
+	private static boolean[][] grid(Life life) {
+		return grid(life, new int[2]);
+	}
+
+	/**
+	 * Copies the live cells of a board within their bounding box.
+	 *
+	 * @param life Board to read.
+	 * @param origin Set to the x and y position of the bounding box.
+	 * @return Cells indexed [y][x], or null if the board is empty.
+	 */
+	private static boolean[][] grid(Life life, int[] origin) {
+		final int dim = life.boardDim;
+		int minX = dim, maxX = -1, minY = dim, maxY = -1;
+		for (int y = 0; y < dim; y++) {
+			for (int x = 0; x < dim; x++) {
+				if (life.isAlive(x, y)) {
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+				}
+			}
+		}
+		if (maxX < 0) return null;
+
+		boolean[][] grid = new boolean[maxY - minY + 1][maxX - minX + 1];
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				grid[y - minY][x - minX] = life.isAlive(x, y);
+			}
+		}
+		origin[0] = minX;
+		origin[1] = minY;
+		return grid;
+	}
+
+	/**
+	 * Gets the canonical form of a phase, the smallest of its rows in hex
+	 * over every rotation and reflection.
+	 *
+	 * @param cells Cells of the phase within its bounding box, indexed
+	 * [y][x].
+	 * @return Canonical form.
+	 */
+	static String canonical(boolean[][] cells) {
+		String best = null;
+		for (int symmetry = 0; symmetry < 8; symmetry++) {
+			final String candidate = rows(cells, symmetry);
+			if ((best == null) || smaller(candidate, best)) best = candidate;
+		}
+		return best;
+	}
+
+	/**
+	 * Writes the rows of a phase in hex, one digit per 4 cells with the
+	 * leftmost cell in the lowest bit, rows separated by '.'.
+	 *
+	 * @param cells Cells of the phase within its bounding box, indexed
+	 * [y][x].
+	 * @param symmetry Transform to apply first: bit 2 transposes, bit 0
+	 * reflects left to right and bit 1 reflects top to bottom.
+	 * @return Rows in hex.
+	 */
+	private static String rows(boolean[][] cells, int symmetry) {
+		final boolean transpose = (symmetry & 4) != 0;
+		final int height = transpose ? cells[0].length : cells.length;
+		final int width = transpose ? cells.length : cells[0].length;
+		StringBuilder sb = new StringBuilder();
+		for (int y = 0; y < height; y++) {
+			if (y > 0) sb.append('.');
+			for (int x = 0; x < width; x += 4) {
+				int digit = 0;
+				for (int i = 0; (i < 4) && (x + i < width); i++) {
+					int cx = ((symmetry & 1) != 0) ? width - 1 - x - i : x + i;
+					int cy = ((symmetry & 2) != 0) ? height - 1 - y : y;
+					if (transpose ? cells[cx][cy] : cells[cy][cx]) {
+						digit |= 1 << i;
+					}
+				}
+				sb.append(Character.forDigit(digit, 16));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Orders canonical forms, shortest first and then alphabetically.
+	 *
+	 * @param a First form.
+	 * @param b Second form.
+	 * @return True if a comes before b.
+	 */
+	private static boolean smaller(String a, String b) {
+		return (a.length() < b.length()) ||
+				((a.length() == b.length()) && (a.compareTo(b) < 0));
+	}
+
+	/**
+	 * Gets the number of each object found so far.
+	 *
+	 * @return Counts by code, in code order.
+	 */
+	public Map<String, Long> getCounts() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : counts.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().get());
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of soups run.
+	 *
+	 * @return Soups run, including unsettled ones.
+	 */
+	public long getSoups() {
+		return soups.get();
+	}
+
+	/**
+	 * Gets the number of soups given up on because they hadn't settled.
+	 *
+	 * @return Soups not counted.
+	 */
+	public long getUnsettled() {
+		return unsettled.get();
+	}
+
+	/**
+	 * Gets the number of objects recognised from the cache.
+	 *
+	 * @return Cache hits.
+	 */
+	public long getCacheHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of objects which had to be classified.
+	 *
+	 * @return Cache misses.
+	 */
+	public long getCacheMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Prints the census, commonest objects first.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void report(PrintStream out) {
+		List<Map.Entry<String, Long>> entries =
+				new ArrayList<Map.Entry<String, Long>>(getCounts().entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> a,
+					Map.Entry<String, Long> b) {
+				return Long.compare(b.getValue(), a.getValue());
+			}
+		});
+		out.println(getSoups() + " soups, " + getUnsettled() + " unsettled, "
+				+ getCacheHits() + " cache hits, " + getCacheMisses()
+				+ " misses");
+		for (Map.Entry<String, Long> entry : entries) {
+			out.println(entry.getValue() + "\t" + entry.getKey());
+		}
+	}
+
+	/**
+	 * Shuts down the thread pool.
+	 */
+	public void cleanUp() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Runs a census from the command line. Usage:
+	 * <pre>
+	 * SoupCensus soups [seed [boardDim [soupDim [maxGenerations]]]]
+	 * </pre>
+	 *
+	 * @param args Command line arguments.
+	 */
+	public static void main(String[] args) {
+		long count = 0, seed = 1178618;
+		int boardDim = 64, soupDim = 16, maxGenerations = 10000;
+		try {
+			count = Long.parseLong(args[0]);
+			if (args.length > 1) seed = Long.parseLong(args[1]);
+			if (args.length > 2) boardDim = Integer.parseInt(args[2]);
+			if (args.length > 3) soupDim = Integer.parseInt(args[3]);
+			if (args.length > 4) maxGenerations = Integer.parseInt(args[4]);
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			System.err.println("Usage: SoupCensus soups [seed [boardDim "
+					+ "[soupDim [maxGenerations]]]]");
+			System.exit(1);
+		}
+
+		SoupCensus census = new SoupCensus(boardDim, soupDim, maxGenerations,
+				Runtime.getRuntime().availableProcessors());
+		try {
+			final long startTime = System.nanoTime();
+			census.run(seed, count);
+			census.report(System.out);
+			System.out.println("Time taken was "
+					+ (System.nanoTime() - startTime) / 1.0e9 + " secs");
+		} finally {
+			census.cleanUp();
+		}
+	}
+
+}
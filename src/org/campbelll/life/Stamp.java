@@ -0,0 +1,361 @@
+/* ************************************************************************* *
+ * Name:		Stamp.java
+ * Description:	Precompiled pattern which can be placed onto boards.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pattern parsed once and stored as rows of bits, for placing onto boards
+ * with {@link Life#stamp(Stamp, int, int)} and
+ * {@link Life#stampAll(java.util.List)}.
+ * <p>
+ * A stamp holds the bounding box of the live cells of a pattern, one row of
+ * longs per row of the box. Its position is where the pattern file placed
+ * the top left of the box, so stamping a stamp at its own position gives
+ * the same board as {@link Life#loadPattern(InputStream)}.
+ * <p>
+ * Stamps are immutable. The 8 rotations and reflections of a stamp are
+ * created by {@link #transform(Transform)} on first use and then kept.
+ *
+ * @author Campbell Lockley
+ */
+public class Stamp {
+	/* Position, bounding box size and population */
+	private final int x, y, width, height, population;
+
+	/* Rows of bits, wordsPerRow longs per row */
+	private final long[] bits;
+	private final int wordsPerRow;
+
+	/* Transformed stamps, created on first use */
+	private final Stamp[] transformed = new Stamp[Transform.values().length];
+
+	/**
+	 * Rotations and reflections of a stamp.
+	 */
+	public enum Transform {
+		/** Unchanged. */
+		IDENTITY,
+		/** Rotated 90 degrees clockwise. */
+		ROTATE_90,
+		/** Rotated 180 degrees. */
+		ROTATE_180,
+		/** Rotated 270 degrees clockwise. */
+		ROTATE_270,
+		/** Mirrored left to right. */
+		FLIP_HORIZONTAL,
+		/** Mirrored top to bottom. */
+		FLIP_VERTICAL,
+		/** Mirrored along the leading diagonal. */
+		TRANSPOSE,
+		/** Mirrored along the other diagonal. */
+		ANTI_TRANSPOSE;
+
+		/**
+		 * Tests whether the transform swaps width and height.
+		 *
+		 * @return True if width and height are swapped.
+		 */
+		public boolean swapsAxes() {
+			return (this == ROTATE_90) || (this == ROTATE_270) ||
+					(this == TRANSPOSE) || (this == ANTI_TRANSPOSE);
+		}
+
+		/**
+		 * Maps a cell of a box to its x position in the transformed box.
+		 *
+		 * @param x x position in the box.
+		 * @param y y position in the box.
+		 * @param width Width of the box.
+		 * @param height Height of the box.
+		 * @return x position in the transformed box.
+		 */
+		public int mapX(int x, int y, int width, int height) {
+			switch (this) {
+			case ROTATE_90:			return height - 1 - y;
+			case ROTATE_180:		return width - 1 - x;
+			case ROTATE_270:		return y;
+			case FLIP_HORIZONTAL:	return width - 1 - x;
+			case TRANSPOSE:			return y;
+			case ANTI_TRANSPOSE:	return height - 1 - y;
+			default:				return x;
+			}
+		}
+
+		/**
+		 * Maps a cell of a box to its y position in the transformed box.
+		 *
+		 * @param x x position in the box.
+		 * @param y y position in the box.
+		 * @param width Width of the box.
+		 * @param height Height of the box.
+		 * @return y position in the transformed box.
+		 */
+		public int mapY(int x, int y, int width, int height) {
+			switch (this) {
+			case ROTATE_90:			return x;
+			case ROTATE_180:		return height - 1 - y;
+			case ROTATE_270:		return width - 1 - x;
+			case FLIP_VERTICAL:		return height - 1 - y;
+			case TRANSPOSE:			return x;
+			case ANTI_TRANSPOSE:	return width - 1 - x;
+			default:				return y;
+			}
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param x x position of the left of the bounding box.
+	 * @param y y position of the top of the bounding box.
+	 * @param width Width of the bounding box.
+	 * @param height Height of the bounding box.
+	 * @param bits Rows of bits, ((width + 63) / 64) longs per row.
+	 */
+	private Stamp(int x, int y, int width, int height, long[] bits) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.bits = bits;
+		this.wordsPerRow = (width + 63) >>> 6;
+		int population = 0;
+		for (long word : bits) population += Long.bitCount(word);
+		this.population = population;
+	}
+
+	/**
+	 * Parses a pattern, in the format of {@link Life#loadPattern(InputStream)}.
+	 *
+	 * @param in Input stream to parse the pattern from. Closed once parsed.
+	 * @return Stamp of the live cells of the pattern.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if format of pattern in the InputStream is
+	 * incorrect.
+	 */
+	public static Stamp parse(InputStream in)
+			throws IOException, FileFormatException {
+		if (in == null) throw new FileFormatException("Pattern not found");
+		BufferedReader br = new BufferedReader(new InputStreamReader(in));
+		try {
+			String first = br.readLine();
+			if (first == null) throw new FileFormatException("Empty pattern");
+			String[] tokens = first.split(" ");
+			int xStart = Integer.parseInt(tokens[0]);
+			int yStart = Integer.parseInt(tokens[1]);
+
+			/* Find bounding box of live cells */
+			List<String> lines = new ArrayList<String>();
+			String line;
+			int rows = 0, minX = Integer.MAX_VALUE, maxX = -1;
+			int minY = Integer.MAX_VALUE, maxY = -1;
+			while ((line = br.readLine()) != null) {
+				for (int x = 0; x < line.length(); x++) {
+					if (line.charAt(x) == ' ') continue;
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, rows);
+					maxY = rows;
+				}
+				lines.add(line);
+				rows++;
+			}
+			if (maxX < 0) return new Stamp(xStart, yStart, 0, 0, new long[0]);
+
+			/* Set bits of live cells */
+			final int width = maxX - minX + 1;
+			final int height = maxY - minY + 1;
+			final int words = (width + 63) >>> 6;
+			long[] bits = new long[words * height];
+			for (int y = minY; y <= maxY; y++) {
+				line = lines.get(y);
+				for (int x = minX; x < line.length(); x++) {
+					if (line.charAt(x) == ' ') continue;
+					bits[(y - minY) * words + ((x - minX) >>> 6)] |=
+							1L << (x - minX);
+				}
+			}
+			return new Stamp(xStart + minX, yStart + minY, width, height,
+					bits);
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new FileFormatException("Invalid pattern start position");
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * Gets a rotation or reflection of this stamp, at the same position.
+	 *
+	 * @param transform Transform to apply.
+	 * @return Transformed stamp.
+	 */
+	public Stamp transform(Transform transform) {
+		if (transform == Transform.IDENTITY) return this;
+		Stamp stamp = transformed[transform.ordinal()];
+		if (stamp == null) {
+			/* Immutable, so a race only creates it twice */
+			final int newWidth = transform.swapsAxes() ? height : width;
+			final int newHeight = transform.swapsAxes() ? width : height;
+			final int words = (newWidth + 63) >>> 6;
+			long[] newBits = new long[words * newHeight];
+			int tx, ty;
+			for (int sy = 0; sy < height; sy++) {
+				for (int sx = 0; sx < width; sx++) {
+					if (!isAlive(sx, sy)) continue;
+					tx = transform.mapX(sx, sy, width, height);
+					ty = transform.mapY(sx, sy, width, height);
+					newBits[ty * words + (tx >>> 6)] |= 1L << tx;
+				}
+			}
+			stamp = new Stamp(x, y, newWidth, newHeight, newBits);
+			transformed[transform.ordinal()] = stamp;
+		}
+		return stamp;
+	}
+
+	/**
+	 * Tests whether a cell of the bounding box is alive.
+	 *
+	 * @param x x position within the bounding box.
+	 * @param y y position within the bounding box.
+	 * @return True if the cell is alive.
+	 */
+	public boolean isAlive(int x, int y) {
+		return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Gets a word of live cells of a row of the bounding box.
+	 *
+	 * @param y y position within the bounding box.
+	 * @param word Word of the row, covering x from 64 * word.
+	 * @return Bits of the cells, bit i being x = 64 * word + i.
+	 */
+	long getWord(int y, int word) {
+		return bits[y * wordsPerRow + word];
+	}
+
+	/**
+	 * Gets the number of longs in each row.
+	 *
+	 * @return Words per row.
+	 */
+	int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/**
+	 * Gets the x position the pattern file placed the bounding box at.
+	 *
+	 * @return x position of the left of the bounding box.
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Gets the y position the pattern file placed the bounding box at.
+	 *
+	 * @return y position of the top of the bounding box.
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Gets the width of the bounding box.
+	 *
+	 * @return Width in cells.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the bounding box.
+	 *
+	 * @return Height in cells.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the number of live cells.
+	 *
+	 * @return Population of the stamp.
+	 */
+	public int getPopulation() {
+		return population;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Stamps are equal if they have the same live cells, wherever they are.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Stamp)) return false;
+		Stamp other = (Stamp) o;
+		return (width == other.width) && (height == other.height) &&
+				Arrays.equals(bits, other.bits);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * (31 * width + height) + Arrays.hashCode(bits);
+	}
+
+	/**
+	 * A stamp placed at a position on a board, with a transform.
+	 */
+	public static class Placement {
+		/* Stamp, after the transform, and position */
+		final Stamp stamp;
+		final int x, y;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param stamp Stamp to place.
+		 * @param x x position of the left of the transformed bounding box.
+		 * Wraps at the edges of the board.
+		 * @param y y position of the top of the transformed bounding box.
+		 * Wraps at the edges of the board.
+		 * @param transform Transform to apply to the stamp.
+		 */
+		public Placement(Stamp stamp, int x, int y, Transform transform) {
+			this.stamp = stamp.transform(transform);
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Constructor, for an untransformed stamp.
+		 *
+		 * @param stamp Stamp to place.
+		 * @param x x position of the left of the bounding box.
+		 * @param y y position of the top of the bounding box.
+		 */
+		public Placement(Stamp stamp, int x, int y) {
+			this(stamp, x, y, Transform.IDENTITY);
+		}
+	}
+
+}
@@ -0,0 +1,532 @@
+/* ************************************************************************* *
+ * Name:		StripNode.java
+ * Description:	Node of a distributed game of life which owns a strip of
+ * 				rows and exchanges halo rows with its neighbours over sockets.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.campbelll.life.Life.ALIVE;
+import static org.campbelll.life.Life.DEAD;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Node of a distributed game of life, for boards larger than the memory of
+ * one JVM.
+ * <p>
+ * The board is split into strips of whole rows, one per node, and the nodes
+ * form a ring: each node connects to the node below it and accepts a
+ * connection from the node above it, the last node wrapping round to the
+ * first as the board does. A strip is stored as in {@link Life}, with an edge
+ * all round it, except that its top and bottom edges are halo rows holding
+ * the neighbouring strips' rows rather than copies of its own. The left and
+ * right edges are copied within the strip as by {@link Life#copyEdges(char[])}.
+ * <p>
+ * Each generation a node sends its first row up and its last row down, bit
+ * packed, while it receives the rows of its neighbours into its halos. The
+ * transfers run as separate send and receive tasks, so the rows which don't
+ * touch a halo are computed while the halos are in flight, and only the first
+ * and last rows wait for them.
+ * <p>
+ * With one strip the node needs no connections and its halos are copied from
+ * its own rows. Once a node has finished being used {@link #cleanUp()} must
+ * be called to close its connections and threads.
+ *
+ * @author Campbell Lockley
+ */
+public class StripNode {
+	/** Timeout for halo exchange in milliseconds */
+	public final static long timeout = 10000;
+
+	/* Board dimension, number of strips, this strip and its rows */
+	private final int boardDim, strips, index, firstRow, rows;
+
+	/* Strip and next generation of it, with edges and halos */
+	private char[] board, nextGen;
+	private final int stride;
+
+	/* Generation counter */
+	private long generation;
+
+	/* Kernel for the stride of the strip */
+	private final SlidingColumnKernel kernel;
+
+	/* Connection to the strip above and below, and the listening socket */
+	private SocketChannel up, down;
+	private ServerSocketChannel server;
+
+	/* Threads running the send and receive tasks */
+	private final ExecutorService exchange;
+
+	/* Receive buffers of the halos, a bit per cell */
+	private final ByteBuffer fromUp, fromDown;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of board dimension.
+	 * @param strips Number of strips the board is split into, at most
+	 * boardDim.
+	 * @param index Index of this node's strip, from 0 at the top.
+	 */
+	public StripNode(int boardDim, int strips, int index) {
+		if ((strips < 1) || (strips > boardDim) || (index < 0) ||
+				(index >= strips)) {
+			throw new IllegalArgumentException("Invalid strip parameters");
+		}
+		this.boardDim = boardDim;
+		this.strips = strips;
+		this.index = index;
+		this.firstRow = (int) ((long) index * boardDim / strips);
+		this.rows = (int) ((long) (index + 1) * boardDim / strips) - firstRow;
+
+		this.stride = boardDim + 2;
+		this.board = new char[(rows + 2) * stride];
+		this.nextGen = new char[(rows + 2) * stride];
+		Arrays.fill(board, DEAD);
+		Arrays.fill(nextGen, DEAD);
+		this.kernel = new SlidingColumnKernel(stride);
+
+		final int rowBytes = (boardDim + 7) >>> 3;
+		this.fromUp = ByteBuffer.allocate(rowBytes);
+		this.fromDown = ByteBuffer.allocate(rowBytes);
+		this.exchange = Executors.newFixedThreadPool(4, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "strip-exchange");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts listening for the connection from the node above. Every node
+	 * must listen before the ring is connected.
+	 *
+	 * @param local Address to listen on. Port 0 picks a free port.
+	 * @return Address actually listened on.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public InetSocketAddress listen(InetSocketAddress local) throws IOException {
+		server = ServerSocketChannel.open();
+		server.bind(local);
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+
+	/**
+	 * Connects to the node below and accepts the connection of the node
+	 * above. Connecting is retried until the node below is listening.
+	 *
+	 * @param below Address the node below listens on. Ignored with one strip.
+	 * @throws IOException if there is an I/O error.
+	 * @throws TimeoutException if the node below doesn't listen in time.
+	 */
+	public void connect(InetSocketAddress below)
+			throws IOException, TimeoutException {
+		if (strips == 1) return;
+		if (server == null) {
+			throw new IllegalStateException("Node must listen before connecting");
+		}
+
+		final long deadline = System.currentTimeMillis() + timeout;
+		while (down == null) {
+			try {
+				down = SocketChannel.open(below);
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new TimeoutException("Node below not listening");
+				}
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while connecting");
+				}
+			}
+		}
+		down.socket().setTcpNoDelay(true);
+
+		up = server.accept();
+		up.socket().setTcpNoDelay(true);
+		server.close();
+		server = null;
+	}
+
+	/**
+	 * Loads a pattern, keeping the cells which fall on this strip. Every node
+	 * loads the same pattern.
+	 *
+	 * @param in Input stream to read the pattern from, in the format of
+	 * {@link Life#loadPattern(InputStream)}.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if format of pattern is incorrect.
+	 */
+	public void loadPattern(InputStream in)
+			throws IOException, FileFormatException {
+		Stamp stamp = Stamp.parse(in);
+		if ((stamp.getWidth() > boardDim) || (stamp.getHeight() > boardDim)) {
+			throw new FileFormatException(
+					"Input pattern is larger than board size");
+		}
+		for (int y = 0; y < stamp.getHeight(); y++) {
+			for (int x = 0; x < stamp.getWidth(); x++) {
+				if (stamp.isAlive(x, y)) {
+					setCell(stamp.getX() + x, stamp.getY() + y, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets a cell of the board, if it falls on this strip.
+	 *
+	 * @param x x position on the board. Wraps at the edges of the board.
+	 * @param y y position on the board. Wraps at the edges of the board.
+	 * @param alive Whether the cell is alive.
+	 */
+	public void setCell(int x, int y, boolean alive) {
+		x = ((x % boardDim) + boardDim) % boardDim;
+		y = ((y % boardDim) + boardDim) % boardDim - firstRow;
+		if ((y < 0) || (y >= rows)) return;
+		final int row = (y + 1) * stride;
+		board[row + x + 1] = alive ? ALIVE : DEAD;
+		board[row] = board[row + boardDim];
+		board[row + boardDim + 1] = board[row + 1];
+	}
+
+	/**
+	 * Calculates the next generation of the strip, exchanging halos with the
+	 * neighbouring nodes. Every node must call this once per generation.
+	 *
+	 * @throws IOException if there is an I/O error or a neighbour has gone.
+	 * @throws TimeoutException if the halo exchange times out.
+	 */
+	public void age() throws IOException, TimeoutException {
+		Future<?> sendUp = null, sendDown = null, receiveUp = null,
+				receiveDown = null;
+		if (strips == 1) {
+			/* Halos are the strip's own rows, as copyEdges() does */
+			System.arraycopy(board, rows * stride, board, 0, stride);
+			System.arraycopy(board, stride, board, (rows + 1) * stride, stride);
+		} else {
+			/* Start transfers of edge rows and halos */
+			sendUp = exchange.submit(new Send(up, pack(1)));
+			sendDown = exchange.submit(new Send(down, pack(rows)));
+			receiveUp = exchange.submit(new Receive(up, fromUp));
+			receiveDown = exchange.submit(new Receive(down, fromDown));
+		}
+
+		/* Rows which don't touch a halo while the halos are in flight */
+		for (int y = 2; y < rows; y++) {
+			kernel.ageRow(board, nextGen, y * stride + 1, boardDim);
+		}
+
+		/* First and last rows, once the halos have arrived */
+		if (strips != 1) {
+			await(receiveUp);
+			await(receiveDown);
+			unpack(fromUp, 0);
+			unpack(fromDown, rows + 1);
+		}
+		kernel.ageRow(board, nextGen, stride + 1, boardDim);
+		if (rows > 1) {
+			kernel.ageRow(board, nextGen, rows * stride + 1, boardDim);
+		}
+
+		/* Edge rows must be sent before the board is reused */
+		if (strips != 1) {
+			await(sendUp);
+			await(sendDown);
+		}
+
+		/* Copy left and right edges, then swap boards */
+		for (int y = 1; y <= rows; y++) {
+			nextGen[y * stride] = nextGen[y * stride + boardDim];
+			nextGen[y * stride + boardDim + 1] = nextGen[y * stride + 1];
+		}
+		char[] tmp = board;
+		board = nextGen;
+		nextGen = tmp;
+		generation++;
+	}
+
+	/**
+	 * Waits for a send or receive task.
+	 *
+	 * @param task Task to wait for.
+	 * @throws IOException if the task failed.
+	 * @throws TimeoutException if the task doesn't finish in time.
+	 */
+	private void await(Future<?> task) throws IOException, TimeoutException {
+		try {
+			task.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted during halo exchange");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Halo exchange failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Packs a row of the strip into bits, bit (x &amp; 7) of byte x / 8 being
+	 * cell x.
+	 *
+	 * @param y Row of the strip, 1 based as in board[].
+	 * @return Buffer of the packed row, ready to be written.
+	 */
+	private ByteBuffer pack(int y) {
+		byte[] bytes = new byte[(boardDim + 7) >>> 3];
+		final int row = y * stride + 1;
+		for (int x = 0; x < boardDim; x++) {
+			if (board[row + x] == ALIVE) bytes[x >>> 3] |= 1 << (x & 7);
+		}
+		return ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * Unpacks a received row into a halo of the board, including its edges.
+	 *
+	 * @param buffer Buffer of the packed row, filled.
+	 * @param y Halo row, 0 or rows + 1.
+	 */
+	private void unpack(ByteBuffer buffer, int y) {
+		final byte[] bytes = buffer.array();
+		final int row = y * stride;
+		for (int x = 0; x < boardDim; x++) {
+			board[row + x + 1] =
+					((bytes[x >>> 3] & (1 << (x & 7))) != 0) ? ALIVE : DEAD;
+		}
+		board[row] = board[row + boardDim];
+		board[row + boardDim + 1] = board[row + 1];
+		buffer.clear();
+	}
+
+	/**
+	 * Tests whether a cell of this strip is alive.
+	 *
+	 * @param x x position on the board.
+	 * @param y y position on the board, within this strip.
+	 * @return True if the cell is alive.
+	 */
+	public boolean isAlive(int x, int y) {
+		if ((y < firstRow) || (y >= firstRow + rows)) {
+			throw new IndexOutOfBoundsException("Row not on this strip");
+		}
+		return board[(y - firstRow + 1) * stride + x + 1] == ALIVE;
+	}
+
+	/**
+	 * Counts the living cells of this strip.
+	 *
+	 * @return Population of the strip.
+	 */
+	public long population() {
+		long population = 0;
+		for (int y = 1; y <= rows; y++) {
+			for (int x = 1; x <= boardDim; x++) {
+				if (board[y * stride + x] == ALIVE) population++;
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Gets the first row of the board on this strip.
+	 *
+	 * @return y position of the first row.
+	 */
+	public int getFirstRow() {
+		return firstRow;
+	}
+
+	/**
+	 * Gets the number of rows on this strip.
+	 *
+	 * @return Rows of the strip.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the index of this node's strip.
+	 *
+	 * @return Strip index, from 0 at the top.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gets the generation counter.
+	 *
+	 * @return Current generation.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Closes the connections and stops the exchange threads.
+	 */
+	public void cleanUp() {
+		exchange.shutdownNow();
+		for (Closeable channel : new Closeable[] { up, down, server }) {
+			if (channel == null) continue;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				/* Nothing more can be done with it */
+			}
+		}
+	}
+
+	/**
+	 * Runs a node from the command line, printing the population of its strip
+	 * after the last generation.
+	 * <p>
+	 * Arguments are: board dimension, generations, index of this node, then
+	 * the host:port address of every node in order. An optional pattern file
+	 * may follow the addresses after "-p".
+	 *
+	 * @param args Command line arguments.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println("Usage: StripNode <boardDim> <generations> "
+					+ "<index> <host:port>... [-p <pattern>]");
+			System.exit(1);
+		}
+		final int boardDim = Integer.parseInt(args[0]);
+		final int generations = Integer.parseInt(args[1]);
+		final int index = Integer.parseInt(args[2]);
+		int end = args.length;
+		String pattern = null;
+		if ((args.length > 5) && args[args.length - 2].equals("-p")) {
+			pattern = args[args.length - 1];
+			end -= 2;
+		}
+		InetSocketAddress[] nodes = new InetSocketAddress[end - 3];
+		for (int i = 0; i < nodes.length; i++) {
+			String[] hostPort = args[i + 3].split(":");
+			nodes[i] = new InetSocketAddress(hostPort[0],
+					Integer.parseInt(hostPort[1]));
+		}
+
+		StripNode node = new StripNode(boardDim, nodes.length, index);
+		try {
+			if (pattern != null) node.loadPattern(new FileInputStream(pattern));
+			if (nodes.length > 1) {
+				node.listen(new InetSocketAddress(nodes[index].getPort()));
+				node.connect(nodes[(index + 1) % nodes.length]);
+			}
+
+			long start = System.nanoTime();
+			for (int gen = 0; gen < generations; gen++) node.age();
+			long time = System.nanoTime() - start;
+
+			System.out.println("Strip " + index + ": rows " + node.firstRow
+					+ "-" + (node.firstRow + node.rows - 1) + ", population "
+					+ node.population() + ", " + (time / 1000000) + " ms");
+		} catch (IOException | FileFormatException | TimeoutException e) {
+			System.err.println("Strip " + index + " failed: " + e);
+			System.exit(1);
+		} finally {
+			node.cleanUp();
+		}
+	}
+
+	/**
+	 * Task writing a packed row to a neighbour.
+	 */
+	private static class Send implements Callable<Object> {
+		/* Channel and row to write */
+		private final SocketChannel channel;
+		private final ByteBuffer row;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param channel Channel to the neighbour.
+		 * @param row Packed row to write.
+		 */
+		Send(SocketChannel channel, ByteBuffer row) {
+			this.channel = channel;
+			this.row = row;
+		}
+
+		/**
+		 * Writes the whole row.
+		 *
+		 * @return null always.
+		 * @throws IOException if there is an I/O error.
+		 */
+		public Object call() throws IOException {
+			while (row.hasRemaining()) channel.write(row);
+
+			return null;	// Nothing to return
+		}
+	}
+
+	/**
+	 * Task reading a packed row from a neighbour.
+	 */
+	private static class Receive implements Callable<Object> {
+		/* Channel and buffer to fill */
+		private final SocketChannel channel;
+		private final ByteBuffer row;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param channel Channel to the neighbour.
+		 * @param row Buffer to fill, cleared.
+		 */
+		Receive(SocketChannel channel, ByteBuffer row) {
+			this.channel = channel;
+			this.row = row;
+		}
+
+		/**
+		 * Reads until the buffer is full.
+		 *
+		 * @return null always.
+		 * @throws IOException if there is an I/O error, or the neighbour
+		 * closed its connection.
+		 */
+		public Object call() throws IOException {
+			while (row.hasRemaining()) {
+				if (channel.read(row) < 0) {
+					throw new EOFException("Neighbour closed connection");
+				}
+			}
+
+			return null;	// Nothing to return
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+/* ************************************************************************* *
+ * Name:		TileScheduler.java
+ * Description:	Orders and groups tile jobs by their estimated cost.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Schedules the tile jobs of a parallel {@link Life} by their estimated cost.
+ * <p>
+ * The cost of a tile is estimated from the time it took in the previous
+ * generation. The kernels do the same work for every cell however active it
+ * is, so the number of cells which flipped is no guide to cost, and is only
+ * used to break ties. Tiles are submitted most expensive first, so the
+ * generation does not wait on a thread which picked up a large tile last.
+ * Tiles which took less than {@link #SMALL_NANOS} are grouped, up to
+ * {@link #BATCH_SIZE} of them and {@link #SMALL_NANOS} in all to a job, at
+ * the end, saving the overhead of a job for each without adding a long job
+ * to the tail. Tiles not yet timed are never grouped.
+ * <p>
+ * Jobs must be given in the same order every generation, as the position of
+ * a job in the list identifies its tile. The activity and time of every tile
+ * in the last generation can be read for diagnostics.
+ *
+ * @author Campbell Lockley
+ */
+public class TileScheduler {
+	/** Maximum number of cheap tiles grouped into a single job. */
+	public final static int BATCH_SIZE = 8;
+	/** Time in nanoseconds below which tiles, and batches, are cheap. */
+	public final static long SMALL_NANOS = 50000;
+
+	/* Statistics of the last generation, indexed by tile */
+	private final int[] activity;
+	private final long[] nanos;
+
+	/**
+	 * Constructor. Until a generation has been scheduled no tile is timed.
+	 *
+	 * @param tiles Number of tiles.
+	 */
+	public TileScheduler(int tiles) {
+		this.activity = new int[tiles];
+		this.nanos = new long[tiles];
+	}
+
+	/**
+	 * Orders and groups the jobs of a generation. The jobs returned record
+	 * the activity and time of each tile as they run.
+	 *
+	 * @param jobs One job per tile, in the same order every generation.
+	 * @return Jobs to submit to the thread pool, in submission order.
+	 */
+	public List<Callable<Object>> schedule(
+			final List<? extends ParallelLife> jobs) {
+		if (jobs.size() != activity.length) {
+			throw new IllegalArgumentException(
+					"Scheduler has " + activity.length + " tiles, not " +
+					jobs.size());
+		}
+
+		/* Untimed tiles first, then by time and activity */
+		Integer[] order = new Integer[jobs.size()];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				if (nanos[a] != nanos[b]) {
+					return (cost(a) > cost(b)) ? -1 : 1;
+				}
+				return Integer.compare(activity[b], activity[a]);
+			}
+		});
+
+		/* Expensive and untimed tiles alone, cheap tiles in batches */
+		List<Callable<Object>> scheduled = new ArrayList<Callable<Object>>();
+		int i = 0;
+		while ((i < order.length) && ((nanos[order[i]] >= SMALL_NANOS) || 
+				(nanos[order[i]] == 0))) {
+			scheduled.add(new Batch(jobs, new int[] { order[i++] }));
+		}
+		while (i < order.length) {
+			int size = 0;
+			long cost = 0;
+			while ((i + size < order.length) && (size < BATCH_SIZE) &&
+					((size == 0) || 
+					(cost + nanos[order[i + size]] <= SMALL_NANOS))) {
+				cost += nanos[order[i + size++]];
+			}
+			int[] tiles = new int[size];
+			for (int j = 0; j < size; j++) tiles[j] = order[i++];
+			scheduled.add(new Batch(jobs, tiles));
+		}
+		return scheduled;
+	}
+
+	/**
+	 * Gets the estimated cost of a tile.
+	 *
+	 * @param tile Tile.
+	 * @return Time of the tile in the last generation, or the maximum if it
+	 * hasn't been timed.
+	 */
+	private long cost(int tile) {
+		return (nanos[tile] == 0) ? Long.MAX_VALUE : nanos[tile];
+	}
+
+	/**
+	 * Gets the number of tiles scheduled.
+	 *
+	 * @return Number of tiles.
+	 */
+	public int getTileCount() {
+		return activity.length;
+	}
+
+	/**
+	 * Gets the number of cells which flipped in each tile in the last
+	 * generation.
+	 *
+	 * @return Copy of the activity of each tile.
+	 */
+	public int[] getActivity() {
+		return Arrays.copyOf(activity, activity.length);
+	}
+
+	/**
+	 * Gets the time taken by each tile in the last generation.
+	 *
+	 * @return Copy of the time of each tile in nanoseconds.
+	 */
+	public long[] getNanos() {
+		return Arrays.copyOf(nanos, nanos.length);
+	}
+
+	/**
+	 * Gets the number of tiles with any activity in the last generation.
+	 *
+	 * @return Number of active tiles.
+	 */
+	public int getActiveTiles() {
+		int active = 0;
+		for (int a : activity) if (a > 0) active++;
+		return active;
+	}
+
+	/**
+	 * A job running one or more tiles and recording their statistics.
+	 */
+	private class Batch implements Callable<Object> {
+		/* All jobs of the generation and the tiles to run */
+		private final List<? extends ParallelLife> jobs;
+		private final int[] tiles;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param jobs All jobs of the generation.
+		 * @param tiles Tiles of this batch.
+		 */
+		Batch(List<? extends ParallelLife> jobs, int[] tiles) {
+			this.jobs = jobs;
+			this.tiles = tiles;
+		}
+
+		/**
+		 * Runs the tiles of this batch.
+		 *
+		 * @return null always.
+		 * @throws Exception if a tile job throws.
+		 */
+		@Override
+		public Object call() throws Exception {
+			for (int tile : tiles) {
+				ParallelLife job = jobs.get(tile);
+				final long startTime = System.nanoTime();
+				job.call();
+				nanos[tile] = System.nanoTime() - startTime;
+				activity[tile] = job.activity;
+			}
+			return null;	// Nothing to return
+		}
+	}
+
+}
@@ -0,0 +1,561 @@
+/* ************************************************************************* *
+ * Name:		TileServer.java
+ * Description:	Embedded HTTP server rendering tiles of a running board.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.imageio.ImageIO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP server showing a running board in a browser, as PNG tiles at several
+ * zoom levels.
+ * <p>
+ * At zoom 0 a pixel is a cell, and at zoom z a pixel is a block of 2^z x 2^z
+ * cells shaded by how many of them are alive. Tiles are served from
+ * <code>/tile/z/x/y.png</code>, the whole board as one tile from
+ * <code>/overview.png</code>, the board dimensions and generation as JSON from
+ * <code>/info</code>, and a page refreshing the overview from <code>/</code>.
+ * <p>
+ * The server never reads the board of the {@link Life}, which the workers
+ * may be writing. It keeps its own mirror of the board, a bit per cell,
+ * taken when it is created and kept up to date from the {@link Delta} of
+ * every generation. The listener only hands each delta to a thread of the
+ * server, so {@link Life#age()} isn't held up by requests. Encoded tiles are
+ * kept in an LRU cache, and a delta only evicts the tiles, at every zoom
+ * level, containing cells which flipped.
+ * <p>
+ * Writes to the board outside generations, such as loading a pattern or
+ * stamping, aren't in any delta. They are found from {@link Life#getEdits()}
+ * when the next generation is computed, and the mirror is retaken from the
+ * board instead of applying that delta. The mirror is also retaken, and the
+ * queued deltas dropped, once {@link #MAX_PENDING_DELTAS} are waiting, so a
+ * board ageing faster than the server renders doesn't queue without limit.
+ *
+ * @author Campbell Lockley
+ */
+public class TileServer implements DeltaListener {
+	/** Default width and height of tiles in pixels. */
+	public final static int DEFAULT_TILE_SIZE = 256;
+	/** Default number of encoded tiles kept. */
+	public final static int DEFAULT_CACHE_TILES = 1024;
+	/** Number of deltas waiting to be applied before the mirror is retaken. */
+	public final static int MAX_PENDING_DELTAS = 64;
+
+	/* Board being served, and its dimension */
+	private final Life life;
+	private final int boardDim;
+
+	/* Mirror of the board, wordsPerRow longs per row, and its generation */
+	private final long[] mirror;
+	private final int wordsPerRow;
+	private volatile long generation;
+
+	/* Edits of the board when the mirror was taken */
+	private volatile long edits;
+
+	/* Tile size is 1 << tileShift; the overview is at zoom maxZoom */
+	private final int tileShift, maxZoom;
+
+	/* Lock of the mirror: deltas write, rendering reads */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/* Encoded tiles by key, least recently used first */
+	private final Map<Long, byte[]> cache;
+
+	/* Thread applying deltas and the deltas queued for it */
+	private final ExecutorService applier;
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/* Threads serving requests */
+	private final ExecutorService handlers;
+	private final HttpServer server;
+
+	/**
+	 * Constructor, using the default tile size and cache size.
+	 *
+	 * @param life Board to serve. Must be square and not ageing.
+	 * @param address Address to listen on. Port 0 picks a free port.
+	 * @throws IOException if the server can't listen on the address.
+	 */
+	public TileServer(Life life, InetSocketAddress address) throws IOException {
+		this(life, address, DEFAULT_TILE_SIZE, DEFAULT_CACHE_TILES);
+	}
+
+	/**
+	 * Constructor. The mirror is taken from the board, so the board must not
+	 * be ageing.
+	 *
+	 * @param life Board to serve. Must be square and not ageing.
+	 * @param address Address to listen on. Port 0 picks a free port.
+	 * @param tileSize Width and height of tiles in pixels, a power of 2.
+	 * @param cacheTiles Number of encoded tiles to keep.
+	 * @throws IOException if the server can't listen on the address.
+	 */
+	public TileServer(Life life, InetSocketAddress address, int tileSize,
+			final int cacheTiles) throws IOException {
+		if ((tileSize < 1) || (Integer.bitCount(tileSize) != 1) ||
+				(cacheTiles < 1)) {
+			throw new IllegalArgumentException("Invalid tile parameters");
+		}
+		if (life.getHeight() != life.getWidth()) {
+			throw new IllegalArgumentException("Board must be square");
+		}
+		this.life = life;
+		this.boardDim = life.boardDim;
+		this.wordsPerRow = (boardDim + 63) >>> 6;
+		this.mirror = new long[wordsPerRow * boardDim];
+		this.tileShift = Integer.numberOfTrailingZeros(tileSize);
+		int zoom = 0;
+		while ((boardDim - 1) >> (zoom + tileShift) > 0) zoom++;
+		this.maxZoom = zoom;
+
+		this.cache = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> e) {
+				return size() > cacheTiles;
+			}
+		};
+
+		ThreadFactory daemons = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "tile-server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		this.applier = Executors.newSingleThreadExecutor(daemons);
+		this.handlers = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(), daemons);
+
+		this.server = HttpServer.create(address, 0);
+		server.setExecutor(handlers);
+		server.createContext("/", new Handler());
+
+		resync();
+		life.addDeltaListener(this);
+	}
+
+	/**
+	 * Starts serving requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops serving requests and stops listening to the board.
+	 */
+	public void stop() {
+		life.removeDeltaListener(this);
+		server.stop(0);
+		applier.shutdownNow();
+		handlers.shutdownNow();
+	}
+
+	/**
+	 * Gets the address the server is listening on.
+	 *
+	 * @return Address, with the port picked if port 0 was asked for.
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Retakes the mirror from the board and empties the cache. Must be
+	 * called between generations. This is done for the next generation
+	 * anyway when the board is written, so is only needed to see a write
+	 * before then.
+	 */
+	public void resync() {
+		lock.writeLock().lock();
+		try {
+			edits = life.getEdits();
+			for (int y = 0; y < boardDim; y++) {
+				for (int w = 0; w < wordsPerRow; w++) {
+					long bits = 0;
+					for (int x = w << 6; x < Math.min(boardDim, (w + 1) << 6);
+							x++) {
+						if (life.isAlive(x, y)) bits |= 1L << x;
+					}
+					mirror[y * wordsPerRow + w] = bits;
+				}
+			}
+			generation = life.getGeneration();
+			synchronized (cache) {
+				cache.clear();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The delta is applied to the mirror on a thread of the server. If the 
+	 * board was written since the mirror was taken, or too many deltas are 
+	 * already waiting, the mirror is retaken from the board instead.
+	 */
+	@Override
+	public void generationComputed(final Delta delta) {
+		if ((life.getEdits() != edits) || 
+				(pending.get() >= MAX_PENDING_DELTAS)) {
+			/* Waiting deltas are then skipped as already in the mirror */
+			resync();
+			return;
+		}
+
+		pending.incrementAndGet();
+		applier.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					apply(delta);
+				} finally {
+					pending.decrementAndGet();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Flips the cells of a delta in the mirror and evicts the tiles they
+	 * fall in.
+	 *
+	 * @param delta Delta of the next generation of the mirror.
+	 */
+	private void apply(Delta delta) {
+		final int tiles = ((boardDim - 1) >> tileShift) + 1;
+		BitSet dirty = new BitSet(tiles * tiles);
+		int[] runs = delta.getRuns();
+
+		lock.writeLock().lock();
+		try {
+			/* Already in the mirror if it was retaken since */
+			if (delta.getGeneration() <= generation) return;
+
+			int position, end, x, y, rowEnd;
+			for (int i = 0; i < runs.length; i += 2) {
+				position = runs[i];
+				end = position + runs[i + 1];
+				while (position < end) {
+					/* Split runs at the ends of rows */
+					y = position / boardDim;
+					x = position % boardDim;
+					rowEnd = Math.min(end - position, boardDim - x) + x;
+					flip(y, x, rowEnd);
+					for (int t = x >> tileShift; t <= (rowEnd - 1) >> tileShift;
+							t++) {
+						dirty.set((y >> tileShift) * tiles + t);
+					}
+					position += rowEnd - x;
+				}
+			}
+			generation = delta.getGeneration();
+
+			/* Evict changed tiles at every zoom level */
+			synchronized (cache) {
+				for (int zoom = 0; zoom <= maxZoom; zoom++) {
+					final int side = ((tiles - 1) >> zoom) + 1;
+					BitSet parents = new BitSet(side * side);
+					for (int t = dirty.nextSetBit(0); t >= 0;
+							t = dirty.nextSetBit(t + 1)) {
+						parents.set(((t / tiles) >> zoom) * side +
+								((t % tiles) >> zoom));
+					}
+					for (int t = parents.nextSetBit(0); t >= 0;
+							t = parents.nextSetBit(t + 1)) {
+						cache.remove(key(zoom, t % side, t / side));
+					}
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Flips cells [x0, x1) of a row of the mirror.
+	 *
+	 * @param y Row.
+	 * @param x0 First cell.
+	 * @param x1 Cell after the last cell.
+	 */
+	private void flip(int y, int x0, int x1) {
+		final int row = y * wordsPerRow;
+		for (int w = x0 >>> 6; w <= (x1 - 1) >>> 6; w++) {
+			mirror[row + w] ^= mask(w, x0, x1);
+		}
+	}
+
+	/**
+	 * Gets the mask of the bits of a word which are cells [x0, x1).
+	 *
+	 * @param w Word of the row.
+	 * @param x0 First cell.
+	 * @param x1 Cell after the last cell.
+	 * @return Mask of the cells within the word.
+	 */
+	private static long mask(int w, int x0, int x1) {
+		final int from = Math.max(x0 - (w << 6), 0);
+		final int to = Math.min(x1 - (w << 6), 64);
+		long mask = (to == 64) ? -1L : (1L << to) - 1;
+		return mask & (-1L << from);
+	}
+
+	/**
+	 * Counts the live cells of part of a row of the mirror.
+	 *
+	 * @param y Row.
+	 * @param x0 First cell.
+	 * @param x1 Cell after the last cell.
+	 * @return Live cells in [x0, x1).
+	 */
+	private int countRow(int y, int x0, int x1) {
+		final int row = y * wordsPerRow;
+		int count = 0;
+		for (int w = x0 >>> 6; w <= (x1 - 1) >>> 6; w++) {
+			count += Long.bitCount(mirror[row + w] & mask(w, x0, x1));
+		}
+		return count;
+	}
+
+	/**
+	 * Gets a tile, rendering and caching it if it isn't cached.
+	 *
+	 * @param zoom Zoom level, 0 being a pixel per cell.
+	 * @param tx x position of the tile.
+	 * @param ty y position of the tile.
+	 * @return PNG of the tile, or null if there is no such tile.
+	 * @throws IOException if the tile can't be encoded.
+	 */
+	byte[] getTile(int zoom, int tx, int ty) throws IOException {
+		final int side = ((boardDim - 1) >> (zoom + tileShift)) + 1;
+		if ((zoom < 0) || (zoom > maxZoom) || (tx < 0) || (ty < 0) ||
+				(tx >= side) || (ty >= side)) {
+			return null;
+		}
+		final Long key = key(zoom, tx, ty);
+		synchronized (cache) {
+			byte[] png = cache.get(key);
+			if (png != null) return png;
+		}
+
+		/* Cache under the read lock, so a delta can't evict it first */
+		lock.readLock().lock();
+		try {
+			byte[] png = render(zoom, tx, ty);
+			synchronized (cache) {
+				cache.put(key, png);
+			}
+			return png;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Renders a tile from the mirror, live cells dark. Pixels past the edge
+	 * of the board are grey.
+	 *
+	 * @param zoom Zoom level.
+	 * @param tx x position of the tile.
+	 * @param ty y position of the tile.
+	 * @return PNG of the tile.
+	 * @throws IOException if the tile can't be encoded.
+	 */
+	private byte[] render(int zoom, int tx, int ty) throws IOException {
+		final int size = 1 << tileShift, block = 1 << zoom;
+		BufferedImage image = new BufferedImage(size, size,
+				BufferedImage.TYPE_BYTE_GRAY);
+		int x0, y0, x1, y1, count, grey;
+		for (int py = 0; py < size; py++) {
+			y0 = ((ty << tileShift) + py) << zoom;
+			y1 = Math.min(y0 + block, boardDim);
+			for (int px = 0; px < size; px++) {
+				x0 = ((tx << tileShift) + px) << zoom;
+				x1 = Math.min(x0 + block, boardDim);
+				if ((x0 >= boardDim) || (y0 >= boardDim)) {
+					grey = 0x80;
+				} else {
+					count = 0;
+					for (int y = y0; y < y1; y++) count += countRow(y, x0, x1);
+					grey = 255 - (int) ((long) count * 255 /
+							((long) (x1 - x0) * (y1 - y0)));
+				}
+				image.getRaster().setSample(px, py, 0, grey);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Tests whether a tile is cached.
+	 *
+	 * @param zoom Zoom level.
+	 * @param tx x position of the tile.
+	 * @param ty y position of the tile.
+	 * @return True if the encoded tile is cached.
+	 */
+	boolean isCached(int zoom, int tx, int ty) {
+		synchronized (cache) {
+			return cache.containsKey(key(zoom, tx, ty));
+		}
+	}
+
+	/**
+	 * Gets the number of deltas waiting to be applied to the mirror.
+	 *
+	 * @return Number of deltas queued.
+	 */
+	int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * Gets the generation the mirror is at.
+	 *
+	 * @return Generation of the tiles served.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Gets the zoom level of the overview, where the board is one tile.
+	 *
+	 * @return Highest zoom level.
+	 */
+	public int getMaxZoom() {
+		return maxZoom;
+	}
+
+	/**
+	 * Makes the cache key of a tile.
+	 *
+	 * @param zoom Zoom level.
+	 * @param tx x position of the tile.
+	 * @param ty y position of the tile.
+	 * @return Key of the tile.
+	 */
+	private static Long key(int zoom, int tx, int ty) {
+		return ((long) zoom << 56) | ((long) ty << 28) | tx;
+	}
+
+	/**
+	 * Handler of every request to the server.
+	 */
+	private class Handler implements HttpHandler {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				final String path = exchange.getRequestURI().getPath();
+				if (!exchange.getRequestMethod().equals("GET")) {
+					send(exchange, 405, "text/plain", "Method not allowed");
+				} else if (path.equals("/")) {
+					send(exchange, 200, "text/html", "<html><head>"
+							+ "<meta http-equiv=\"refresh\" content=\"1\">"
+							+ "<title>Life</title></head><body>"
+							+ "<p>Generation " + generation + "</p>"
+							+ "<img src=\"/overview.png\"></body></html>");
+				} else if (path.equals("/info")) {
+					send(exchange, 200, "application/json", "{\"boardDim\": "
+							+ boardDim + ", \"generation\": " + generation
+							+ ", \"tileSize\": " + (1 << tileShift)
+							+ ", \"maxZoom\": " + maxZoom + "}");
+				} else if (path.equals("/overview.png")) {
+					send(exchange, 200, "image/png", getTile(maxZoom, 0, 0));
+				} else if (path.startsWith("/tile/") && path.endsWith(".png")) {
+					String[] parts = path.substring(6, path.length() - 4)
+							.split("/");
+					byte[] png = null;
+					try {
+						if (parts.length == 3) {
+							png = getTile(Integer.parseInt(parts[0]),
+									Integer.parseInt(parts[1]),
+									Integer.parseInt(parts[2]));
+						}
+					} catch (NumberFormatException e) {
+						png = null;
+					}
+					if (png == null) {
+						send(exchange, 404, "text/plain", "No such tile");
+					} else {
+						send(exchange, 200, "image/png", png);
+					}
+				} else {
+					send(exchange, 404, "text/plain", "Not found");
+				}
+			} finally {
+				exchange.close();
+			}
+		}
+
+		/**
+		 * Sends a text response.
+		 *
+		 * @param exchange Exchange to respond to.
+		 * @param status HTTP status code.
+		 * @param type Content type.
+		 * @param body Body of the response.
+		 * @throws IOException if there is an I/O error.
+		 */
+		private void send(HttpExchange exchange, int status, String type,
+				String body) throws IOException {
+			send(exchange, status, type + "; charset=utf-8",
+					body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Sends a response.
+		 *
+		 * @param exchange Exchange to respond to.
+		 * @param status HTTP status code.
+		 * @param type Content type.
+		 * @param body Body of the response.
+		 * @throws IOException if there is an I/O error.
+		 */
+		private void send(HttpExchange exchange, int status, String type,
+				byte[] body) throws IOException {
+			exchange.getResponseHeaders().set("Content-Type", type);
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+/* ************************************************************************* *
+ * Name:		TiledParallelLife.java
+ * Description:	Parallel implementation of game of life which stores the board
+ * 				as contiguous square tiles in Morton (Z-order) order.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tiled parallel implementation of {@link Life}.
+ * <p>
+ * Instead of one row-major array, the board is stored as square tiles, each
+ * of which is a contiguous (tileDim + 2) x (tileDim + 2) row-major block
+ * with its own copy of the cells around it. Tiles are stored in Morton
+ * (Z-order) order, so tiles which are close on the board are also close in
+ * memory. The rows above and below a cell are only tileDim + 2 cells apart,
+ * and the working set of a job is one contiguous tile.
+ * <p>
+ * Each tile is submitted as a job in Morton order. Once every tile has been
+ * computed {@link #copyEdges(char[])} fills the edges of each tile from its
+ * neighbours, wrapping at the edges of the board.
+ * <p>
+ * {@link #loadPattern(java.io.InputStream) loadPattern()},
+ * {@link #printBoard(int, int) printBoard()}, deltas and density pyramids
+ * work as for the other engines, as they find cells through
+ * {@link #cellIndex(int, int)}.
+ *
+ * @author Campbell Lockley
+ */
+public class TiledParallelLife extends ParallelLife {
+	/** Default dimension of tiles. */
+	public final static int DEFAULT_TILE_DIM = 64;
+
+	/* Dimension of tiles, tiles along each side and tile of each slot */
+	private int tileDim, tilesPerSide;
+	private int[] slotOfTile;
+	private int[] tileOfSlot;
+
+	/* Parameters for call() */
+	private int start, position;
+
+	/**
+	 * Constructor. Use when intending to use as a
+	 * {@link java.util.concurrent.Callable Callable}.
+	 *
+	 * @param board Pointer to pre-existing board.
+	 * @param nextGen Pointer to accompanying nextGen.
+	 * @param boardDim Size of board dimension.
+	 * @param tileDim Size of tile dimensions.
+	 * @param start Offset into board[] of the first cell of the tile.
+	 * @param position Position (y * boardDim + x) of the first cell.
+	 * @see java.util.concurrent.Callable
+	 */
+	protected TiledParallelLife(char[] board, char[] nextGen,
+			int boardDim, int tileDim, int start, int position) {
+		this.board = board;
+		this.nextGen = nextGen;
+		this.boardDim = boardDim;
+		this.tileDim = tileDim;
+		this.start = start;
+		this.position = position;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDim Size of board dimension. Must be divisible by tileDim.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 * @param tileDim Size of tile dimensions.
+	 */
+	public TiledParallelLife(int boardDim, int numThreads, int tileDim) {
+		super(boardDim, boardLength(boardDim, tileDim), numThreads);
+		this.tileDim = tileDim;
+		this.tilesPerSide = boardDim / tileDim;
+
+		/* Store tiles in order of their Morton code */
+		final int tiles = tilesPerSide * tilesPerSide;
+		final long[] codes = new long[tiles];
+		Integer[] order = new Integer[tiles];
+		for (int tile = 0; tile < tiles; tile++) {
+			codes[tile] = morton(tile % tilesPerSide, tile / tilesPerSide);
+			order[tile] = tile;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(codes[a], codes[b]);
+			}
+		});
+		this.slotOfTile = new int[tiles];
+		this.tileOfSlot = new int[tiles];
+		for (int slot = 0; slot < tiles; slot++) {
+			tileOfSlot[slot] = order[slot];
+			slotOfTile[tileOfSlot[slot]] = slot;
+		}
+	}
+
+	/**
+	 * Gets the length of the board[] of a tiled board, in which each tile 
+	 * has its own edges.
+	 *
+	 * @param boardDim Size of board dimension.
+	 * @param tileDim Size of tile dimensions.
+	 * @return Length of board[].
+	 * @throws IllegalArgumentException if boardDim isn't divisible by tileDim.
+	 */
+	private static long boardLength(int boardDim, int tileDim) {
+		if ((tileDim < 1) || (boardDim % tileDim != 0)) {
+			throw new IllegalArgumentException(
+					"Board dimension must be divisible by tile dimension");
+		}
+		final long tilesPerSide = boardDim / tileDim;
+		return tilesPerSide * tilesPerSide * (tileDim + 2) * (tileDim + 2);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation of age() submits each tile as a job to a thread
+	 * pool, in Morton order, and waits for them to be processed.
+	 *
+	 * @throws TimeoutException if a blocking method call in age() times out,
+	 * causing age() to fail.
+	 */
+	@Override
+	public void age() throws TimeoutException {
+		startGeneration();
+
+		ArrayList<TiledParallelLife> jobs =
+				new ArrayList<TiledParallelLife>(tileOfSlot.length);
+
+		/* Create jobs where each job is a tile, in storage order */
+		final int tileSize = (tileDim + 2) * (tileDim + 2);
+		for (int slot = 0; slot < tileOfSlot.length; slot++) {
+			int tx = tileOfSlot[slot] % tilesPerSide;
+			int ty = tileOfSlot[slot] / tilesPerSide;
+			jobs.add(new TiledParallelLife(board, nextGen, boardDim,
+					tileDim, slot * tileSize + tileDim + 3,
+					ty * tileDim * boardDim + tx * tileDim));
+		}
+
+		/* Pass shared state on to the jobs */
+		for (TiledParallelLife job : jobs) inherit(job);
+
+		/* Submit the jobs to executor and wait for completion */
+		invoke(jobs);
+
+		/* Copy edges, swap boards over and publish delta */
+		finishGeneration();
+	}
+
+	/**
+	 * Computes next generation for a tile of the board.
+	 * <p>
+	 * Implementation of call() method in
+	 * {@link java.util.concurrent.Callable Callable} interface. Should be used
+	 * only when instantiated specifically as a Callable.
+	 *
+	 * @return null always.
+	 */
+	@Override
+	public Object call() {
+		/* Do a tile of cells */
+		ageBlock(start, tileDim, tileDim, tileDim + 2, position);
+
+		return null;	// Nothing to return
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Cells are found in the tile holding them.
+	 *
+	 * @throws IndexOutOfBoundsException if the cell is not on the board.
+	 */
+	@Override
+	protected int cellIndex(int x, int y) {
+		if ((x < 0) || (x >= boardDim) || (y < 0) || (y >= boardDim)) {
+			throw new IndexOutOfBoundsException(
+					"Cell (" + x + ", " + y + ") is not on the board");
+		}
+		int slot = slotOfTile[(y / tileDim) * tilesPerSide + x / tileDim];
+		return slot * (tileDim + 2) * (tileDim + 2)
+				+ (y % tileDim + 1) * (tileDim + 2) + x % tileDim + 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Edges of every tile are copied from the tiles around it, wrapping at
+	 * the edges of the board.
+	 */
+	@Override
+	protected char[] copyEdges(char[] board) {
+		final int stride = tileDim + 2;
+		final int tileSize = stride * stride;
+		int tx, ty, base, up, down, left, right;
+		for (int slot = 0; slot < tileOfSlot.length; slot++) {
+			tx = tileOfSlot[slot] % tilesPerSide;
+			ty = tileOfSlot[slot] / tilesPerSide;
+			base = slot * tileSize;
+			up = tileBase(tx, ty - 1);
+			down = tileBase(tx, ty + 1);
+
+			/* Top edge is the bottom row of the tile above, and vice versa */
+			System.arraycopy(board, up + tileDim * stride + 1,
+					board, base + 1, tileDim);
+			System.arraycopy(board, down + stride + 1,
+					board, base + (tileDim + 1) * stride + 1, tileDim);
+
+			/* Left and right edges, including the corners */
+			left = tileBase(tx - 1, ty);
+			right = tileBase(tx + 1, ty);
+			for (int y = 1; y <= tileDim; y++) {
+				board[base + y * stride] = board[left + y * stride + tileDim];
+				board[base + y * stride + tileDim + 1] =
+						board[right + y * stride + 1];
+			}
+			board[base] = board[tileBase(tx - 1, ty - 1)
+					+ tileDim * stride + tileDim];
+			board[base + tileDim + 1] = board[tileBase(tx + 1, ty - 1)
+					+ tileDim * stride + 1];
+			board[base + (tileDim + 1) * stride] =
+					board[tileBase(tx - 1, ty + 1) + stride + tileDim];
+			board[base + (tileDim + 1) * stride + tileDim + 1] =
+					board[tileBase(tx + 1, ty + 1) + stride + 1];
+		}
+
+		return board;
+	}
+
+	/**
+	 * Gets the offset into board[] of a tile, wrapping at the edges of the
+	 * board.
+	 *
+	 * @param tx x position of the tile, may be -1 or tilesPerSide.
+	 * @param ty y position of the tile, may be -1 or tilesPerSide.
+	 * @return Offset of the first cell (including edges) of the tile.
+	 */
+	private int tileBase(int tx, int ty) {
+		tx = (tx + tilesPerSide) % tilesPerSide;
+		ty = (ty + tilesPerSide) % tilesPerSide;
+		return slotOfTile[ty * tilesPerSide + tx]
+				* (tileDim + 2) * (tileDim + 2);
+	}
+
+	/**
+	 * Interleaves the bits of tile coordinates into a Morton code.
+	 *
+	 * @param x x position of the tile.
+	 * @param y y position of the tile.
+	 * @return Morton code, x in the even bits and y in the odd bits.
+	 */
+	static long morton(int x, int y) {
+		long code = 0;
+		for (int bit = 0; bit < 16; bit++) {
+			code |= ((long) ((x >>> bit) & 1) << (2 * bit))
+					| ((long) ((y >>> bit) & 1) << (2 * bit + 1));
+		}
+		return code;
+	}
+
+}
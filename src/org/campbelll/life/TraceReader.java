@@ -0,0 +1,328 @@
+/* ************************************************************************* *
+ * Name:		TraceReader.java
+ * Description:	Replays a trace file written by TraceRecorder.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Replays a trace file written by {@link TraceRecorder}.
+ * <p>
+ * Opening a trace scans the record headers to index every generation.
+ * {@link #seek(long)} then decodes the nearest keyframe at or before the
+ * wanted generation and applies the deltas after it, or just applies deltas
+ * from the current generation if that is closer. Stepping through a trace
+ * in order therefore decodes one delta per generation.
+ *
+ * @author Campbell Lockley
+ */
+public class TraceReader implements Closeable {
+	/* Trace file and its header */
+	private final FileChannel channel;
+	private final int boardDim;
+	private final int keyframeInterval;
+
+	/* Index of records: generation, file offset and type of each */
+	private long[] generations = new long[64];
+	private long[] offsets = new long[64];
+	private byte[] types = new byte[64];
+	private int records;
+
+	/* Bit packed board of the current generation */
+	private final long[] bits;
+	private long generation = -1;
+	private final Inflater inflater = new Inflater();
+
+	/**
+	 * Constructor. Opens and indexes a trace, and seeks to its first
+	 * generation.
+	 *
+	 * @param file Trace file to read.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the file is not a valid trace.
+	 */
+	public TraceReader(Path file) throws IOException, FileFormatException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		/* Read header */
+		ByteBuffer header = read(0, TraceRecorder.HEADER_SIZE);
+		if ((header.getInt() != TraceRecorder.MAGIC) ||
+				(header.getInt() != TraceRecorder.VERSION)) {
+			channel.close();
+			throw new FileFormatException("Not a trace file");
+		}
+		this.boardDim = header.getInt();
+		this.keyframeInterval = header.getInt();
+		this.bits = new long[(int) (((long) boardDim * boardDim + 63) / 64)];
+
+		/* Index records, ignoring a partly written last record */
+		long offset = TraceRecorder.HEADER_SIZE, size = channel.size();
+		while (offset + TraceRecorder.RECORD_HEADER_SIZE <= size) {
+			ByteBuffer record = read(offset, TraceRecorder.RECORD_HEADER_SIZE);
+			byte type = record.get();
+			long gen = record.getLong();
+			record.getInt();
+			int length = record.getInt();
+			if (offset + TraceRecorder.RECORD_HEADER_SIZE + length > size) {
+				break;
+			}
+			if (records == generations.length) {
+				generations = Arrays.copyOf(generations, records * 2);
+				offsets = Arrays.copyOf(offsets, records * 2);
+				types = Arrays.copyOf(types, records * 2);
+			}
+			generations[records] = gen;
+			offsets[records] = offset;
+			types[records] = type;
+			records++;
+			offset += TraceRecorder.RECORD_HEADER_SIZE + length;
+		}
+		if ((records == 0) || (types[0] != TraceRecorder.KEYFRAME)) {
+			channel.close();
+			throw new FileFormatException("Trace has no starting keyframe");
+		}
+
+		seek(getFirstGeneration());
+	}
+
+	/**
+	 * Gets the dimension of the traced board.
+	 *
+	 * @return Size of board dimension.
+	 */
+	public int getBoardDim() {
+		return boardDim;
+	}
+
+	/**
+	 * Gets the number of generations between keyframes.
+	 *
+	 * @return Keyframe interval of the trace.
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Gets the first generation in the trace.
+	 *
+	 * @return Generation recorded when recording started.
+	 */
+	public long getFirstGeneration() {
+		return generations[0];
+	}
+
+	/**
+	 * Gets the last generation in the trace.
+	 *
+	 * @return Last generation completely written to the trace.
+	 */
+	public long getLastGeneration() {
+		return generations[records - 1];
+	}
+
+	/**
+	 * Gets the generation currently decoded.
+	 *
+	 * @return Current generation.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Decodes a generation of the trace.
+	 *
+	 * @param target Generation to decode.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if a record is corrupt.
+	 * @throws IllegalArgumentException if the generation is not in the trace.
+	 */
+	public void seek(long target) throws IOException, FileFormatException {
+		if ((target < getFirstGeneration()) || (target > getLastGeneration())) {
+			throw new IllegalArgumentException(
+					"Generation " + target + " is not in the trace");
+		}
+
+		/* Find the last keyframe at or before the target */
+		int record = find(target);
+		int keyframe = record;
+		while (types[keyframe] != TraceRecorder.KEYFRAME) keyframe--;
+
+		/* Apply deltas from the current generation if that is closer */
+		int from;
+		if ((generation <= target) && (generation >= generations[keyframe])) {
+			from = find(generation) + 1;
+		} else {
+			decode(keyframe);
+			from = keyframe + 1;
+		}
+		for (int i = from; i <= record; i++) decode(i);
+		generation = target;
+	}
+
+	/**
+	 * Tests whether a cell is alive in the current generation.
+	 *
+	 * @param x x position of the cell, 0 based.
+	 * @param y y position of the cell, 0 based.
+	 * @return True if the cell is alive.
+	 */
+	public boolean isAlive(int x, int y) {
+		long i = (long) y * boardDim + x;
+		return (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Counts the living cells in the current generation.
+	 *
+	 * @return Population of the board.
+	 */
+	public long population() {
+		long population = 0;
+		for (long word : bits) population += Long.bitCount(word);
+		return population;
+	}
+
+	/**
+	 * Expands the current generation to a board laid out as in {@link Life},
+	 * with edges copied.
+	 *
+	 * @return New board array.
+	 */
+	public char[] toBoard() {
+		char[] board = new char[(boardDim + 2) * (boardDim + 2)];
+		for (int y = 0; y < boardDim; y++) {
+			for (int x = 0; x < boardDim; x++) {
+				board[(y + 1) * (boardDim + 2) + x + 1] =
+						isAlive(x, y) ? Life.ALIVE : Life.DEAD;
+			}
+		}
+
+		/* Copy edges to handle wrapping */
+		for (int x = 0; x < (boardDim + 2); x++) {
+			board[x] = board[boardDim * (boardDim + 2) + x];
+			board[(boardDim + 1) * (boardDim + 2) + x] =
+					board[(boardDim + 2) + x];
+		}
+		for (int y = 0; y < (boardDim + 2); y++) {
+			board[y * (boardDim + 2)] = board[y * (boardDim + 2) + boardDim];
+			board[y * (boardDim + 2) + boardDim + 1] =
+					board[y * (boardDim + 2) + 1];
+		}
+		return board;
+	}
+
+	/**
+	 * Closes the trace file.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+
+	/**
+	 * Finds the record of a generation.
+	 *
+	 * @param gen Generation to find.
+	 * @return Index of the record.
+	 */
+	private int find(long gen) {
+		int i = Arrays.binarySearch(generations, 0, records, gen);
+		return (i >= 0) ? i : (-i - 2);
+	}
+
+	/**
+	 * Decodes a record into the bit packed board. A keyframe replaces the
+	 * board, a delta flips cells in it.
+	 *
+	 * @param record Index of the record.
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the record is corrupt.
+	 */
+	private void decode(int record) throws IOException, FileFormatException {
+		ByteBuffer header = read(offsets[record],
+				TraceRecorder.RECORD_HEADER_SIZE);
+		header.position(9);
+		int rawLength = header.getInt();
+		int length = header.getInt();
+		ByteBuffer payload = read(
+				offsets[record] + TraceRecorder.RECORD_HEADER_SIZE, length);
+
+		/* Inflate payload */
+		byte[] raw = new byte[rawLength];
+		inflater.reset();
+		inflater.setInput(payload.array(), 0, length);
+		try {
+			int n = 0;
+			while (n < rawLength) {
+				int inflated = inflater.inflate(raw, n, rawLength - n);
+				if ((inflated == 0) && (inflater.needsInput() ||
+						inflater.finished())) {
+					throw new FileFormatException("Truncated record");
+				}
+				n += inflated;
+			}
+		} catch (DataFormatException e) {
+			throw new FileFormatException("Corrupt record: " + e.getMessage());
+		}
+
+		if (types[record] == TraceRecorder.KEYFRAME) {
+			ByteBuffer.wrap(raw).asLongBuffer().get(bits);
+		} else {
+			/* Runs as varints: gap since end of previous run, length */
+			int i = 0, end = 0, start, run;
+			while (i < raw.length) {
+				start = 0;
+				run = 0;
+				for (int shift = 0; ; shift += 7) {
+					start |= (raw[i] & 0x7F) << shift;
+					if ((raw[i++] & 0x80) == 0) break;
+				}
+				for (int shift = 0; ; shift += 7) {
+					run |= (raw[i] & 0x7F) << shift;
+					if ((raw[i++] & 0x80) == 0) break;
+				}
+				start += end;
+				for (int j = start; j < start + run; j++) {
+					bits[j >>> 6] ^= 1L << j;
+				}
+				end = start + run;
+			}
+		}
+	}
+
+	/**
+	 * Reads bytes from the trace file.
+	 *
+	 * @param position Offset in the file.
+	 * @param length Number of bytes to read.
+	 * @return Buffer holding the bytes, ready to be read from.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of trace");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+}
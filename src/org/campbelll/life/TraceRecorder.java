@@ -0,0 +1,342 @@
+/* ************************************************************************* *
+ * Name:		TraceRecorder.java
+ * Description:	Records every generation of a run to a compressed trace file.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Records every generation of a {@link Life} to a trace file, which can be
+ * replayed with {@link TraceReader}.
+ * <p>
+ * A trace is a stream of records. Every {@link #keyframeInterval}
+ * generations a keyframe holding the whole board as one bit per cell is
+ * written; other generations are written as the {@link Delta} of cells which
+ * flipped. Every record is deflated and appended through a
+ * {@link FileChannel}.
+ * <p>
+ * The recorder listens for deltas and hands them to a background writer
+ * thread, so the simulation loop only pays for queueing them. The writer
+ * keeps its own bit packed copy of the board to write keyframes from. If the
+ * writer falls more than {@link #QUEUE_SIZE} generations behind,
+ * {@link Life#age()} blocks until it catches up.
+ * <p>
+ * Writes to the board between generations, such as by a stamp or pattern,
+ * aren't in any delta. If {@link Life#getEdits()} has changed when a
+ * generation is computed, the board is copied on the ageing thread and that
+ * generation is written as a keyframe instead of a delta.
+ * <p>
+ * File format (big endian):
+ * <pre>
+ * header: int magic, int version, int boardDim, int keyframeInterval
+ * record: byte type, long generation, int rawLength, int length,
+ *         byte[length] deflated payload
+ * </pre>
+ * Keyframe payloads are the board as longs, bit (i % 64) of long (i / 64)
+ * being cell i = y * boardDim + x. Delta payloads are runs as pairs of
+ * varints: gap since the end of the previous run, and run length.
+ *
+ * @author Campbell Lockley
+ */
+public class TraceRecorder implements DeltaListener, Closeable {
+	/** Magic number at the start of a trace file. */
+	public final static int MAGIC = 0x4C494654;
+	/** Version of the trace format. */
+	public final static int VERSION = 1;
+	/** Record type of a keyframe. */
+	public final static byte KEYFRAME = 0;
+	/** Record type of a delta. */
+	public final static byte DELTA = 1;
+	/** Number of deltas which may be queued for the writer. */
+	public final static int QUEUE_SIZE = 256;
+	/** Size in bytes of the file header. */
+	final static int HEADER_SIZE = 16;
+	/** Size in bytes of a record header. */
+	final static int RECORD_HEADER_SIZE = 17;
+
+	/* Marks the end of the queue */
+	private final static Delta END = new Delta(-1, 0);
+
+	/* Life being recorded and generations between keyframes */
+	private final Life life;
+	private final int boardDim;
+	/** Number of generations between keyframes. */
+	protected final int keyframeInterval;
+
+	/* Output, owned by the writer thread once started */
+	private final FileChannel channel;
+	private final long[] bits;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+	private final byte[] keyframe;
+	private byte[] compressed = new byte[1024];
+
+	/* Queue of deltas for the writer and first error it hit */
+	private final BlockingQueue<Delta> queue =
+			new ArrayBlockingQueue<Delta>(QUEUE_SIZE);
+	private final Thread writer;
+	private volatile IOException error;
+
+	/* Edits of the board seen, to find writes outside generations */
+	private long edits;
+
+	/**
+	 * Constructor. Writes a keyframe of the current board and starts
+	 * recording every following generation.
+	 *
+	 * @param file File to write the trace to. Truncated if it exists.
+	 * @param life Life to record. Must be square.
+	 * @param keyframeInterval Number of generations between keyframes.
+	 * @throws IOException if there is an I/O error.
+	 */
+	public TraceRecorder(Path file, Life life, int keyframeInterval)
+			throws IOException {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException(
+					"Keyframe interval must be at least 1");
+		}
+		if (life.getHeight() != life.getWidth()) {
+			throw new IllegalArgumentException("Board must be square");
+		}
+		this.life = life;
+		this.boardDim = life.boardDim;
+		this.keyframeInterval = keyframeInterval;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		/* Write header and a keyframe of the starting board */
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(boardDim)
+				.putInt(keyframeInterval).flip();
+		while (header.hasRemaining()) channel.write(header);
+		this.bits = new long[(int) (((long) boardDim * boardDim + 63) / 64)];
+		this.keyframe = new byte[bits.length * 8];
+		this.edits = life.getEdits();
+		pack(bits);
+		writeKeyframe(life.getGeneration());
+
+		/* Start writer and listen for deltas */
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "TraceRecorder");
+		writer.setDaemon(true);
+		writer.start();
+		life.addDeltaListener(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Queues the delta for the writer thread, or a copy of the board if it 
+	 * was written since the last generation.
+	 */
+	@Override
+	public void generationComputed(Delta delta) {
+		final long current = life.getEdits();
+		if (current != edits) {
+			edits = current;
+			long[] board = new long[bits.length];
+			pack(board);
+			delta = new Snapshot(delta.getGeneration(), boardDim, board);
+		}
+		try {
+			queue.put(delta);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Packs the current board of the life being recorded, a bit per cell.
+	 *
+	 * @param board Array to pack into, all zero.
+	 */
+	private void pack(long[] board) {
+		int i;
+		for (int y = 0; y < boardDim; y++) {
+			for (int x = 0; x < boardDim; x++) {
+				if (life.isAlive(x, y)) {
+					i = y * boardDim + x;
+					board[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops recording, waits for the writer to finish and closes the file.
+	 *
+	 * @throws IOException if the writer hit an I/O error.
+	 */
+	@Override
+	public void close() throws IOException {
+		life.removeDeltaListener(this);
+		try {
+			queue.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			deflater.end();
+			channel.close();
+		}
+		if (error != null) throw error;
+	}
+
+	/**
+	 * Writer thread loop. Applies each delta to the bit packed board and
+	 * writes it as a delta or keyframe.
+	 */
+	private void write() {
+		Delta delta;
+		while (true) {
+			try {
+				delta = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (delta == END) return;
+			if (error != null) continue;	// Drain without writing
+
+			/* A copy of a board written outside age() replaces ours */
+			if (delta instanceof Snapshot) {
+				System.arraycopy(((Snapshot) delta).bits, 0, bits, 0,
+						bits.length);
+				try {
+					writeKeyframe(delta.getGeneration());
+				} catch (IOException e) {
+					error = e;
+				}
+				continue;
+			}
+
+			/* Keep the bit packed board up to date */
+			int[] runs = delta.getRuns();
+			for (int i = 0; i < runs.length; i += 2) {
+				for (int j = runs[i]; j < runs[i] + runs[i + 1]; j++) {
+					bits[j >>> 6] ^= 1L << j;
+				}
+			}
+
+			try {
+				if (delta.getGeneration() % keyframeInterval == 0) {
+					writeKeyframe(delta.getGeneration());
+				} else {
+					writeDelta(delta.getGeneration(), runs);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Writes the bit packed board as a keyframe record.
+	 *
+	 * @param generation Generation of the board.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private void writeKeyframe(long generation) throws IOException {
+		ByteBuffer.wrap(keyframe).asLongBuffer().put(bits);
+		writeRecord(KEYFRAME, generation, keyframe);
+	}
+
+	/**
+	 * Writes runs of flipped cells as a delta record.
+	 *
+	 * @param generation Generation the delta produces.
+	 * @param runs Runs as position, length pairs, sorted by position.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private void writeDelta(long generation, int[] runs) throws IOException {
+		raw.reset();
+		int end = 0;
+		for (int i = 0; i < runs.length; i += 2) {
+			writeVarint(runs[i] - end);
+			writeVarint(runs[i + 1]);
+			end = runs[i] + runs[i + 1];
+		}
+		writeRecord(DELTA, generation, raw.toByteArray());
+	}
+
+	/**
+	 * Deflates a payload and appends it as a record.
+	 *
+	 * @param type Record type.
+	 * @param generation Generation of the record.
+	 * @param input Payload to deflate.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private void writeRecord(byte type, long generation, byte[] input) 
+			throws IOException {
+		deflater.reset();
+		deflater.setInput(input);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == compressed.length) {
+				compressed = Arrays.copyOf(compressed, length * 2);
+			}
+			length += deflater.deflate(compressed, length,
+					compressed.length - length);
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+		record.put(type).putLong(generation).putInt(input.length)
+				.putInt(length).put(compressed, 0, length).flip();
+		while (record.hasRemaining()) channel.write(record);
+	}
+
+	/**
+	 * Writes an unsigned varint (7 bits per byte, low bits first) to the 
+	 * delta payload.
+	 *
+	 * @param value Value to write, treated as unsigned.
+	 */
+	private void writeVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			raw.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		raw.write(value);
+	}
+
+	/**
+	 * Copy of the board queued in place of a delta, for a generation whose
+	 * board was also written outside age().
+	 */
+	private static class Snapshot extends Delta {
+		/* Bit packed board */
+		private final long[] bits;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param generation Generation of the board.
+		 * @param boardDim Size of board dimension.
+		 * @param bits Bit packed board.
+		 */
+		Snapshot(long generation, int boardDim, long[] bits) {
+			super(generation, boardDim);
+			this.bits = bits;
+		}
+	}
+
+}
@@ -0,0 +1,373 @@
+/* ************************************************************************* *
+ * Name:		VerificationHarness.java
+ * Description:	Runs two engines in lockstep comparing per-tile hashes.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Verifies one {@link Life} engine against another by running them in
+ * lockstep on the same board.
+ * <p>
+ * Rather than comparing the whole boards, the board is split into tiles by
+ * the {@link PartitionPlanner} and each tile of both engines is hashed by a
+ * thread pool, so a generation of a 32768 x 32768 board is checked in a
+ * fraction of the time it takes to compute. Cells are read through
+ * {@link Life#cellIndex(int, int)}, so engines with different board layouts
+ * can be compared. The first differing tile, by generation and then tile
+ * order, is reported as a {@link Mismatch} along with its first differing
+ * cell.
+ * <p>
+ * The engines are not cleaned up by the harness, but {@link #cleanUp()} must
+ * be called to shutdown its own thread pool.
+ *
+ * @author Campbell Lockley
+ */
+public class VerificationHarness {
+	/** Default maximum tile dimension. */
+	public final static int DEFAULT_TILE_DIM = 1024;
+
+	/* Engines being compared */
+	private final Life reference, candidate;
+
+	/* Tiles of the board and their hashes in the last comparison */
+	private final PartitionPlanner.Partition partition;
+	private final long[] referenceHashes, candidateHashes;
+
+	/* Thread pool hashing tiles */
+	private final ExecutorService pool;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reference Engine trusted to be correct, usually a
+	 * {@link SequentialLife}.
+	 * @param candidate Engine being verified.
+	 * @param tileDim Maximum dimension of a hashed tile.
+	 * @param numThreads Number of threads for the thread pool to use.
+	 * @throws IllegalArgumentException if the boards are different sizes.
+	 */
+	public VerificationHarness(Life reference, Life candidate, int tileDim,
+			int numThreads) {
+		if ((reference.boardDim != candidate.boardDim) ||
+				(reference.boardHeight != candidate.boardHeight)) {
+			throw new IllegalArgumentException("Board dimensions differ");
+		}
+		this.reference = reference;
+		this.candidate = candidate;
+		this.partition = PartitionPlanner.plan(reference.boardDim,
+				reference.boardHeight, numThreads, tileDim, tileDim);
+		this.referenceHashes = new long[partition.size()];
+		this.candidateHashes = new long[partition.size()];
+		this.pool = Executors.newFixedThreadPool(numThreads);
+	}
+
+	/**
+	 * Places a {@link Stamp} on both boards.
+	 *
+	 * @param stamp Stamp to place.
+	 * @param x x position of the left of the stamp's bounding box.
+	 * @param y y position of the top of the stamp's bounding box.
+	 */
+	public void stamp(Stamp stamp, int x, int y) {
+		reference.stamp(stamp, x, y);
+		candidate.stamp(stamp, x, y);
+	}
+
+	/**
+	 * Fills both boards with the same random soup, each cell alive with
+	 * probability 1/2. Both engines are told their boards were written, as
+	 * for a stamp.
+	 *
+	 * @param seed Seed of the soup.
+	 */
+	public void randomise(long seed) {
+		Random random = new Random(seed);
+		long bits = 0;
+		for (int y = 0; y < reference.boardHeight; y++) {
+			for (int x = 0; x < reference.boardDim; x++) {
+				/* Draw 64 cells at a time */
+				if ((x & 63) == 0) bits = random.nextLong();
+				final char cell = ((bits >>> (x & 63)) & 1) != 0 ?
+						Life.ALIVE : Life.DEAD;
+				reference.board[reference.cellIndex(x, y)] = cell;
+				candidate.board[candidate.cellIndex(x, y)] = cell;
+			}
+		}
+		reference.copyEdges(reference.board);
+		candidate.copyEdges(candidate.board);
+		reference.boardWritten();
+		candidate.boardWritten();
+	}
+
+	/**
+	 * Compares the current boards, then ages both engines and compares again
+	 * for a number of generations, stopping at the first difference.
+	 *
+	 * @param generations Number of generations to run.
+	 * @return First difference, or null if the engines agreed throughout.
+	 * @throws TimeoutException if ageing or hashing times out.
+	 */
+	public Mismatch run(int generations) throws TimeoutException {
+		Mismatch mismatch = compare();
+		for (int gen = 0; (gen < generations) && (mismatch == null); gen++) {
+			mismatch = step();
+		}
+		return mismatch;
+	}
+
+	/**
+	 * Ages both engines by one generation and compares them.
+	 *
+	 * @return First difference, or null if the engines agree.
+	 * @throws TimeoutException if ageing or hashing times out.
+	 */
+	public Mismatch step() throws TimeoutException {
+		reference.age();
+		candidate.age();
+		return compare();
+	}
+
+	/**
+	 * Compares the current boards of both engines by hashing their tiles in
+	 * parallel.
+	 *
+	 * @return First difference, or null if the engines agree.
+	 * @throws TimeoutException if hashing times out or is interrupted.
+	 */
+	public Mismatch compare() throws TimeoutException {
+		List<Callable<Object>> jobs = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < partition.size(); i++) {
+			final int tile = i;
+			jobs.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					referenceHashes[tile] = hash(reference, tile);
+					candidateHashes[tile] = hash(candidate, tile);
+					return null;	// Nothing to return
+				}
+			});
+		}
+		try {
+			for (Future<Object> future : pool.invokeAll(jobs,
+					ParallelLife.timeout, TimeUnit.MILLISECONDS)) {
+				if (future.isCancelled()) {
+					throw new TimeoutException("Hashing tiles timed out");
+				}
+			}
+		} catch (InterruptedException e) {
+			/* Tiles may not have been hashed, so nothing can be reported */
+			Thread.currentThread().interrupt();
+			throw new TimeoutException("Interrupted while hashing tiles");
+		}
+
+		/* Find the first differing tile, then its first differing cell */
+		for (int tile = 0; tile < partition.size(); tile++) {
+			if (referenceHashes[tile] == candidateHashes[tile]) continue;
+
+			final int left = partition.getX(tile), top = partition.getY(tile);
+			for (int y = top; y < top + partition.getHeight(tile); y++) {
+				for (int x = left; x < left + partition.getWidth(tile); x++) {
+					if (reference.board[reference.cellIndex(x, y)] !=
+							candidate.board[candidate.cellIndex(x, y)]) {
+						return new Mismatch(reference.getGeneration(), tile,
+								partition, x, y);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Hashes a tile of a board.
+	 * <p>
+	 * Cells are packed 64 to a word along each row and mixed into the hash a
+	 * word at a time.
+	 *
+	 * @param life Engine whose board is hashed.
+	 * @param tile Tile of the partition to hash.
+	 * @return Hash of the tile.
+	 */
+	private long hash(Life life, int tile) {
+		final char[] board = life.board;
+		final int left = partition.getX(tile), top = partition.getY(tile);
+		final int width = partition.getWidth(tile);
+		final int height = partition.getHeight(tile);
+		long hash = 0xcbf29ce484222325L;
+		for (int y = top; y < top + height; y++) {
+			long word = 0;
+			for (int x = 0; x < width; x++) {
+				final char cell = board[life.cellIndex(left + x, y)];
+				word = (word << 1) | (cell == Life.ALIVE ? 1 : 0);
+				if (((x & 63) == 63) || (x == width - 1)) {
+					hash = (hash ^ word) * 0x100000001b3L;
+					hash ^= hash >>> 29;
+					word = 0;
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the tiles the boards are hashed in.
+	 *
+	 * @return Partition of the board.
+	 */
+	public PartitionPlanner.Partition getPartition() {
+		return partition;
+	}
+
+	/**
+	 * Shuts down the thread pool. The engines are not cleaned up.
+	 */
+	public void cleanUp() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Verifies an engine against {@link SequentialLife} from the command
+	 * line. Usage:
+	 * <pre>
+	 * VerificationHarness [-e engine] [-s boardSize] [-g generations]
+	 *      [-t threads] [-p pattern|random] [-c cacheSizeKB] [-d tileDim]
+	 * </pre>
+	 * Options are as for {@link Main}, with the engine using the largest
+	 * thread count. A pattern of "random" fills the board with a random soup.
+	 *
+	 * @param args Command line arguments.
+	 */
+	public static void main(String[] args) {
+		Main main = new Main();
+		final Stamp stamp;
+		try {
+			main.parse(args);
+			stamp = main.pattern.equals("random") ? null : main.loadStamp();
+		} catch (IllegalArgumentException | IOException |
+				FileFormatException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: VerificationHarness [-e engine] "
+					+ "[-s boardSize] [-g generations] [-t threads] "
+					+ "[-p pattern|random] [-c cacheSizeKB] [-d tileDim]");
+			System.exit(1);
+			return;
+		}
+
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		Life reference = new SequentialLife(main.boardSize);
+		Life candidate = main.createLife(main.maxThreads);
+		VerificationHarness harness = new VerificationHarness(reference,
+				candidate, DEFAULT_TILE_DIM, numThreads);
+		try {
+			if (stamp == null) {
+				harness.randomise(1178618);
+			} else {
+				harness.stamp(stamp, stamp.getX(), stamp.getY());
+			}
+
+			Mismatch mismatch = harness.run(main.generations);
+			if (mismatch == null) {
+				System.out.println(main.engine + " matches sequential for "
+						+ main.generations + " generations");
+			} else {
+				System.out.println(main.engine + " differs from sequential: "
+						+ mismatch);
+				System.exit(2);
+			}
+		} catch (TimeoutException e) {
+			System.err.println("Verification failed: " + e);
+			System.exit(1);
+		} finally {
+			harness.cleanUp();
+			reference.cleanUp();
+			candidate.cleanUp();
+		}
+	}
+
+	/**
+	 * First difference found between two engines.
+	 */
+	public static class Mismatch {
+		/* Where the engines first differ */
+		private final long generation;
+		private final int tile, tileX, tileY, tileWidth, tileHeight, x, y;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param generation Generation the boards differ in.
+		 * @param tile Differing tile.
+		 * @param partition Partition the tile is from.
+		 * @param x x position of the first differing cell.
+		 * @param y y position of the first differing cell.
+		 */
+		private Mismatch(long generation, int tile,
+				PartitionPlanner.Partition partition, int x, int y) {
+			this.generation = generation;
+			this.tile = tile;
+			this.tileX = partition.getX(tile);
+			this.tileY = partition.getY(tile);
+			this.tileWidth = partition.getWidth(tile);
+			this.tileHeight = partition.getHeight(tile);
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Gets the generation the boards differ in.
+		 *
+		 * @return Generation number, 0 for the boards before ageing.
+		 */
+		public long getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * Gets the first differing tile.
+		 *
+		 * @return Tile of the harness's partition, in row-major order.
+		 */
+		public int getTile() {
+			return tile;
+		}
+
+		/**
+		 * Gets the x position of the first differing cell.
+		 *
+		 * @return x position, 0 based.
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * Gets the y position of the first differing cell.
+		 *
+		 * @return y position, 0 based.
+		 */
+		public int getY() {
+			return y;
+		}
+
+		@Override
+		public String toString() {
+			return "generation " + generation + ", tile " + tile + " (" +
+					tileWidth + "x" + tileHeight + " at " + tileX + "," +
+					tileY + "), cell " + x + "," + y;
+		}
+	}
+
+}
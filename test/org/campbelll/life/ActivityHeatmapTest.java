@@ -0,0 +1,164 @@
+/* ************************************************************************* *
+ * Name:		ActivityHeatmapTest.java
+ * Description:	Test cases for ActivityHeatmap.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link ActivityHeatmap}.
+ *
+ * @author Campbell Lockley
+ */
+public class ActivityHeatmapTest {
+
+	/**
+	 * Tests the counts of heatmaps filled in by the workers of different 
+	 * implementations.
+	 * <p>
+	 * A random soup is aged by a sequential, a parallel, an in-place and a 
+	 * sparse implementation, each with a heatmap. Flips are counted directly by 
+	 * comparing each generation of a plain {@link SequentialLife} with the 
+	 * one before. A board of 100 x 100 is used so the blocks at the right and 
+	 * bottom are clipped.
+	 *
+	 * @throws TimeoutException if a generation times out.
+	 */
+	@Test
+	public void testCounts() throws TimeoutException {
+		final String msg = "heatmap counted incorrectly";
+		final int boardDim = 100, generations = 20;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+
+		for (int blockShift : new int[] { 0, 3 }) {
+			Life[] lives = {
+					new SequentialLife(boardDim),
+					new LineParallelLife(boardDim, numThreads),
+					new RollingBandParallelLife(boardDim, numThreads, 7),
+					/* Sparse after the first generation */
+					new HybridLife(boardDim, 0.9, 0.95),
+				};
+			SequentialLife reference = new SequentialLife(boardDim);
+			Soups.fill(reference, lives);
+
+			/* Set up classes under test with the soup */
+			ActivityHeatmap[] heatmaps = new ActivityHeatmap[lives.length];
+			for (int i = 0; i < lives.length; i++) {
+				heatmaps[i] = new ActivityHeatmap(boardDim, blockShift);
+				lives[i].setHeatmap(heatmaps[i]);
+			}
+
+			/* Count flips directly */
+			final int size = 1 << blockShift;
+			final int dim = (boardDim + size - 1) / size;
+			int[] expected = new int[dim * dim];
+			char[] last;
+			for (int gen = 0; gen < generations; gen++) {
+				last = reference.board.clone();
+				reference.age();
+				for (Life life : lives) life.age();
+				for (int y = 0; y < boardDim; y++) {
+					for (int x = 0; x < boardDim; x++) {
+						int index = (y + 1) * (boardDim + 2) + x + 1;
+						if (last[index] != reference.board[index]) {
+							expected[(y / size) * dim + x / size]++;
+						}
+					}
+				}
+			}
+
+			for (int i = 0; i < lives.length; i++) {
+				assertEquals(msg, dim, heatmaps[i].getDim());
+				assertArrayEquals(msg, expected, heatmaps[i].toArray());
+				lives[i].cleanUp();
+			}
+		}
+	}
+
+	/**
+	 * Tests {@link ActivityHeatmap#writePgm(java.io.OutputStream)} and 
+	 * {@link ActivityHeatmap#reset()}.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testWritePgm() throws IOException {
+		final String msg = "heatmap image written incorrectly";
+		final int boardDim = 10;
+		ActivityHeatmap heatmap = new ActivityHeatmap(boardDim, 2);
+		SequentialLife life = new SequentialLife(boardDim);
+		life.setHeatmap(heatmap);
+
+		/*
+		 * Blinker flips 4 cells a generation, all in block (0, 0). Set cells
+		 * are placed after the first generation and aren't counted as flips.
+		 */
+		life.setCell(1, 2, true);
+		life.setCell(2, 2, true);
+		life.setCell(3, 2, true);
+		life.age();
+		assertEquals(msg, 0, heatmap.getCount(0, 0));
+		life.age();
+		life.age();
+		assertEquals(msg, 8, heatmap.getCount(0, 0));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		heatmap.writePgm(out);
+		byte[] image = out.toByteArray();
+		byte[] header = "P5\n3 3\n255\n".getBytes(StandardCharsets.US_ASCII);
+		assertEquals(msg, header.length + 9, image.length);
+		for (int i = 0; i < header.length; i++) {
+			assertEquals(msg, header[i], image[i]);
+		}
+		assertEquals(msg, (byte) 255, image[header.length]);
+		assertEquals(msg, 0, image[header.length + 1]);
+
+		heatmap.reset();
+		assertEquals(msg, 0, heatmap.getCount(0, 0));
+	}
+
+	/**
+	 * Tests that {@link Life#warmup(int)} doesn't count its flips in the 
+	 * heatmap, and that the heatmap is still filled in afterwards.
+	 *
+	 * @throws TimeoutException if a generation times out.
+	 */
+	@Test
+	public void testWarmup() throws TimeoutException {
+		final String msg = "warmup flips were counted in the heatmap";
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		Life[] lives = {
+				new SequentialLife(boardDim),
+				new LineParallelLife(boardDim, numThreads),
+				new RollingBandParallelLife(boardDim, numThreads, 4),
+			};
+
+		for (Life life : lives) {
+			Soups.fill(life);
+			ActivityHeatmap heatmap = new ActivityHeatmap(boardDim, 3);
+			life.setHeatmap(heatmap);
+			life.warmup(20);
+			assertArrayEquals(msg, new int[heatmap.toArray().length], 
+					heatmap.toArray());
+			assertSame(msg, heatmap, life.getHeatmap());
+
+			life.age();
+			int total = 0;
+			for (int count : heatmap.toArray()) total += count;
+			assertTrue(msg, total > 0);
+			life.cleanUp();
+		}
+	}
+
+}
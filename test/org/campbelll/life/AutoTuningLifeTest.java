@@ -0,0 +1,99 @@
+/* ************************************************************************* *
+ * Name:		AutoTuningLifeTest.java
+ * Description:	Test cases for AutoTuningLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link AutoTuningLife}.
+ *
+ * @author Campbell Lockley
+ */
+public class AutoTuningLifeTest {
+
+	/**
+	 * Tests {@link AutoTuningLife#age()}.
+	 * <p>
+	 * {@link AutoTuningLife#age() age()} is tested against
+	 * {@link SequentialLife} with a random board, for long enough that every
+	 * candidate is probed and one is locked in.
+	 *
+	 * @throws TimeoutException if {@link AutoTuningLife#age() age()} times
+	 * out.
+	 */
+	@Test
+	public void testAge() throws TimeoutException {
+		final String msg = "age() didn't compute next generation correctly";
+
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		AutoTuningLife life = new AutoTuningLife(boardDim, 4, 1);
+		SequentialLife expected = new SequentialLife(boardDim);
+
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, expected);
+
+		/* Compare every generation while probing */
+		final int probes =
+				AutoTuningLife.PROBE_ROUNDS * life.getCandidates().size();
+		for (int gen = 0; gen < probes; gen++) {
+			assertNull("candidate locked in early", life.getSelected());
+			life.age();
+			expected.age();
+			assertArrayEquals(msg, expected.board, life.board);
+		}
+		assertNotNull("no candidate was locked in", life.getSelected());
+
+		/* Compare every generation once locked in */
+		for (int gen = 0; gen < 10; gen++) {
+			life.age();
+			expected.age();
+			assertArrayEquals(msg, expected.board, life.board);
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests the candidates built by
+	 * {@link AutoTuningLife#AutoTuningLife(int, int, int)}.
+	 * <p>
+	 * Every candidate's tiles must cover every cell of the board exactly once.
+	 */
+	@Test
+	public void testCandidates() {
+		final String msg = "candidate tiles don't cover the board";
+
+		/* Instantiate class under test */
+		final int boardDim = 96;
+		AutoTuningLife life = new AutoTuningLife(boardDim, 3, 1);
+
+		/* Count how many times each cell is covered */
+		for (AutoTuningLife.Candidate candidate : life.getCandidates()) {
+			int[] covered = new int[life.board.length];
+			for (int tile = 0; tile < candidate.starts.length; tile++) {
+				for (int y = 0; y < candidate.heights[tile]; y++) {
+					for (int x = 0; x < candidate.widths[tile]; x++) {
+						covered[candidate.starts[tile] +
+								y * (boardDim + 2) + x]++;
+					}
+				}
+			}
+			for (int y = 1; y <= boardDim; y++) {
+				for (int x = 1; x <= boardDim; x++) {
+					assertEquals(msg, 1, covered[y * (boardDim + 2) + x]);
+				}
+			}
+			assertTrue(msg, candidate.threads <= 3);
+		}
+		life.cleanUp();
+	}
+
+}
@@ -10,7 +10,9 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
@@ -64,7 +66,7 @@ public class BlockParallelLifeTest {
 		for (int i = start; i < (start + v.length); i++) {
 			expected[i] = v[index++];
 			BlockParallelLife job = new BlockParallelLife(life.board, nextGen, 
-					life.neighbours, boardDim, blockDim, i);
+					boardDim, blockDim, i);
 			job.call();
 			assertArrayEquals(msg, expected, nextGen);	
 		}
@@ -125,4 +127,284 @@ public class BlockParallelLifeTest {
 		assertArrayEquals(msg, nextGen2, life.board);
 	}
 
+	/**
+	 * Tests the deltas sent to a {@link DeltaListener} by 
+	 * {@link BlockParallelLife#age()}.
+	 * <p>
+	 * Deltas are collected by the workers, so the delta of each generation 
+	 * of a random board is checked against the difference between the boards 
+	 * before and after.
+	 * 
+	 * @throws TimeoutException if {@link BlockParallelLife#age() age()} times 
+	 * out.
+	 */
+	@Test
+	public void testDelta() throws TimeoutException {
+		final String msg = "delta doesn't match the computed generation";
+		
+		/* Instantiate class under test */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		BlockParallelLife life = new BlockParallelLife(boardDim, numThreads);
+		final Delta[] last = new Delta[1];
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				last[0] = delta;
+			}
+		});
+		
+		/* Fill board with a random soup */
+		Soups.fill(life);
+		
+		/* Run method under test and apply deltas to a copy of the board */
+		for (int gen = 0; gen < 10; gen++) {
+			final char[] board = Arrays.copyOf(life.board, life.board.length);
+			life.age();
+			last[0].apply(board);
+			life.copyEdges(board);
+			assertArrayEquals(msg, board, life.board);
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests the per-tile statistics of the {@link TileScheduler} used by 
+	 * {@link BlockParallelLife#age()}.
+	 * <p>
+	 * A blinker flips 4 cells per generation, so only the blocks holding 
+	 * them are active.
+	 * 
+	 * @throws TimeoutException if {@link BlockParallelLife#age() age()} times 
+	 * out.
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testScheduler() 
+			throws IOException, FileFormatException, TimeoutException {
+		final String msg = "tile statistics are incorrect";
+		
+		/* Instantiate class under test */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		BlockParallelLife life = new BlockParallelLife(boardDim, numThreads);
+		InputStream in = BlockParallelLifeTest.class
+				.getResourceAsStream("/blinker.patt");
+		life.loadPattern(in);
+		
+		/* Run method under test and check statistics of each generation */
+		for (int gen = 0; gen < 4; gen++) {
+			life.age();
+			TileScheduler scheduler = life.getScheduler();
+			assertEquals(msg, BlockParallelLife.numDivisions * 
+					BlockParallelLife.numDivisions, scheduler.getTileCount());
+			int flipped = 0;
+			for (int a : scheduler.getActivity()) flipped += a;
+			assertEquals(msg, 4, flipped);
+			assertTrue(msg, scheduler.getActiveTiles() >= 1);
+			assertTrue(msg, scheduler.getActiveTiles() <= 4);
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests mutations queued by other threads while 
+	 * {@link BlockParallelLife#age()} runs.
+	 * <p>
+	 * Whenever the mutations land, the delta of every generation must still 
+	 * take the previous board to the new one, and every mutation must have 
+	 * been applied once the threads have finished.
+	 * 
+	 * @throws Exception if {@link BlockParallelLife#age() age()} times out or 
+	 * a mutating thread fails.
+	 */
+	@Test
+	public void testMutations() throws Exception {
+		final String msg = "mutations weren't applied correctly";
+		
+		/* Instantiate class under test */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		final BlockParallelLife life = 
+				new BlockParallelLife(boardDim, numThreads);
+		final Delta[] last = new Delta[1];
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				last[0] = delta;
+			}
+		});
+		
+		/* Threads mutating the board as fast as they can */
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					for (int i = 0; i < 2000; i++) {
+						int x = random.nextInt(boardDim);
+						int y = random.nextInt(boardDim);
+						if (i % 10 == 0) {
+							life.toggleRegion(x, y, 5, 5);
+						} else {
+							life.setCell(x, y, random.nextBoolean());
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		
+		/* Age while they run, checking every delta */
+		boolean running = true;
+		while (running || life.hasPendingMutations()) {
+			running = false;
+			for (Thread thread : threads) running |= thread.isAlive();
+			final char[] board = Arrays.copyOf(life.board, life.board.length);
+			life.age();
+			last[0].apply(board);
+			life.copyEdges(board);
+			assertArrayEquals(msg, board, life.board);
+		}
+		for (Thread thread : threads) thread.join();
+		assertFalse(msg, life.hasPendingMutations());
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests {@link Life#ageAsync()} and {@link Life#advanceAsync(int)}.
+	 * <p>
+	 * Async calls made without waiting must run in order and match 
+	 * {@link SequentialLife}. Each published frame must be left untouched 
+	 * while the next generation is computed.
+	 * 
+	 * @throws Exception if an async generation fails.
+	 */
+	@Test
+	public void testAgeAsync() throws Exception {
+		final String msg = "async generations weren't computed correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		BlockParallelLife life = new BlockParallelLife(boardDim, numThreads);
+		SequentialLife expected = new SequentialLife(boardDim);
+		Soups.fill(life, expected);
+		
+		/* Several calls queued at once */
+		life.ageAsync();
+		life.advanceAsync(5);
+		life.advanceAsync(4).get();
+		for (int gen = 0; gen < 10; gen++) expected.age();
+		assertEquals(msg, 10, life.getGeneration());
+		assertArrayEquals(msg, expected.board, life.board);
+		
+		/* Read each frame while the next generation is computed */
+		for (int gen = 0; gen < 10; gen++) {
+			Life.Frame frame = life.getPublished();
+			assertEquals(msg, 10 + gen, frame.getGeneration());
+			char[] before = new char[boardDim * boardDim];
+			for (int y = 0; y < boardDim; y++) {
+				for (int x = 0; x < boardDim; x++) {
+					before[y * boardDim + x] = 
+							frame.isAlive(x, y) ? ALIVE : DEAD;
+				}
+			}
+			life.ageAsync().get();
+			assertTrue(msg, frame.isValid());
+			for (int y = 0; y < boardDim; y++) {
+				for (int x = 0; x < boardDim; x++) {
+					assertEquals(msg, before[y * boardDim + x] == ALIVE, 
+							frame.isAlive(x, y));
+					assertEquals(msg, expected.isAlive(x, y), 
+							frame.isAlive(x, y));
+				}
+			}
+			expected.age();
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests {@link BlockParallelLife#age()} on a rectangular board.
+	 * <p>
+	 * A random soup on a board much wider than it is tall is aged alongside 
+	 * {@link SequentialLife}, so the partition must cover the whole board.
+	 * 
+	 * @throws TimeoutException if {@link BlockParallelLife#age() age()} times 
+	 * out.
+	 */
+	@Test
+	public void testAgeRectangular() throws TimeoutException {
+		final String msg = "age() didn't compute a rectangular board correctly";
+		
+		/* Instantiate class under test and a reference */
+		final int width = 200, height = 40;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		BlockParallelLife life = new BlockParallelLife(width, height, numThreads);
+		SequentialLife reference = new SequentialLife(width, height);
+		
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, reference);
+		
+		/* Run method under test and compare with the reference */
+		for (int gen = 0; gen < 10; gen++) {
+			life.age();
+			reference.age();
+			assertArrayEquals(msg, reference.board, life.board);
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests {@link BlockParallelLife#runFor(Duration) runFor()}.
+	 * <p>
+	 * The generation running when the budget is spent is cancelled part way, 
+	 * so the board must be exactly the generations counted, and a delta must 
+	 * have been sent for each of them and no more.
+	 * 
+	 * @throws TimeoutException if a generation times out.
+	 */
+	@Test
+	public void testRunFor() throws TimeoutException {
+		final String msg = "runFor() didn't leave a complete generation";
+		
+		/* Instantiate class under test */
+		final int boardDim = 512;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		BlockParallelLife life = new BlockParallelLife(boardDim, numThreads);
+		SequentialLife expected = new SequentialLife(boardDim);
+		final int[] deltas = new int[1];
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				deltas[0]++;
+			}
+		});
+		
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, expected);
+		
+		/* A spent budget computes nothing */
+		assertEquals(msg, 0, life.runFor(Duration.ZERO));
+		assertEquals(msg, 0, expected.runUntil(System.nanoTime()));
+		
+		/* Run method under test and compare with the generations counted */
+		final long generations = life.runFor(Duration.ofMillis(50));
+		assertTrue(msg, generations >= 1);
+		assertEquals(msg, generations, life.getGeneration());
+		assertEquals(msg, generations, deltas[0]);
+		for (long gen = 0; gen < generations; gen++) expected.age();
+		assertArrayEquals(msg, expected.board, life.board);
+		
+		/* Ageing carries on from the last complete generation */
+		life.age();
+		expected.age();
+		assertArrayEquals(msg, expected.board, life.board);
+		life.cleanUp();
+	}
+
 }
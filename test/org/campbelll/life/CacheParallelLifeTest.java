@@ -11,6 +11,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
 
@@ -19,9 +20,6 @@ import static org.campbelll.life.Life.DEAD;;
 
 /**
  * Test cases for {@link CacheParallelLife}.
- * <p>
- * It is significantly harder to test this implementation of {@link Life}, so 
- * there are no tests for {@link CacheParallelLife#age() age()} or wrapping.
  * 
  * @author Campbell Lockley
  */
@@ -66,11 +64,43 @@ public class CacheParallelLifeTest {
 		expected[4107] = ALIVE;
 		final int start = boardDim + 2 + 1;
 		CacheParallelLife job = new CacheParallelLife(life.board, nextGen, 
-				life.neighbours, boardDim, start, cacheSize, cacheSize);
+				boardDim, start, cacheSize, cacheSize);
 		
 		/* Run method under test and test result */
 		job.call();
 		assertArrayEquals(msg, expected, nextGen);
 	}
 
+	/**
+	 * Tests {@link CacheParallelLife#age()} on a rectangular board.
+	 * <p>
+	 * A random soup on a board much wider than it is tall is aged alongside 
+	 * {@link SequentialLife}, so the partition must cover the whole board.
+	 * 
+	 * @throws TimeoutException if {@link CacheParallelLife#age() age()} times 
+	 * out.
+	 */
+	@Test
+	public void testAgeRectangular() throws TimeoutException {
+		final String msg = "age() didn't compute a rectangular board correctly";
+		
+		/* Instantiate class under test and a reference */
+		final int width = 200, height = 40;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		CacheParallelLife life = 
+				new CacheParallelLife(width, height, numThreads, 4);
+		SequentialLife reference = new SequentialLife(width, height);
+		
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, reference);
+		
+		/* Run method under test and compare with the reference */
+		for (int gen = 0; gen < 10; gen++) {
+			life.age();
+			reference.age();
+			assertArrayEquals(msg, reference.board, life.board);
+		}
+		life.cleanUp();
+	}
+
 }
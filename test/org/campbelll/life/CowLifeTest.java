@@ -0,0 +1,109 @@
+/* ************************************************************************* *
+ * Name:		CowLifeTest.java
+ * Description:	Test cases for CowLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.campbelll.life.Life.ALIVE;
+
+/**
+ * Test cases for {@link CowLife}.
+ *
+ * @author Campbell Lockley
+ */
+public class CowLifeTest {
+
+	/**
+	 * Tests {@link CowLife#age()} against {@link SequentialLife}.
+	 * <p>
+	 * A random soup in the top left of a 128 x 128 board is run, so cells 
+	 * cross between tiles and wrap round the board, while the other tiles 
+	 * start empty.
+	 */
+	@Test
+	public void testAge() {
+		final String msg = "copy-on-write board didn't compute correctly";
+		final int boardDim = 128, generations = 40;
+
+		SequentialLife expected = new SequentialLife(boardDim);
+		CowLife life = new CowLife(boardDim);
+		Random random = new Random(1178618);
+		for (int y = 0; y < 80; y++) {
+			for (int x = 0; x < 80; x++) {
+				if (random.nextBoolean()) {
+					expected.board[(y + 1) * (boardDim + 2) + x + 1] = ALIVE;
+				}
+			}
+		}
+		expected.copyEdges(expected.board);
+		life.loadBoard(expected);
+
+		for (int gen = 0; gen < generations; gen++) {
+			life.age();
+			expected.age();
+			for (int y = 0; y < boardDim; y++) {
+				for (int x = 0; x < boardDim; x++) {
+					assertEquals(msg, expected.isAlive(x, y), 
+							life.isAlive(x, y));
+				}
+			}
+		}
+		assertEquals(msg, generations, life.getGeneration());
+	}
+
+	/**
+	 * Tests that forks share tiles until they change them, and that changes 
+	 * to a fork aren't seen by the board it was forked from.
+	 */
+	@Test
+	public void testFork() {
+		final String msg = "forks didn't share tiles correctly";
+		final int boardDim = 256;
+		CowLife life = new CowLife(boardDim);
+
+		/* Blocks are still lifes, one per tile of the top row */
+		for (int tx = 0; tx < 4; tx++) {
+			life.setCell(tx * 64 + 10, 10, true);
+			life.setCell(tx * 64 + 11, 10, true);
+			life.setCell(tx * 64 + 10, 11, true);
+			life.setCell(tx * 64 + 11, 11, true);
+		}
+		CowLife.Tile block = life.tile(0, 0);
+		assertEquals(msg, 1, block.getRefs());
+
+		CowLife fork = life.fork();
+		assertEquals(msg, 16, fork.countShared(life));
+		assertEquals(msg, 2, block.getRefs());
+
+		/* Perturbing the fork copies one tile only */
+		fork.setCell(20, 20, true);
+		assertEquals(msg, 15, fork.countShared(life));
+		assertEquals(msg, 1, block.getRefs());
+		assertFalse(msg, life.isAlive(20, 20));
+		assertTrue(msg, fork.isAlive(20, 20));
+
+		/* Still tiles stay shared while ageing */
+		life.age();
+		fork.age();
+		assertEquals(msg, 15, fork.countShared(life));
+		assertEquals(msg, 16, life.population());
+		assertEquals(msg, 16, fork.population());
+		assertSame(msg, block, life.tile(0, 0));
+
+		/* Once the fork is gone the board may write its tiles in place */
+		fork.cleanUp();
+		CowLife.Tile shared = life.tile(1, 0);
+		assertEquals(msg, 1, shared.getRefs());
+		life.setCell(64, 0, true);
+		assertSame(msg, shared, life.tile(1, 0));
+	}
+
+}
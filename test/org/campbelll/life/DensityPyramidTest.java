@@ -0,0 +1,171 @@
+/* ************************************************************************* *
+ * Name:		DensityPyramidTest.java
+ * Description:	Test cases for DensityPyramid.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import static org.campbelll.life.Life.ALIVE;
+
+/**
+ * Test cases for {@link DensityPyramid}.
+ *
+ * @author Campbell Lockley
+ */
+public class DensityPyramidTest {
+
+	/**
+	 * Tests the counts of every level of a {@link DensityPyramid}.
+	 * <p>
+	 * Square and rectangular boards whose sides aren't powers of 2 are used, 
+	 * so the blocks at the right and bottom of most levels are clipped. 
+	 * Counts of pyramids built on the thread pool are checked by counting 
+	 * every block directly.
+	 *
+	 * @throws TimeoutException if building the pyramid times out.
+	 */
+	@Test
+	public void testCounts() throws TimeoutException {
+		final String msg = "density pyramid counted incorrectly";
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		final int[][] cases = {
+				/* width, height, levels */
+				{ 100, 100, 7 },
+				{ 200, 12, 8 },
+				{ 9, 70, 7 },
+			};
+
+		for (int[] c : cases) {
+			/* Fill a board with a random soup */
+			final int width = c[0], height = c[1];
+			BlockParallelLife life = 
+					new BlockParallelLife(width, height, numThreads);
+			Soups.fill(life);
+
+			/* Run method under test */
+			DensityPyramid pyramid = life.getDensityPyramid();
+			assertEquals(msg, c[2], pyramid.getLevels());
+
+			/* Count every block of every level directly */
+			for (int level = 1; level <= pyramid.getLevels(); level++) {
+				int size = 1 << level;
+				assertEquals(msg, (width + size - 1) / size,
+						pyramid.getWidth(level));
+				assertEquals(msg, (height + size - 1) / size,
+						pyramid.getHeight(level));
+				for (int by = 0; by < pyramid.getHeight(level); by++) {
+					for (int bx = 0; bx < pyramid.getWidth(level); bx++) {
+						int count = 0;
+						for (int y = by * size; y < Math.min(height,
+								(by + 1) * size); y++) {
+							for (int x = bx * size; x < Math.min(width,
+									(bx + 1) * size); x++) {
+								if (life.isAlive(x, y)) count++;
+							}
+						}
+						assertEquals(msg, count, 
+								pyramid.getCount(level, bx, by));
+					}
+				}
+			}
+			life.cleanUp();
+		}
+	}
+
+	/**
+	 * Tests a {@link DensityPyramid} of a long, narrow corridor board. Its 
+	 * levels must be sized by each side of the board rather than the longer 
+	 * one, or level 1 alone would be larger than the heap.
+	 *
+	 * @throws TimeoutException if building the pyramid times out.
+	 */
+	@Test
+	public void testCorridor() throws TimeoutException {
+		final String msg = "corridor density pyramid counted incorrectly";
+		final int width = 131072, height = 64;
+		SequentialLife life = new SequentialLife(width, height);
+		for (int x = 0; x < width; x += 3) {
+			life.board[life.cellIndex(x, x % height)] = ALIVE;
+		}
+
+		DensityPyramid pyramid = life.getDensityPyramid();
+		final int top = pyramid.getLevels();
+		assertEquals(msg, DensityPyramid.DEFAULT_LEVELS, top);
+		assertEquals(msg, width / 2, pyramid.getWidth(1));
+		assertEquals(msg, height / 2, pyramid.getHeight(1));
+		assertEquals(msg, width >> top, pyramid.getWidth(top));
+		assertEquals(msg, 1, pyramid.getHeight(top));
+		long population = 0;
+		for (int bx = 0; bx < pyramid.getWidth(top); bx++) {
+			population += pyramid.getCount(top, bx, 0);
+		}
+		assertEquals(msg, (width + 2) / 3, population);
+	}
+
+	/**
+	 * Tests that {@link Life#getDensityPyramid()} caches the pyramid until
+	 * the next generation.
+	 * 
+	 * @throws TimeoutException if building the pyramid times out.
+	 */
+	@Test
+	public void testCache() throws TimeoutException {
+		final String msg = "density pyramid not cached correctly";
+
+		/* Instantiate class under test with a full board */
+		SequentialLife life = new SequentialLife(16);
+		for (int i = 0; i < life.board.length; i++) life.board[i] = ALIVE;
+
+		/* Same pyramid until the board is aged */
+		DensityPyramid pyramid = life.getDensityPyramid();
+		assertSame(msg, pyramid, life.getDensityPyramid());
+		assertEquals(msg, 256, pyramid.getCount(4, 0, 0));
+		assertEquals(msg, 1.0, pyramid.getDensity(2, 3, 3), 0.0);
+		life.age();
+		assertNotSame(msg, pyramid, life.getDensityPyramid());
+		assertEquals(msg, 0, life.getDensityPyramid().getCount(4, 0, 0));
+	}
+
+	/**
+	 * Tests that full blocks are counted at every level, whatever type the 
+	 * level is counted in, and that a pyramid reusing the arrays of the one 
+	 * before counts from zero.
+	 * 
+	 * @throws TimeoutException if building the pyramid times out.
+	 */
+	@Test
+	public void testFull() throws TimeoutException {
+		final String msg = "full blocks counted incorrectly";
+
+		/* Instantiate class under test with a full board */
+		final int boardDim = 512;
+		SequentialLife life = new SequentialLife(boardDim);
+		for (int i = 0; i < life.board.length; i++) life.board[i] = ALIVE;
+
+		DensityPyramid pyramid = life.getDensityPyramid();
+		assertEquals(msg, 9, pyramid.getLevels());
+		for (int level = 1; level <= pyramid.getLevels(); level++) {
+			final int size = 1 << level;
+			assertEquals(msg, size * size, pyramid.getCount(level, 0, 0));
+			assertEquals(msg, size * size, pyramid.getCount(level, 
+					pyramid.getWidth(level) - 1, pyramid.getHeight(level) - 1));
+		}
+
+		/* Every cell dies of overcrowding */
+		life.age();
+		pyramid = life.getDensityPyramid();
+		for (int level = 1; level <= pyramid.getLevels(); level++) {
+			for (int count : pyramid.getCounts(level)) {
+				assertEquals(msg, 0, count);
+			}
+		}
+	}
+
+}
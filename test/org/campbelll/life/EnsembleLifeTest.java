@@ -0,0 +1,101 @@
+/* ************************************************************************* *
+ * Name:		EnsembleLifeTest.java
+ * Description:	Test cases for EnsembleLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link EnsembleLife}.
+ * 
+ * @author Campbell Lockley
+ */
+public class EnsembleLifeTest {
+
+	/**
+	 * Tests {@link EnsembleLife#age()}.
+	 * <p>
+	 * Each of the 64 boards is filled with a different random soup and 
+	 * checked against a {@link SequentialLife} running the same soup.
+	 */
+	@Test
+	public void testAge() {
+		final String msg = "age() didn't compute next generation correctly";
+		
+		/* Instantiate class under test and a reference for each slice */
+		final int boardDim = 24;
+		EnsembleLife ensemble = new EnsembleLife(boardDim);
+		SequentialLife[] expected = new SequentialLife[EnsembleLife.SLICES];
+		for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+			ensemble.randomise(slice, slice, slice / 64.0);
+			expected[slice] = new SequentialLife(boardDim);
+			System.arraycopy(ensemble.extractBoard(slice), 0, 
+					expected[slice].board, 0, expected[slice].board.length);
+		}
+		
+		/* Run method under test and compare every slice */
+		for (int gen = 0; gen < 30; gen++) {
+			ensemble.age();
+			long[] populations = ensemble.populations();
+			for (int slice = 0; slice < EnsembleLife.SLICES; slice++) {
+				expected[slice].age();
+				char[] board = ensemble.extractBoard(slice);
+				assertArrayEquals(msg, expected[slice].board, board);
+				long population = 0;
+				for (int y = 0; y < boardDim; y++) {
+					for (int x = 0; x < boardDim; x++) {
+						if (expected[slice].isAlive(x, y)) population++;
+					}
+				}
+				assertEquals(msg, population, populations[slice]);
+			}
+		}
+		assertEquals(msg, 30, ensemble.getGeneration());
+	}
+
+	/**
+	 * Tests {@link EnsembleLife#loadPattern(int, InputStream)}.
+	 * <p>
+	 * A blinker loaded into one slice must oscillate without affecting the 
+	 * other slices.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testLoadPattern() throws IOException, FileFormatException {
+		final String msg = "pattern not loaded into its slice";
+		
+		/* Instantiate class under test */
+		EnsembleLife ensemble = new EnsembleLife(5);
+		
+		/*
+		 * Load test pattern - blinker.patt:
+		 * 	1:1 2
+		 * 	2:###
+		 */
+		InputStream in = EnsembleLifeTest.class
+				.getResourceAsStream("/blinker.patt");
+		ensemble.loadPattern(37, in);
+		assertTrue(msg, ensemble.isAlive(37, 1, 2));
+		assertTrue(msg, ensemble.isAlive(37, 3, 2));
+		assertFalse(msg, ensemble.isAlive(36, 2, 2));
+		
+		/* Vertical after one generation, only in slice 37 */
+		ensemble.age();
+		assertTrue(msg, ensemble.isAlive(37, 2, 1));
+		assertTrue(msg, ensemble.isAlive(37, 2, 3));
+		assertFalse(msg, ensemble.isAlive(37, 1, 2));
+		assertEquals(msg, 3, ensemble.populations()[37]);
+		assertEquals(msg, 0, ensemble.populations()[38]);
+	}
+
+}
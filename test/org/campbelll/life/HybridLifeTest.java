@@ -0,0 +1,149 @@
+/* ************************************************************************* *
+ * Name:		HybridLifeTest.java
+ * Description:	Test cases for HybridLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.campbelll.life.Life.ALIVE;
+
+/**
+ * Test cases for {@link HybridLife}.
+ * 
+ * @author Campbell Lockley
+ */
+public class HybridLifeTest {
+
+	/**
+	 * Tests {@link HybridLife#age()} as a random soup decays to ash.
+	 * <p>
+	 * {@link HybridLife#age() age()} is tested against {@link SequentialLife}, 
+	 * including the deltas sent to listeners, and must have run in sparse 
+	 * mode once the soup decayed.
+	 */
+	@Test
+	public void testDecay() {
+		final String msg = "age() didn't compute next generation correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		HybridLife life = new HybridLife(boardDim, 0.05, 0.1);
+		SequentialLife expected = new SequentialLife(boardDim);
+		final List<Delta> deltas = new ArrayList<Delta>();
+		final List<Delta> expectedDeltas = new ArrayList<Delta>();
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				deltas.add(delta);
+			}
+		});
+		expected.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				expectedDeltas.add(delta);
+			}
+		});
+		
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, expected);
+		assertFalse(msg, life.isSparse());
+		
+		/* Compare every generation, including edges */
+		int sparse = 0;
+		for (int gen = 0; gen < 1000; gen++) {
+			life.age();
+			expected.age();
+			if (life.isSparse()) sparse++;
+			assertArrayEquals(msg, expected.board, life.board);
+			assertArrayEquals(msg, expectedDeltas.get(gen).getRuns(), 
+					deltas.get(gen).getRuns());
+		}
+		assertTrue(msg, sparse > 0);
+	}
+	
+	/**
+	 * Tests that {@link HybridLife} switches back to dense mode as a sparse 
+	 * board grows.
+	 * <p>
+	 * An R-pentomino starts sparse and grows past the dense threshold.
+	 */
+	@Test
+	public void testGrowth() {
+		final String msg = "age() didn't switch back to dense mode";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		HybridLife life = new HybridLife(boardDim, 0.01, 0.03);
+		SequentialLife expected = new SequentialLife(boardDim);
+		final int[][] pentomino = { { 31, 30 }, { 32, 30 }, { 30, 31 }, 
+				{ 31, 31 }, { 31, 32 } };
+		for (int[] cell : pentomino) {
+			life.board[life.cellIndex(cell[0], cell[1])] = ALIVE;
+			expected.board[expected.cellIndex(cell[0], cell[1])] = ALIVE;
+		}
+		
+		/* Sparse after the first generation, then dense again */
+		life.age();
+		expected.age();
+		assertTrue(msg, life.isSparse());
+		boolean dense = false;
+		for (int gen = 0; gen < 300; gen++) {
+			life.age();
+			expected.age();
+			if (!life.isSparse()) dense = true;
+			assertArrayEquals(msg, expected.board, life.board);
+		}
+		assertTrue(msg, dense);
+	}
+	/**
+	 * Tests that {@link HybridLife} goes back to dense mode when its board is 
+	 * written outside a generation.
+	 * <p>
+	 * A blinker is written straight into the board of a sparse R-pentomino, 
+	 * as a writer other than a stamp or pattern would, and announced with 
+	 * {@link Life#boardWritten()}. The blinker must not be lost.
+	 */
+	@Test
+	public void testBoardWritten() {
+		final String msg = "age() missed a write to the board";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		HybridLife life = new HybridLife(boardDim, 0.01, 0.03);
+		SequentialLife expected = new SequentialLife(boardDim);
+		final int[][] pentomino = { { 31, 30 }, { 32, 30 }, { 30, 31 }, 
+				{ 31, 31 }, { 31, 32 } };
+		for (int[] cell : pentomino) {
+			life.board[life.cellIndex(cell[0], cell[1])] = ALIVE;
+			expected.board[expected.cellIndex(cell[0], cell[1])] = ALIVE;
+		}
+		life.age();
+		expected.age();
+		assertTrue(msg, life.isSparse());
+		
+		/* Write a blinker far from the pentomino */
+		for (int x = 4; x < 7; x++) {
+			life.board[life.cellIndex(x, 5)] = ALIVE;
+			expected.board[expected.cellIndex(x, 5)] = ALIVE;
+		}
+		life.copyEdges(life.board);
+		expected.copyEdges(expected.board);
+		life.boardWritten();
+		assertFalse(msg, life.isSparse());
+		
+		for (int gen = 0; gen < 20; gen++) {
+			life.age();
+			expected.age();
+			assertArrayEquals(msg, expected.board, life.board);
+		}
+	}
+	
+}
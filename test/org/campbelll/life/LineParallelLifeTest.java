@@ -65,7 +65,7 @@ public class LineParallelLifeTest {
 			};
 		final int line = 2;
 		LineParallelLife job = new LineParallelLife(life.board, nextGen, 
-				life.neighbours, boardDim, line);
+				boardDim, line);
 
 		/* Run method under test and test result */
 		job.call();
@@ -0,0 +1,77 @@
+/* ************************************************************************* *
+ * Name:		MainTest.java
+ * Description:	Test cases for Main.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link Main}.
+ *
+ * @author Campbell Lockley
+ */
+public class MainTest {
+
+	/**
+	 * Tests {@link Main#serialFraction(int[], double[])} on times which 
+	 * follow Amdahl's law exactly, from 1 thread and from 2 threads.
+	 */
+	@Test
+	public void testSerialFraction() {
+		final String msg = "serial fraction fitted incorrectly";
+		final double f = 0.2;
+		int[] threads = { 1, 2, 3, 4, 8 };
+		double[] means = new double[threads.length];
+		for (int i = 0; i < threads.length; i++) {
+			means[i] = 10 * (f + (1 - f) / threads[i]);
+		}
+		assertEquals(msg, f, Main.serialFraction(threads, means), 1e-9);
+
+		/* From 2 threads the fraction is of the 2 thread time */
+		int[] from2 = { 2, 4, 8 };
+		double[] means2 = { 5, 3, 2 };
+		assertEquals(msg, 1.0 / 5, Main.serialFraction(from2, means2), 1e-9);
+		assertEquals(msg, 1, Main.serialFraction(new int[] { 4 }, 
+				new double[] { 1 }), 0);
+	}
+
+	/**
+	 * Tests a small run from the command line options, reported as CSV.
+	 *
+	 * @throws Exception if the run fails.
+	 */
+	@Test
+	public void testRunCsv() throws Exception {
+		final String msg = "run reported incorrectly";
+		Main main = new Main();
+		main.parse(new String[] { "-e", "block", "-s", "64", "-g", "4", 
+				"-t", "1-2", "-r", "2", "-w", "0", "-p", "/blinker.patt", 
+				"-f", "csv" });
+		List<Main.Run> runs = main.runAll();
+		assertEquals(msg, 4, runs.size());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		main.report(runs, new PrintStream(bytes, true));
+		String[] lines = bytes.toString().trim().split("\n");
+		assertEquals(msg, 5, lines.length);
+		assertTrue(msg, lines[0].startsWith("engine,"));
+		assertTrue(msg, lines[3].startsWith("block,64,4,2,0,"));
+
+		try {
+			new Main().parse(new String[] { "-e", "nonsense" });
+			fail(msg);
+		} catch (IllegalArgumentException e) {
+			/* Expected */
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+/* ************************************************************************* *
+ * Name:		MappedLifeTest.java
+ * Description:	Test cases for MappedLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link MappedLife}.
+ *
+ * @author Campbell Lockley
+ */
+public class MappedLifeTest {
+
+	/**
+	 * Tests {@link MappedLife#age()} against {@link SequentialLife}.
+	 * <p>
+	 * A random soup is run with bands of 1 row, of 5 rows, so the last band 
+	 * is short, and of the whole board, so the rows around the only band both 
+	 * wrap. The board is 60 x 60 so rows don't fill their last byte. Cells 
+	 * are read back through {@link MappedLife#isAlive(int, int)}, which wraps.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 * @throws TimeoutException if reading a band times out.
+	 */
+	@Test
+	public void testAge() throws IOException, TimeoutException {
+		final String msg = "mapped board didn't compute correctly";
+		final int boardDim = 60, generations = 20;
+
+		for (int bandRows : new int[] { 1, 5, boardDim }) {
+			File current = File.createTempFile("mappedLife", ".board");
+			File next = File.createTempFile("mappedLife", ".board");
+			current.deleteOnExit();
+			next.deleteOnExit();
+			MappedLife life = new MappedLife(boardDim, bandRows, current, next);
+
+			/* Reference board with a random soup */
+			SequentialLife expected = new SequentialLife(boardDim);
+			Soups.fill(expected);
+			for (int y = 0; y < boardDim; y++) {
+				for (int x = 0; x < boardDim; x++) {
+					life.setCell(x, y, expected.isAlive(x, y));
+				}
+			}
+
+			for (int gen = 0; gen < generations; gen++) {
+				life.age();
+				expected.age();
+			}
+
+			assertEquals(msg, generations, life.getGeneration());
+			assertEquals(msg, current, life.getCurrentFile());
+			long population = 0;
+			for (int y = 0; y < boardDim; y++) {
+				for (int x = 0; x < boardDim; x++) {
+					assertEquals(msg, expected.isAlive(x, y), 
+							life.isAlive(x, y));
+					if (expected.isAlive(x, y)) population++;
+				}
+			}
+			assertEquals(msg, population, life.population());
+
+			/* Positions off the board wrap, as for setCell() */
+			assertEquals(msg, expected.isAlive(boardDim - 1, 0),
+					life.isAlive(-1, boardDim));
+			life.cleanUp();
+		}
+	}
+
+}
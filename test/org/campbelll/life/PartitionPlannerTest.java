@@ -0,0 +1,88 @@
+/* ************************************************************************* *
+ * Name:		PartitionPlannerTest.java
+ * Description:	Test cases for PartitionPlanner.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link PartitionPlanner}.
+ *
+ * @author Campbell Lockley
+ */
+public class PartitionPlannerTest {
+
+	/**
+	 * Tests {@link PartitionPlanner#plan(int, int, int, int, int) plan()}.
+	 * <p>
+	 * Every cell of the board must be in exactly one tile, tiles must be
+	 * within one cell of each other in size and no larger than the maximum,
+	 * and there must be at least the minimum number of tiles.
+	 */
+	@Test
+	public void testPlan() {
+		final int[][] cases = {
+				/* width, height, minTiles, maxTileWidth, maxTileHeight */
+				{ 1024, 1024, 16, 4096, 4096 },
+				{ 1000, 7, 12, 4096, 4096 },
+				{ 7, 1000, 12, 4096, 4096 },
+				{ 200, 40, 6, 64, 64 },
+				{ 97, 13, 1, 10, 3 },
+				{ 3, 2, 100, 4096, 4096 },
+			};
+
+		for (int[] c : cases) {
+			final String msg = "bad plan for " + c[0] + "x" + c[1];
+			PartitionPlanner.Partition partition =
+					PartitionPlanner.plan(c[0], c[1], c[2], c[3], c[4]);
+
+			/* At least minTiles, unless there are fewer cells */
+			assertTrue(msg, partition.size() >= Math.min(c[2], c[0] * c[1]));
+
+			int[] covered = new int[c[0] * c[1]];
+			int minW = Integer.MAX_VALUE, maxW = 0;
+			int minH = Integer.MAX_VALUE, maxH = 0;
+			for (int i = 0; i < partition.size(); i++) {
+				final int w = partition.getWidth(i);
+				final int h = partition.getHeight(i);
+				assertTrue(msg, (w >= 1) && (w <= c[3]));
+				assertTrue(msg, (h >= 1) && (h <= c[4]));
+				minW = Math.min(minW, w);
+				maxW = Math.max(maxW, w);
+				minH = Math.min(minH, h);
+				maxH = Math.max(maxH, h);
+				assertEquals(msg, (partition.getY(i) + 1) * (c[0] + 2) +
+						partition.getX(i) + 1, partition.getStart(i));
+
+				for (int y = partition.getY(i); y < partition.getY(i) + h; y++) {
+					for (int x = partition.getX(i); x < partition.getX(i) + w;
+							x++) {
+						covered[y * c[0] + x]++;
+					}
+				}
+			}
+			assertTrue(msg, maxW - minW <= 1);
+			assertTrue(msg, maxH - minH <= 1);
+			for (int count : covered) assertEquals(msg, 1, count);
+		}
+	}
+
+	/**
+	 * Tests {@link PartitionPlanner#plan(int, int, int, int, int) plan()}
+	 * gives a square grid for a square board with a square number of tiles.
+	 */
+	@Test
+	public void testPlanSquare() {
+		final String msg = "square board didn't give a square grid";
+		PartitionPlanner.Partition partition =
+				PartitionPlanner.plan(4096, 4096, 32 * 32, 4096, 4096);
+		assertEquals(msg, 32, partition.getColumns());
+		assertEquals(msg, 32, partition.getRows());
+	}
+
+}
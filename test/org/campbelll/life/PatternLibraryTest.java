@@ -0,0 +1,159 @@
+/* ************************************************************************* *
+ * Name:		PatternLibraryTest.java
+ * Description:	Test cases for PatternLibrary.java and Stamp.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link PatternLibrary} and {@link Stamp}.
+ * 
+ * @author Campbell Lockley
+ */
+public class PatternLibraryTest {
+
+	/**
+	 * Tests that {@link PatternLibrary#get(String)} parses each pattern once, 
+	 * and that stamping a pattern at its own position gives the same board as 
+	 * {@link Life#loadPattern(InputStream)}.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testGet() throws IOException, FileFormatException {
+		final String msg = "pattern not parsed or cached correctly";
+		
+		/* Instantiate class under test */
+		PatternLibrary library = new PatternLibrary();
+		
+		/*
+		 * Load test pattern - toadWrap.patt:
+		 * 	1:0 0
+		 * 	2:###
+		 * 	3:
+		 * 	4:
+		 * 	5:
+		 * 	6: ###
+		 */
+		Stamp toad = library.get("/toadWrap.patt");
+		assertSame(msg, toad, library.get("/toadWrap.patt"));
+		assertEquals(msg, 1, library.size());
+		assertEquals(msg, 0, toad.getX());
+		assertEquals(msg, 0, toad.getY());
+		assertEquals(msg, 4, toad.getWidth());
+		assertEquals(msg, 5, toad.getHeight());
+		assertEquals(msg, 6, toad.getPopulation());
+		
+		/* Same board as loadPattern() */
+		SequentialLife life = new SequentialLife(5);
+		SequentialLife expected = new SequentialLife(5);
+		life.stamp(toad, toad.getX(), toad.getY());
+		InputStream in = PatternLibraryTest.class
+				.getResourceAsStream("/toadWrap.patt");
+		expected.loadPattern(in);
+		assertArrayEquals(msg, expected.board, life.board);
+	}
+	
+	/**
+	 * Tests {@link Stamp#transform(Stamp.Transform)} with an asymmetric 
+	 * pattern, checking every transform against its definition and the 
+	 * relations between them.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testTransform() throws IOException, FileFormatException {
+		final String msg = "stamp not transformed correctly";
+		
+		/* R-pentomino has no symmetry */
+		String pattern = "0 0\n ##\n## \n # \n";
+		Stamp stamp = Stamp.parse(new ByteArrayInputStream(
+				pattern.getBytes("US-ASCII")));
+		assertEquals(msg, 5, stamp.getPopulation());
+		
+		/* Every transform maps every cell as defined */
+		for (Stamp.Transform transform : Stamp.Transform.values()) {
+			Stamp result = stamp.transform(transform);
+			assertSame(msg, result, stamp.transform(transform));
+			assertEquals(msg, 5, result.getPopulation());
+			for (int y = 0; y < 3; y++) {
+				for (int x = 0; x < 3; x++) {
+					assertEquals(msg, stamp.isAlive(x, y), result.isAlive(
+							transform.mapX(x, y, 3, 3), 
+							transform.mapY(x, y, 3, 3)));
+				}
+			}
+		}
+		
+		/* Rotations compose, and all 8 transforms differ */
+		Stamp.Transform r90 = Stamp.Transform.ROTATE_90;
+		assertEquals(msg, stamp.transform(Stamp.Transform.ROTATE_180), 
+				stamp.transform(r90).transform(r90));
+		assertEquals(msg, stamp.transform(Stamp.Transform.ANTI_TRANSPOSE), 
+				stamp.transform(Stamp.Transform.TRANSPOSE)
+				.transform(Stamp.Transform.ROTATE_180));
+		for (Stamp.Transform a : Stamp.Transform.values()) {
+			for (Stamp.Transform b : Stamp.Transform.values()) {
+				assertEquals(msg, a == b, 
+						stamp.transform(a).equals(stamp.transform(b)));
+			}
+		}
+	}
+	
+	/**
+	 * Tests {@link ParallelLife#stampAll(List)} against 
+	 * {@link Life#stampAll(List)} with many overlapping, transformed 
+	 * placements which wrap around the board.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 * @throws TimeoutException if placing the stamps times out.
+	 */
+	@Test
+	public void testStampAll() 
+			throws IOException, FileFormatException, TimeoutException {
+		final String msg = "stamps not placed correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		PatternLibrary library = new PatternLibrary();
+		BlockParallelLife life = new BlockParallelLife(boardDim, numThreads);
+		SequentialLife expected = new SequentialLife(boardDim);
+		
+		/* Place many random toads and squares */
+		Random random = new Random(1178618);
+		List<Stamp.Placement> placements = new ArrayList<Stamp.Placement>();
+		Stamp.Transform[] transforms = Stamp.Transform.values();
+		for (int i = 0; i < 1000; i++) {
+			Stamp stamp = library.get(random.nextBoolean() ? 
+					"/toadWrap.patt" : "/squareTest.patt");
+			placements.add(new Stamp.Placement(stamp, 
+					random.nextInt(2 * boardDim) - boardDim, 
+					random.nextInt(2 * boardDim) - boardDim, 
+					transforms[random.nextInt(transforms.length)]));
+		}
+		life.stampAll(placements);
+		for (Stamp.Placement placement : placements) {
+			expected.stamp(placement.stamp, placement.x, placement.y);
+		}
+		assertArrayEquals(msg, expected.board, life.board);
+		life.cleanUp();
+	}
+	
+}
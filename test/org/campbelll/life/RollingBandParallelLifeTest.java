@@ -0,0 +1,113 @@
+/* ************************************************************************* *
+ * Name:		RollingBandParallelLifeTest.java
+ * Description:	Test cases for RollingBandParallelLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link RollingBandParallelLife}.
+ * 
+ * @author Campbell Lockley
+ */
+public class RollingBandParallelLifeTest {
+
+	/**
+	 * Tests {@link RollingBandParallelLife#age()}.
+	 * <p>
+	 * {@link RollingBandParallelLife#age() age()} is tested against 
+	 * {@link SequentialLife} with a random board, with bands of uneven height 
+	 * down to a single row, including the deltas sent to listeners.
+	 * 
+	 * @throws TimeoutException if {@link RollingBandParallelLife#age() age()} 
+	 * times out.
+	 */
+	@Test
+	public void testAge() throws TimeoutException {
+		final String msg = "age() didn't compute next generation correctly";
+		final int boardDim = 40;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		
+		for (int bands : new int[] { 1, 3, 7, boardDim }) {
+			/* Instantiate class under test and reference implementation */
+			RollingBandParallelLife life = 
+					new RollingBandParallelLife(boardDim, numThreads, bands);
+			SequentialLife expected = new SequentialLife(boardDim);
+			final List<Delta> deltas = new ArrayList<Delta>();
+			final List<Delta> expectedDeltas = new ArrayList<Delta>();
+			life.addDeltaListener(new DeltaListener() {
+				@Override
+				public void generationComputed(Delta delta) {
+					deltas.add(delta);
+				}
+			});
+			expected.addDeltaListener(new DeltaListener() {
+				@Override
+				public void generationComputed(Delta delta) {
+					expectedDeltas.add(delta);
+				}
+			});
+			
+			/* Fill both boards with the same random soup */
+			Soups.fill(life, expected);
+			
+			/* Compare every generation, including edges */
+			for (int gen = 0; gen < 20; gen++) {
+				life.age();
+				expected.age();
+				assertArrayEquals(msg, expected.board, life.board);
+				assertArrayEquals(msg, expectedDeltas.get(gen).getRuns(), 
+						deltas.get(gen).getRuns());
+			}
+			life.cleanUp();
+		}
+	}
+	
+	/**
+	 * Tests {@link RollingBandParallelLife#age()} when a generation times out.
+	 * <p>
+	 * A timeout much shorter than a generation forces bands to be cancelled 
+	 * part way, after which the board must be as it was before age() was 
+	 * called, and ageing again must still match {@link SequentialLife}.
+	 * 
+	 * @throws TimeoutException if ageing without the short timeout times out.
+	 */
+	@Test
+	public void testTimeout() throws TimeoutException {
+		final String msg = "timed out generation wasn't undone";
+		final int boardDim = 4096;
+		
+		RollingBandParallelLife life = 
+				new RollingBandParallelLife(boardDim, 1, 64);
+		SequentialLife expected = new SequentialLife(boardDim);
+		Soups.fill(life, expected);
+		
+		/* Time out part way through the bands */
+		life.setTimeout(1);
+		try {
+			life.age();
+			fail(msg);
+		} catch (TimeoutException e) {
+			/* Expected */
+		}
+		assertArrayEquals(msg, expected.board, life.board);
+		assertEquals(msg, 0, life.getGeneration());
+		
+		/* The board is still usable */
+		life.setTimeout(ParallelLife.timeout);
+		life.age();
+		expected.age();
+		assertArrayEquals(msg, expected.board, life.board);
+		life.cleanUp();
+	}
+	
+}
@@ -0,0 +1,105 @@
+/* ************************************************************************* *
+ * Name:		RollingRowLifeTest.java
+ * Description:	Test cases for RollingRowLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link RollingRowLife}.
+ * 
+ * @author Campbell Lockley
+ */
+public class RollingRowLifeTest {
+
+	/**
+	 * Tests {@link RollingRowLife#age()}.
+	 * <p>
+	 * {@link RollingRowLife#age() age()} is tested against 
+	 * {@link SequentialLife} with a random board, including the edges and the 
+	 * deltas sent to listeners.
+	 */
+	@Test
+	public void testAge() {
+		final String msg = "age() didn't compute next generation correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 48;
+		RollingRowLife life = new RollingRowLife(boardDim);
+		SequentialLife expected = new SequentialLife(boardDim);
+		assertNull(msg, life.nextGen);
+		final List<Delta> deltas = new ArrayList<Delta>();
+		final List<Delta> expectedDeltas = new ArrayList<Delta>();
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				deltas.add(delta);
+			}
+		});
+		expected.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				expectedDeltas.add(delta);
+			}
+		});
+		
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, expected);
+		
+		/* Compare every generation, including edges */
+		for (int gen = 0; gen < 30; gen++) {
+			life.age();
+			expected.age();
+			assertArrayEquals(msg, expected.board, life.board);
+			assertArrayEquals(msg, expectedDeltas.get(gen).getRuns(), 
+					deltas.get(gen).getRuns());
+		}
+		assertEquals(msg, 30, life.getGeneration());
+	}
+	
+	/**
+	 * Tests {@link RollingRowLife#loadPattern(InputStream)} without nextGen, 
+	 * using blinker.patt.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testLoadPattern() throws IOException, FileFormatException {
+		final String msg = "loadPattern() did not load correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		RollingRowLife life = new RollingRowLife(5);
+		SequentialLife expected = new SequentialLife(5);
+		
+		/*
+		 * Load test pattern - blinker.patt:
+		 * 	1:1 2
+		 * 	2:###
+		 */
+		InputStream in = RollingRowLifeTest.class
+				.getResourceAsStream("/blinker.patt");
+		life.loadPattern(in);
+		in = RollingRowLifeTest.class.getResourceAsStream("/blinker.patt");
+		expected.loadPattern(in);
+		assertArrayEquals(msg, expected.board, life.board);
+		
+		/* Blinker oscillates */
+		for (int gen = 0; gen < 4; gen++) {
+			life.age();
+			expected.age();
+			assertArrayEquals(msg, expected.board, life.board);
+		}
+	}
+	
+}
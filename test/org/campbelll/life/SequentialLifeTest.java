@@ -10,6 +10,9 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -207,4 +210,175 @@ public class SequentialLifeTest {
 		}
 	}
 	
+	/**
+	 * Tests the deltas sent to a {@link DeltaListener} by 
+	 * {@link SequentialLife#age()}.
+	 * <p>
+	 * Deltas are tested using blinker.patt, where each generation flips 4 
+	 * cells. Applying each delta to the previous board must give the new 
+	 * board.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testDelta() throws IOException, FileFormatException {
+		final String msg = "delta doesn't match the computed generation";
+		
+		/* Instantiate class under test */
+		final int boardDim = 5;
+		SequentialLife life = new SequentialLife(boardDim);
+		final List<Delta> deltas = new ArrayList<Delta>();
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				deltas.add(delta);
+			}
+		});
+		
+		/*
+		 * Load test pattern - blinker.patt:
+		 * 	1:1 2
+		 * 	2:###
+		 */
+		InputStream in = SequentialLifeTest.class
+				.getResourceAsStream("/blinker.patt");
+		life.loadPattern(in);
+		
+		/* Run method under test and apply deltas to a copy of the board */
+		final char[] board = Arrays.copyOf(life.board, life.board.length);
+		for (int gen = 1; gen <= 4; gen++) {
+			life.age();
+			assertEquals(msg, gen, deltas.size());
+			Delta delta = deltas.get(gen - 1);
+			assertEquals(msg, gen, delta.getGeneration());
+			assertEquals(msg, 4, delta.size());
+			delta.apply(board);
+			life.copyEdges(board);
+			assertArrayEquals(msg, board, life.board);
+		}
+		
+		/* 1st generation: (1,2) and (3,2) die, (2,1) and (2,3) are born */
+		assertArrayEquals(msg, new int[] { 7, 1, 11, 1, 13, 1, 17, 1 }, 
+				deltas.get(0).getRuns());
+		
+		/* 2nd generation flips the same cells back */
+		assertArrayEquals(msg, deltas.get(0).getRuns(), 
+				deltas.get(1).getRuns());
+	}
+
+	/**
+	 * Tests {@link Life#computeRegion(int, int, int, int, int)}.
+	 * <p>
+	 * Windows of a random soup are computed ahead and compared with the
+	 * board aged as normal. The windows include one crossing the edges of
+	 * the board and ones whose light cone wraps along one or both axes.
+	 */
+	@Test
+	public void testComputeRegion() {
+		final String msg = "computeRegion() didn't compute window correctly";
+		final int[][] windows =
+			{
+				/* x, y, width, height, generations */
+				{ 20, 24, 8, 8, 10 },
+				{ 60, 58, 12, 9, 6 },
+				{ 5, 10, 50, 4, 8 },
+				{ 0, 0, 64, 64, 3 },
+				{ 30, 30, 1, 1, 40 },
+				{ 12, 40, 16, 16, 0 },
+			};
+
+		/* Instantiate class under test with a random soup */
+		final int boardDim = 64;
+		SequentialLife life = new SequentialLife(boardDim);
+		Soups.fill(life);
+
+		for (int[] w : windows) {
+			/* Run method under test, then age a copy of the whole board */
+			char[] region = life.computeRegion(w[0], w[1], w[2], w[3], w[4]);
+			SequentialLife expected = new SequentialLife(boardDim);
+			System.arraycopy(life.board, 0, expected.board, 0,
+					life.board.length);
+			for (int gen = 0; gen < w[4]; gen++) expected.age();
+
+			for (int y = 0; y < w[3]; y++) {
+				for (int x = 0; x < w[2]; x++) {
+					assertEquals(msg, expected.isAlive((w[0] + x) % boardDim,
+							(w[1] + y) % boardDim),
+							region[y * w[2] + x] == ALIVE);
+				}
+			}
+		}
+		assertEquals(msg, 0, life.getGeneration());
+	}
+
+	/**
+	 * Tests {@link Life#setCell(int, int, boolean)}, 
+	 * {@link Life#toggleRegion(int, int, int, int)} and 
+	 * {@link Life#queueStamp(Stamp, int, int)}.
+	 * <p>
+	 * Mutations queued before a generation must be applied on top of it, 
+	 * with edges copied and the changed cells in its delta.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testMutations() throws IOException, FileFormatException {
+		final String msg = "mutations weren't applied correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 8;
+		SequentialLife life = new SequentialLife(boardDim);
+		SequentialLife expected = new SequentialLife(boardDim);
+		final Delta[] last = new Delta[1];
+		life.addDeltaListener(new DeltaListener() {
+			@Override
+			public void generationComputed(Delta delta) {
+				last[0] = delta;
+			}
+		});
+		
+		/*
+		 * Load test pattern - blinker.patt:
+		 * 	1:1 2
+		 * 	2:###
+		 */
+		life.loadPattern(SequentialLifeTest.class
+				.getResourceAsStream("/blinker.patt"));
+		expected.loadPattern(SequentialLifeTest.class
+				.getResourceAsStream("/blinker.patt"));
+		Stamp square = Stamp.parse(SequentialLifeTest.class
+				.getResourceAsStream("/squareTest.patt"));
+		
+		/* Queue mutations, including over the blinker and across edges */
+		life.setCell(2, 1, false);
+		life.setCell(7, 7, true);
+		life.toggleRegion(6, 1, 4, 3);
+		life.queueStamp(square, 4, 5);
+		assertTrue(msg, life.hasPendingMutations());
+		final char[] board = Arrays.copyOf(life.board, life.board.length);
+		life.age();
+		assertFalse(msg, life.hasPendingMutations());
+		
+		/* Same changes made directly to the next generation */
+		expected.age();
+		expected.board[expected.cellIndex(2, 1)] = DEAD;
+		expected.board[expected.cellIndex(7, 7)] = ALIVE;
+		for (int y = 1; y < 4; y++) {
+			for (int x = 6; x < 10; x++) {
+				int index = expected.cellIndex(x % boardDim, y);
+				expected.board[index] = 
+						(expected.board[index] == ALIVE) ? DEAD : ALIVE;
+			}
+		}
+		expected.stamp(square, 4, 5);
+		assertArrayEquals(msg, expected.board, life.board);
+		
+		/* Delta takes the previous board to the new one */
+		last[0].apply(board);
+		life.copyEdges(board);
+		assertArrayEquals(msg, board, life.board);
+	}
+	
 }
@@ -0,0 +1,151 @@
+/* ************************************************************************* *
+ * Name:		SimulationSchedulerTest.java
+ * Description:	Test cases for SimulationScheduler.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import static org.campbelll.life.Life.ALIVE;
+import static org.campbelll.life.Life.DEAD;
+
+/**
+ * Test cases for {@link SimulationScheduler}.
+ *
+ * @author Campbell Lockley
+ */
+public class SimulationSchedulerTest {
+
+	/**
+	 * Tests {@link SimulationScheduler#submit(Life, long)}.
+	 * <p>
+	 * Many small random soups, each with a different number of generations,
+	 * are run at once with a small time slice and checked against the same
+	 * soups run one after another.
+	 *
+	 * @throws Exception if a simulation fails.
+	 */
+	@Test
+	public void testSubmit() throws Exception {
+		final String msg = "submit() didn't run simulation correctly";
+
+		/* Instantiate class under test */
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		SimulationScheduler scheduler = new SimulationScheduler(numThreads, 3);
+
+		/* Submit many soups with different targets */
+		final int boardDim = 16;
+		final int simulations = 200;
+		Random random = new Random(1178618);
+		List<CompletableFuture<Life>> futures =
+				new ArrayList<CompletableFuture<Life>>();
+		List<SequentialLife> expected = new ArrayList<SequentialLife>();
+		for (int i = 0; i < simulations; i++) {
+			SequentialLife life = new SequentialLife(boardDim);
+			SequentialLife reference = new SequentialLife(boardDim);
+			for (int j = 0; j < life.board.length; j++) {
+				life.board[j] = random.nextBoolean() ? ALIVE : DEAD;
+			}
+			life.copyEdges(life.board);
+			System.arraycopy(life.board, 0, reference.board, 0,
+					life.board.length);
+			for (int gen = 0; gen < i % 37; gen++) reference.age();
+			expected.add(reference);
+			futures.add(scheduler.submit(life, i % 37));
+		}
+
+		/* Compare every simulation once complete */
+		for (int i = 0; i < simulations; i++) {
+			Life life = futures.get(i).get();
+			assertEquals(msg, i % 37, life.getGeneration());
+			assertArrayEquals(msg, expected.get(i).board, life.board);
+		}
+		assertEquals(msg, 0, scheduler.getActive());
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Tests parallel engines sharing the scheduler's pool.
+	 * <p>
+	 * More engines than compute threads are run as simulations, so every
+	 * worker is ageing an engine which waits for its own jobs on the same
+	 * pool. Each is checked against {@link SequentialLife}, and engines 
+	 * must plan their work for the pool's two threads.
+	 *
+	 * @throws Exception if a simulation fails.
+	 */
+	@Test
+	public void testSharedPool() throws Exception {
+		final String msg = "engine on the shared pool computed incorrectly";
+		final int boardDim = 64, generations = 20;
+
+		/* Instantiate class under test with two compute threads */
+		SimulationScheduler scheduler = new SimulationScheduler(2, 3);
+		assertEquals(msg, 2, ParallelLife.parallelism(scheduler.getPool()));
+		List<CompletableFuture<Life>> futures =
+				new ArrayList<CompletableFuture<Life>>();
+		List<SequentialLife> expected = new ArrayList<SequentialLife>();
+		for (int i = 0; i < 6; i++) {
+			ParallelLife life = (i % 2 == 0) ?
+					new BlockParallelLife(boardDim, scheduler.getPool()) :
+					new CacheParallelLife(boardDim, scheduler.getPool(), 4);
+			SequentialLife reference = new SequentialLife(boardDim);
+			Soups.fill(life, reference);
+			for (int gen = 0; gen < generations; gen++) reference.age();
+			expected.add(reference);
+			futures.add(scheduler.submit(life, generations));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			Life life = futures.get(i).get();
+			assertEquals(msg, generations, life.getGeneration());
+			assertArrayEquals(msg, expected.get(i).board, life.board);
+			life.cleanUp();
+		}
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Tests {@link SimulationScheduler#submit(Life, Callable, long)}, loading
+	 * a blinker on the I/O executor and running it for an odd number of
+	 * generations.
+	 *
+	 * @throws Exception if a simulation fails.
+	 */
+	@Test
+	public void testSubmitPattern() throws Exception {
+		final String msg = "submit() didn't load pattern correctly";
+
+		/* Instantiate class under test */
+		SimulationScheduler scheduler = new SimulationScheduler();
+		Callable<InputStream> blinker = new Callable<InputStream>() {
+			@Override
+			public InputStream call() {
+				return getClass().getResourceAsStream("/blinker.patt");
+			}
+		};
+
+		/* Blinker is vertical after an odd number of generations */
+		Life life = scheduler.submit(new SequentialLife(5), blinker, 5).get();
+		assertEquals(msg, 5, life.getGeneration());
+		for (int y = 0; y < 5; y++) {
+			for (int x = 0; x < 5; x++) {
+				assertEquals(msg, (x == 2) && (y >= 1) && (y <= 3),
+						life.isAlive(x, y));
+			}
+		}
+		scheduler.shutdown();
+	}
+
+}
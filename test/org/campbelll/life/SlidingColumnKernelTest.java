@@ -0,0 +1,81 @@
+/* ************************************************************************* *
+ * Name:		SlidingColumnKernelTest.java
+ * Description:	Test cases for SlidingColumnKernel.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.campbelll.life.Life.ALIVE;
+import static org.campbelll.life.Life.DEAD;
+
+/**
+ * Test cases for {@link SlidingColumnKernel}.
+ *
+ * @author Campbell Lockley
+ */
+public class SlidingColumnKernelTest {
+
+	/**
+	 * Tests {@link SlidingColumnKernel#ageRow(char[], char[], int, int)
+	 * ageRow()}.
+	 * <p>
+	 * Every row of a random board is aged and compared with a sum of the
+	 * nine cells around each cell, for narrow and wide strides and for rows
+	 * narrower than the stride.
+	 */
+	@Test
+	public void testAgeRow() {
+		final String msg = "kernel didn't compute next generation correctly";
+		final int height = 9;
+		final int[][] cases = {
+				/* stride, width */
+				{ 3, 1 },
+				{ 4, 2 },
+				{ 9, 7 },
+				{ 66, 64 },
+				{ 80, 33 },
+				{ 1026, 1024 },
+			};
+
+		Random random = new Random(1178618);
+		for (int[] c : cases) {
+			final int stride = c[0], width = c[1];
+			SlidingColumnKernel kernel = new SlidingColumnKernel(stride);
+			assertEquals(msg, stride, kernel.getStride());
+
+			char[] board = new char[stride * (height + 2)];
+			for (int i = 0; i < board.length; i++) {
+				board[i] = random.nextBoolean() ? ALIVE : DEAD;
+			}
+			char[] nextGen = new char[board.length];
+			char[] expected = new char[board.length];
+
+			for (int y = 1; y <= height; y++) {
+				int flips = 0;
+				for (int i = y * stride + 1; i <= y * stride + width; i++) {
+					int sum = 0;
+					for (int dy = -1; dy <= 1; dy++) {
+						for (int dx = -1; dx <= 1; dx++) {
+							if (board[i + dy * stride + dx] == ALIVE) sum++;
+						}
+					}
+					expected[i] = (sum == 3) ? ALIVE :
+							((sum == 4) ? board[i] : DEAD);
+					if (expected[i] != board[i]) flips++;
+				}
+				assertEquals(msg, flips,
+						kernel.ageRow(board, nextGen, y * stride + 1, width));
+			}
+			assertArrayEquals(msg + " for stride " + stride, expected,
+					nextGen);
+		}
+	}
+
+}
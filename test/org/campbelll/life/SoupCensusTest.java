@@ -0,0 +1,104 @@
+/* ************************************************************************* *
+ * Name:		SoupCensusTest.java
+ * Description:	Test cases for SoupCensus.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link SoupCensus}.
+ *
+ * @author Campbell Lockley
+ */
+public class SoupCensusTest {
+
+	/**
+	 * Tests {@link SoupCensus#classify(boolean[][])}.
+	 * <p>
+	 * Every phase and orientation of an object must get the same code.
+	 */
+	@Test
+	public void testClassify() {
+		final String msg = "object classified incorrectly";
+
+		assertEquals(msg, "xs4_3.3", SoupCensus.classify(cells("##", "##")));
+
+		/* Blinker, both phases */
+		assertEquals(msg, "xp2_7", SoupCensus.classify(cells("###")));
+		assertEquals(msg, "xp2_7", SoupCensus.classify(cells("#", "#", "#")));
+
+		/* Beehive, both orientations */
+		String beehive = SoupCensus.classify(cells(".##.", "#..#", ".##."));
+		assertTrue(msg, beehive.startsWith("xs6_"));
+		assertEquals(msg, beehive,
+				SoupCensus.classify(cells(".#.", "#.#", "#.#", ".#.")));
+
+		/* Glider, two phases in two orientations */
+		String glider = SoupCensus.classify(cells(".#.", "..#", "###"));
+		assertTrue(msg, glider.startsWith("xq4_"));
+		assertEquals(msg, glider,
+				SoupCensus.classify(cells("#.#", ".##", ".#.")));
+		assertEquals(msg, glider,
+				SoupCensus.classify(cells("###", "#..", ".#.")));
+
+		/* Different still lifes of the same population */
+		String ship = SoupCensus.classify(cells("##.", "#.#", ".##"));
+		assertTrue(msg, ship.startsWith("xs6_"));
+		assertFalse(msg, beehive.equals(ship));
+	}
+
+	/**
+	 * Tests {@link SoupCensus#run(long, long)}.
+	 * <p>
+	 * A census must count every soup and find blocks, and must not depend
+	 * on the number of threads or how the soups are split into batches.
+	 */
+	@Test
+	public void testRun() {
+		final String msg = "census counted incorrectly";
+		final int soups = 200;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+
+		SoupCensus single = new SoupCensus(40, 10, 3000, 1);
+		assertTrue(msg, single.batchSize(soups) < soups / 2);
+		single.run(1178618, soups);
+		single.cleanUp();
+		SoupCensus parallel = new SoupCensus(40, 10, 3000, numThreads);
+		parallel.run(1178618, soups);
+		parallel.cleanUp();
+
+		assertEquals(msg, soups, single.getSoups());
+		assertEquals(msg, soups, parallel.getSoups());
+		Map<String, Long> counts = single.getCounts();
+		assertEquals(msg, counts, parallel.getCounts());
+		assertTrue(msg, counts.containsKey("xs4_3.3"));
+		assertTrue(msg, single.getUnsettled() < soups / 10);
+
+		/* Most objects are recognised from the cache */
+		assertTrue(msg, single.getCacheHits() > single.getCacheMisses());
+	}
+
+	/**
+	 * Builds cells of an object from rows of '#' and '.'.
+	 *
+	 * @param rows Rows of the object.
+	 * @return Cells indexed [y][x].
+	 */
+	private static boolean[][] cells(String... rows) {
+		boolean[][] cells = new boolean[rows.length][rows[0].length()];
+		for (int y = 0; y < rows.length; y++) {
+			for (int x = 0; x < rows[y].length(); x++) {
+				cells[y][x] = rows[y].charAt(x) == '#';
+			}
+		}
+		return cells;
+	}
+
+}
@@ -0,0 +1,59 @@
+/* ************************************************************************* *
+ * Name:		Soups.java
+ * Description:	Random soups shared by the test cases of the engines.
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import java.util.Random;
+
+import static org.campbelll.life.Life.ALIVE;
+import static org.campbelll.life.Life.DEAD;
+
+/**
+ * Builds the random soups the engines are tested on.
+ * <p>
+ * Every soup comes from the same seed, so a board of a given size holds the
+ * same soup in every test, whatever the layout of the engine.
+ *
+ * @author Campbell Lockley
+ */
+final class Soups {
+	/* Seed of every soup */
+	static final long SEED = 1178618;
+
+	/** Not instantiable. */
+	private Soups() {}
+
+	/**
+	 * Fills a board with a random soup and copies its edges, then copies the
+	 * soup onto the boards of any other lives. The lives may have different
+	 * layouts, but must be the same size.
+	 *
+	 * @param life Life whose board is filled.
+	 * @param copies Lives, often a reference {@link SequentialLife}, which
+	 * are given the same soup.
+	 */
+	static void fill(Life life, Life... copies) {
+		Random random = new Random(SEED);
+		for (int y = 0; y < life.getHeight(); y++) {
+			for (int x = 0; x < life.getWidth(); x++) {
+				life.board[life.cellIndex(x, y)] =
+						random.nextBoolean() ? ALIVE : DEAD;
+			}
+		}
+		life.copyEdges(life.board);
+
+		for (Life copy : copies) {
+			for (int y = 0; y < life.getHeight(); y++) {
+				for (int x = 0; x < life.getWidth(); x++) {
+					copy.board[copy.cellIndex(x, y)] =
+							life.board[life.cellIndex(x, y)];
+				}
+			}
+			copy.copyEdges(copy.board);
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+/* ************************************************************************* *
+ * Name:		StripNodeTest.java
+ * Description:	Test cases for StripNode.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link StripNode}.
+ *
+ * @author Campbell Lockley
+ */
+public class StripNodeTest {
+
+	/**
+	 * Tests {@link StripNode#age()} against {@link SequentialLife}.
+	 * <p>
+	 * A random soup is run on rings of 1, 2 and 3 nodes over loopback, each 
+	 * node aging on its own thread. With 3 nodes on a 64 x 64 board the 
+	 * strips are of different heights.
+	 *
+	 * @throws Exception if a node fails.
+	 */
+	@Test
+	public void testAge() throws Exception {
+		final String msg = "strips didn't compute correctly";
+		final int boardDim = 64, generations = 20;
+
+		for (int strips = 1; strips <= 3; strips++) {
+			/* Reference board with a random soup */
+			SequentialLife expected = new SequentialLife(boardDim);
+			Soups.fill(expected);
+
+			/* Set up a ring of nodes with the soup */
+			final StripNode[] nodes = new StripNode[strips];
+			InetSocketAddress[] addresses = new InetSocketAddress[strips];
+			for (int i = 0; i < strips; i++) {
+				nodes[i] = new StripNode(boardDim, strips, i);
+				addresses[i] = nodes[i].listen(new InetSocketAddress(
+						InetAddress.getLoopbackAddress(), 0));
+				for (int y = 0; y < boardDim; y++) {
+					for (int x = 0; x < boardDim; x++) {
+						nodes[i].setCell(x, y, expected.isAlive(x, y));
+					}
+				}
+			}
+
+			/* Run every node on its own thread */
+			ExecutorService pool = Executors.newFixedThreadPool(strips);
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for (int i = 0; i < strips; i++) {
+				final StripNode node = nodes[i];
+				final InetSocketAddress below = addresses[(i + 1) % strips];
+				futures.add(pool.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						node.connect(below);
+						for (int gen = 0; gen < generations; gen++) node.age();
+						return null;	// Nothing to return
+					}
+				}));
+			}
+			for (Future<Object> future : futures) {
+				future.get(StripNode.timeout, TimeUnit.MILLISECONDS);
+			}
+			pool.shutdown();
+
+			for (int gen = 0; gen < generations; gen++) expected.age();
+			int rows = 0;
+			for (StripNode node : nodes) {
+				assertEquals(msg, generations, node.getGeneration());
+				assertEquals(msg, rows, node.getFirstRow());
+				for (int y = 0; y < node.getRows(); y++) {
+					for (int x = 0; x < boardDim; x++) {
+						assertEquals(msg, expected.isAlive(x, rows + y), 
+								node.isAlive(x, rows + y));
+					}
+				}
+				rows += node.getRows();
+				node.cleanUp();
+			}
+			assertEquals(msg, boardDim, rows);
+		}
+	}
+
+}
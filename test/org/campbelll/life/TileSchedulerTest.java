@@ -0,0 +1,130 @@
+/* ************************************************************************* *
+ * Name:		TileSchedulerTest.java
+ * Description:	Test cases for TileScheduler.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link TileScheduler}.
+ *
+ * @author Campbell Lockley
+ */
+public class TileSchedulerTest {
+
+	/**
+	 * Tests the jobs of {@link TileScheduler#schedule(List)}.
+	 * <p>
+	 * Every fourth tile takes a millisecond but flips no cells, as a tile of 
+	 * a still board does under a kernel which visits every cell. Once timed, 
+	 * the slow tiles must be submitted first, each in a job of its own, and 
+	 * only the fast tiles batched at the end.
+	 *
+	 * @throws Exception if a job fails.
+	 */
+	@Test
+	public void testSchedule() throws Exception {
+		final String msg = "tiles scheduled in the wrong order";
+		final int tiles = 64;
+		final List<Integer> ran = new ArrayList<Integer>();
+		List<Tile> jobs = new ArrayList<Tile>();
+		for (int i = 0; i < tiles; i++) {
+			jobs.add(new Tile(i, (i % 4 == 0) ? 1000000 : 0, 
+					(i % 4 == 1) ? 10 : 0, ran));
+		}
+		TileScheduler scheduler = new TileScheduler(tiles);
+
+		/* Untimed tiles each get a job of their own */
+		assertEquals(msg, tiles, scheduler.schedule(jobs).size());
+
+		for (int gen = 0; gen < 3; gen++) {
+			List<Callable<Object>> scheduled = scheduler.schedule(jobs);
+			List<int[]> batches = new ArrayList<int[]>();
+			for (Callable<Object> job : scheduled) {
+				ran.clear();
+				job.call();
+				int[] batch = new int[ran.size()];
+				for (int j = 0; j < batch.length; j++) batch[j] = ran.get(j);
+				batches.add(batch);
+			}
+			if (gen == 0) continue;		// Tiles timed by the first run
+
+			/* Slow tiles first and alone, then fast tiles in batches */
+			for (int j = 0; j < tiles / 4; j++) {
+				assertEquals(msg, 1, batches.get(j).length);
+				assertEquals(msg, 0, batches.get(j)[0] % 4);
+			}
+			int count = tiles / 4;
+			for (int j = tiles / 4; j < batches.size(); j++) {
+				assertTrue(msg, batches.get(j).length <= 
+						TileScheduler.BATCH_SIZE);
+				for (int tile : batches.get(j)) assertTrue(msg, tile % 4 != 0);
+				count += batches.get(j).length;
+			}
+			assertEquals(msg, tiles, count);
+			assertTrue(msg, batches.size() < tiles);
+		}
+	}
+
+	/**
+	 * Tile job which takes a set time and flips a set number of cells.
+	 */
+	private static class Tile extends ParallelLife {
+		/* Tile number, its time and activity, and list of tiles run */
+		private final int tile;
+		private final long nanos;
+		private final int flips;
+		private final List<Integer> ran;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param tile Tile number.
+		 * @param nanos Time the tile takes in nanoseconds.
+		 * @param flips Cells the tile flips.
+		 * @param ran List tile numbers are added to when run.
+		 */
+		Tile(int tile, long nanos, int flips, List<Integer> ran) {
+			this.tile = tile;
+			this.nanos = nanos;
+			this.flips = flips;
+			this.ran = ran;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * Spins for the tile's time.
+		 */
+		@Override
+		public Object call() {
+			final long end = System.nanoTime() + nanos;
+			while (System.nanoTime() < end) {
+				/* Spin */
+			}
+			activity = flips;
+			ran.add(tile);
+			return null;	// Nothing to return
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * Tiles are only run through the scheduler.
+		 */
+		@Override
+		public void age() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+/* ************************************************************************* *
+ * Name:		TileServerTest.java
+ * Description:	Test cases for TileServer.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link TileServer}.
+ *
+ * @author Campbell Lockley
+ */
+public class TileServerTest {
+
+	/**
+	 * Tests tiles served for a blinker, and that a generation only evicts the 
+	 * tiles which changed.
+	 * <p>
+	 * A 64 x 64 board is served in 16 x 16 tiles, so zoom 2 is the overview. 
+	 * The blinker is in tile (0, 0), and tile (1, 1) never changes.
+	 *
+	 * @throws Exception if a request fails.
+	 */
+	@Test
+	public void testTiles() throws Exception {
+		final String msg = "tile server served incorrectly";
+		final int boardDim = 64;
+		SequentialLife life = new SequentialLife(boardDim);
+
+		/*
+		 * Load test pattern - blinker.patt:
+		 * 	1:1 2
+		 * 	2:###
+		 */
+		InputStream in = TileServerTest.class
+				.getResourceAsStream("/blinker.patt");
+		life.loadPattern(in);
+
+		TileServer server = new TileServer(life, new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0), 16, 64);
+		server.start();
+		try {
+			assertEquals(msg, 2, server.getMaxZoom());
+			String base = "http://localhost:" + server.getAddress().getPort();
+			assertTrue(msg, new String(get(base + "/info"), "UTF-8")
+					.contains("\"boardDim\": 64"));
+
+			/* Horizontal blinker in tile (0, 0) */
+			BufferedImage tile = image(get(base + "/tile/0/0/0.png"));
+			assertEquals(msg, 16, tile.getWidth());
+			assertEquals(msg, 0, tile.getRaster().getSample(2, 2, 0));
+			assertEquals(msg, 255, tile.getRaster().getSample(2, 1, 0));
+			get(base + "/tile/0/1/1.png");
+			get(base + "/overview.png");
+			assertTrue(msg, server.isCached(0, 0, 0));
+			assertTrue(msg, server.isCached(0, 1, 1));
+			assertTrue(msg, server.isCached(2, 0, 0));
+
+			/* Only the tiles holding the blinker are evicted */
+			life.age();
+			final long deadline = System.currentTimeMillis() + 10000;
+			while ((server.getGeneration() < 1) && 
+					(System.currentTimeMillis() < deadline)) {
+				Thread.sleep(10);
+			}
+			assertEquals(msg, 1, server.getGeneration());
+			assertFalse(msg, server.isCached(0, 0, 0));
+			assertTrue(msg, server.isCached(0, 1, 1));
+			assertFalse(msg, server.isCached(2, 0, 0));
+
+			/* Vertical blinker */
+			tile = image(get(base + "/tile/0/0/0.png"));
+			assertEquals(msg, 0, tile.getRaster().getSample(2, 1, 0));
+			assertEquals(msg, 255, tile.getRaster().getSample(1, 2, 0));
+
+			/* Overview shades 4 x 4 blocks by density */
+			BufferedImage overview = image(get(base + "/overview.png"));
+			assertEquals(msg, 255 - 3 * 255 / 16, 
+					overview.getRaster().getSample(0, 0, 0));
+			assertEquals(msg, 255, overview.getRaster().getSample(5, 5, 0));
+
+			/* Tiles off the board */
+			HttpURLConnection connection = (HttpURLConnection) 
+					new URL(base + "/tile/0/4/0.png").openConnection();
+			assertEquals(msg, 404, connection.getResponseCode());
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Tests that the mirror follows writes to the board between generations, 
+	 * and keeps up with a board ageing faster than deltas are applied.
+	 *
+	 * @throws Exception if ageing or rendering fails.
+	 */
+	@Test
+	public void testBoardWritten() throws Exception {
+		final String msg = "tile server didn't follow the board";
+		final int boardDim = 64;
+		SequentialLife life = new SequentialLife(boardDim);
+		InputStream in = TileServerTest.class
+				.getResourceAsStream("/blinker.patt");
+		life.loadPattern(in);
+
+		TileServer server = new TileServer(life, new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0), 16, 64);
+		try {
+			/* Cleared between generations, so no delta has the change */
+			life.age();
+			life.clearBoard();
+			life.age();
+			await(server, life.getGeneration());
+			assertMirrors(msg, server, life);
+
+			/* Many fast generations never queue more than the limit */
+			Soups.fill(life);
+			life.boardWritten();
+			for (int gen = 0; gen < 500; gen++) {
+				life.age();
+				assertTrue(msg, 
+						server.getPending() <= TileServer.MAX_PENDING_DELTAS);
+			}
+			await(server, life.getGeneration());
+			assertMirrors(msg, server, life);
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Waits for a tile server to reach a generation.
+	 *
+	 * @param server Tile server.
+	 * @param generation Generation to wait for.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	private static void await(TileServer server, long generation) 
+			throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		while ((server.getGeneration() < generation) && 
+				(System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Asserts that the zoom 0 tiles of a tile server match a board.
+	 *
+	 * @param msg Message of a failure.
+	 * @param server Tile server.
+	 * @param life Board served.
+	 * @throws IOException if a tile can't be rendered.
+	 */
+	private static void assertMirrors(String msg, TileServer server, 
+			Life life) throws IOException {
+		assertEquals(msg, life.getGeneration(), server.getGeneration());
+		for (int ty = 0; ty < 4; ty++) {
+			for (int tx = 0; tx < 4; tx++) {
+				BufferedImage tile = image(server.getTile(0, tx, ty));
+				for (int y = 0; y < 16; y++) {
+					for (int x = 0; x < 16; x++) {
+						final boolean alive = 
+								life.isAlive(tx * 16 + x, ty * 16 + y);
+						assertEquals(msg, alive ? 0 : 255,
+								tile.getRaster().getSample(x, y, 0));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the body of a URL.
+	 *
+	 * @param url URL to get.
+	 * @return Body of the response.
+	 * @throws IOException if there is an I/O error.
+	 */
+	private static byte[] get(String url) throws IOException {
+		InputStream in = new URL(url).openStream();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+		in.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a PNG.
+	 *
+	 * @param png Encoded image.
+	 * @return Decoded image.
+	 * @throws IOException if the image can't be decoded.
+	 */
+	private static BufferedImage image(byte[] png) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(png));
+	}
+
+}
@@ -0,0 +1,145 @@
+/* ************************************************************************* *
+ * Name:		TiledParallelLifeTest.java
+ * Description:	Test cases for TiledParallelLife.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link TiledParallelLife}.
+ * 
+ * @author Campbell Lockley
+ */
+public class TiledParallelLifeTest {
+
+	/**
+	 * Tests {@link TiledParallelLife#cellIndex(int, int)}.
+	 * <p>
+	 * Tiles must be stored in Morton order, and every cell must have its own 
+	 * index.
+	 */
+	@Test
+	public void testCellIndex() {
+		final String msg = "cells are not laid out in Morton order";
+		
+		/* Instantiate class under test with 4 x 4 tiles of 4 x 4 cells */
+		TiledParallelLife life = new TiledParallelLife(16, 1, 4);
+		final int tileSize = 6 * 6;
+		
+		/* Tiles (0,0), (1,0), (0,1), (1,1), (2,0) are slots 0 to 4 */
+		assertEquals(msg, 7, life.cellIndex(0, 0));
+		assertEquals(msg, tileSize + 7, life.cellIndex(4, 0));
+		assertEquals(msg, 2 * tileSize + 7, life.cellIndex(0, 4));
+		assertEquals(msg, 3 * tileSize + 7, life.cellIndex(4, 4));
+		assertEquals(msg, 4 * tileSize + 7, life.cellIndex(8, 0));
+		assertEquals(msg, 3 * tileSize + 4 * 6 + 4, life.cellIndex(7, 7));
+		
+		/* Every cell has a distinct index */
+		boolean[] used = new boolean[life.board.length];
+		for (int y = 0; y < 16; y++) {
+			for (int x = 0; x < 16; x++) {
+				assertFalse(msg, used[life.cellIndex(x, y)]);
+				used[life.cellIndex(x, y)] = true;
+			}
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests {@link TiledParallelLife#age()}.
+	 * <p>
+	 * {@link TiledParallelLife#age() age()} is tested against 
+	 * {@link SequentialLife} with a random board, which exercises the edges 
+	 * copied between tiles and around the board.
+	 * 
+	 * @throws TimeoutException if {@link TiledParallelLife#age() age()} times 
+	 * out.
+	 */
+	@Test
+	public void testAge() throws TimeoutException {
+		final String msg = "age() didn't compute next generation correctly";
+		
+		/* Instantiate class under test and reference implementation */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		TiledParallelLife life = new TiledParallelLife(boardDim, numThreads, 16);
+		SequentialLife expected = new SequentialLife(boardDim);
+		
+		/* Fill both boards with the same random soup */
+		Soups.fill(life, expected);
+		
+		/* Compare every cell of every generation */
+		for (int gen = 0; gen < 20; gen++) {
+			life.age();
+			expected.age();
+			for (int y = 0; y < boardDim; y++) {
+				for (int x = 0; x < boardDim; x++) {
+					assertEquals(msg, expected.isAlive(x, y), 
+							life.isAlive(x, y));
+				}
+			}
+		}
+		life.cleanUp();
+	}
+
+	/**
+	 * Tests {@link TiledParallelLife#loadPattern(InputStream)} and wrapping.
+	 * <p>
+	 * toadWrap.patt is split across the top and bottom of the board, and 
+	 * across tiles.
+	 * 
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 * @throws IOException if there is an I/O error.
+	 * @throws TimeoutException if {@link TiledParallelLife#age() age()} times 
+	 * out.
+	 */
+	@Test
+	public void testWrap() 
+			throws IOException, FileFormatException, TimeoutException {
+		final String msg = "board is not wrapping correctly";
+		
+		/* Instantiate class under test */
+		TiledParallelLife life = new TiledParallelLife(8, 2, 2);
+		SequentialLife expected = new SequentialLife(8);
+		
+		/*
+		 * Load test pattern - toadWrap.patt:
+		 * 	1:0 0
+		 * 	2:###
+		 * 	3:
+		 * 	4:
+		 * 	5:
+		 * 	6: ###
+		 */
+		InputStream in = TiledParallelLifeTest.class
+				.getResourceAsStream("/toadWrap.patt");
+		life.loadPattern(in);
+		in = TiledParallelLifeTest.class.getResourceAsStream("/toadWrap.patt");
+		expected.loadPattern(in);
+		assertTrue(msg, life.isAlive(0, 0));
+		assertTrue(msg, life.isAlive(3, 4));
+		
+		/* Compare every cell of every generation */
+		for (int gen = 0; gen < 8; gen++) {
+			life.age();
+			expected.age();
+			for (int y = 0; y < 8; y++) {
+				for (int x = 0; x < 8; x++) {
+					assertEquals(msg, expected.isAlive(x, y), 
+							life.isAlive(x, y));
+				}
+			}
+		}
+		life.cleanUp();
+	}
+
+}
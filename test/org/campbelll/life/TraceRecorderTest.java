@@ -0,0 +1,172 @@
+/* ************************************************************************* *
+ * Name:		TraceRecorderTest.java
+ * Description:	Test cases for TraceRecorder.java and TraceReader.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link TraceRecorder} and {@link TraceReader}.
+ *
+ * @author Campbell Lockley
+ */
+public class TraceRecorderTest {
+
+	/**
+	 * Tests recording a run and replaying it.
+	 * <p>
+	 * A random board is run with a {@link TraceRecorder} attached, keeping a
+	 * copy of every generation. Every generation is then read back with
+	 * {@link TraceReader#seek(long)}, first in order and then backwards so
+	 * that every seek has to start from a keyframe.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the trace is incorrectly formatted.
+	 * @throws TimeoutException if {@link BlockParallelLife#age() age()} times
+	 * out.
+	 */
+	@Test
+	public void testReplay()
+			throws IOException, FileFormatException, TimeoutException {
+		final String msg = "replayed generation doesn't match";
+
+		/* Fill a board with a random soup */
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		BlockParallelLife life = new BlockParallelLife(boardDim, numThreads);
+		Soups.fill(life);
+
+		/* Record 50 generations, keeping a copy of each */
+		Path file = Files.createTempFile("life", ".trace");
+		List<char[]> expected = new ArrayList<char[]>();
+		TraceRecorder recorder = new TraceRecorder(file, life, 8);
+		expected.add(Arrays.copyOf(life.board, life.board.length));
+		for (int gen = 0; gen < 50; gen++) {
+			life.age();
+			expected.add(Arrays.copyOf(life.board, life.board.length));
+		}
+		recorder.close();
+		life.cleanUp();
+
+		/* Replay forwards then backwards */
+		TraceReader reader = new TraceReader(file);
+		try {
+			assertEquals(msg, boardDim, reader.getBoardDim());
+			assertEquals(msg, 0, reader.getFirstGeneration());
+			assertEquals(msg, 50, reader.getLastGeneration());
+			for (int gen = 0; gen <= 50; gen++) {
+				reader.seek(gen);
+				assertArrayEquals(msg, expected.get(gen), reader.toBoard());
+			}
+			for (int gen = 50; gen >= 0; gen--) {
+				reader.seek(gen);
+				assertArrayEquals(msg, expected.get(gen), reader.toBoard());
+			}
+		} finally {
+			reader.close();
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Tests that a pattern loaded onto the board part way through recording
+	 * is in the trace, although it isn't in any delta.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if the trace or pattern is incorrectly
+	 * formatted.
+	 */
+	@Test
+	public void testBoardWritten() throws IOException, FileFormatException {
+		final String msg = "write outside age() wasn't recorded";
+
+		/* Record 20 generations, loading a pattern after the 10th */
+		SequentialLife life = new SequentialLife(32);
+		Path file = Files.createTempFile("life", ".trace");
+		List<char[]> expected = new ArrayList<char[]>();
+		TraceRecorder recorder = new TraceRecorder(file, life, 8);
+		expected.add(Arrays.copyOf(life.board, life.board.length));
+		for (int gen = 0; gen < 20; gen++) {
+			if (gen == 10) {
+				life.loadPattern(TraceRecorderTest.class
+						.getResourceAsStream("/blinker.patt"));
+			}
+			life.age();
+			expected.add(Arrays.copyOf(life.board, life.board.length));
+		}
+		recorder.close();
+
+		TraceReader reader = new TraceReader(file);
+		try {
+			for (int gen = 0; gen <= 20; gen++) {
+				reader.seek(gen);
+				assertArrayEquals(msg, expected.get(gen), reader.toBoard());
+			}
+		} finally {
+			reader.close();
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Tests that a trace of a sparse board is much smaller than the board.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 * @throws FileFormatException if pattern file is incorrectly formatted.
+	 */
+	@Test
+	public void testSize() throws IOException, FileFormatException {
+		final String msg = "trace is not compressed";
+
+		/* Record 100 generations of a blinker on a large board */
+		final int boardDim = 512;
+		SequentialLife life = new SequentialLife(boardDim);
+		life.loadPattern(TraceRecorderTest.class
+				.getResourceAsStream("/blinker.patt"));
+		Path file = Files.createTempFile("life", ".trace");
+		TraceRecorder recorder = new TraceRecorder(file, life, 1000);
+		for (int gen = 0; gen < 100; gen++) life.age();
+		recorder.close();
+
+		/* The board alone is 32 KB as bits, and the trace holds 101 */
+		try {
+			assertTrue(msg, Files.size(file) < 8 * 1024);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Tests that {@link TraceRecorder} refuses a rectangular board, as the
+	 * trace format only holds square boards.
+	 *
+	 * @throws IOException if there is an I/O error.
+	 */
+	@Test
+	public void testRectangular() throws IOException {
+		final String msg = "rectangular board was recorded";
+		Path file = Files.createTempFile("life", ".trace");
+		try {
+			new TraceRecorder(file, new SequentialLife(64, 32), 10);
+			fail(msg);
+		} catch (IllegalArgumentException e) {
+			/* Expected */
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/* ************************************************************************* *
+ * Name:		VerificationHarnessTest.java
+ * Description:	Test cases for VerificationHarness.java
+ * Author:		Campbell Lockley		StudentID: 1178618
+ * Date:		19/10/26
+ * ************************************************************************* */
+package org.campbelll.life;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link VerificationHarness}.
+ *
+ * @author Campbell Lockley
+ */
+public class VerificationHarnessTest {
+
+	/**
+	 * Tests {@link VerificationHarness#run(int) run()} with engines which
+	 * agree.
+	 * <p>
+	 * {@link TiledParallelLife} lays its board out differently, so its tiles
+	 * are only equal if cells are read through their board positions.
+	 *
+	 * @throws TimeoutException if a generation times out.
+	 */
+	@Test
+	public void testRun() throws TimeoutException {
+		final String msg = "correct engine reported as differing";
+		final int boardDim = 128;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+
+		Life[] candidates = {
+				new BlockParallelLife(boardDim, numThreads),
+				new TiledParallelLife(boardDim, numThreads, 32),
+			};
+		for (Life candidate : candidates) {
+			Life reference = new SequentialLife(boardDim);
+			VerificationHarness harness = new VerificationHarness(
+					reference, candidate, 40, numThreads);
+			harness.randomise(1178618);
+			assertNull(msg, harness.run(20));
+			assertEquals(msg, 20, candidate.getGeneration());
+			harness.cleanUp();
+			candidate.cleanUp();
+		}
+	}
+
+	/**
+	 * Tests {@link VerificationHarness#step()} reports the first differing
+	 * tile and cell.
+	 *
+	 * @throws TimeoutException if a generation times out.
+	 */
+	@Test
+	public void testMismatch() throws TimeoutException {
+		final String msg = "difference reported incorrectly";
+		final int boardDim = 100;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+
+		Life reference = new SequentialLife(boardDim);
+		Life candidate = new BlockParallelLife(boardDim, numThreads);
+		VerificationHarness harness =
+				new VerificationHarness(reference, candidate, 25, numThreads);
+		harness.randomise(1178618);
+		assertNull(msg, harness.run(3));
+
+		/* Corrupt two cells of the candidate, the later one first */
+		harness.step();
+		final int index = candidate.cellIndex(60, 70);
+		candidate.board[index] =
+				(candidate.board[index] == Life.ALIVE) ? Life.DEAD : Life.ALIVE;
+		final int first = candidate.cellIndex(30, 52);
+		candidate.board[first] =
+				(candidate.board[first] == Life.ALIVE) ? Life.DEAD : Life.ALIVE;
+
+		VerificationHarness.Mismatch mismatch = harness.compare();
+		assertNotNull(msg, mismatch);
+		assertEquals(msg, 4, mismatch.getGeneration());
+		assertEquals(msg, 30, mismatch.getX());
+		assertEquals(msg, 52, mismatch.getY());
+		PartitionPlanner.Partition partition = harness.getPartition();
+		final int tile = mismatch.getTile();
+		assertTrue(msg, (partition.getX(tile) <= 30) &&
+				(30 < partition.getX(tile) + partition.getWidth(tile)));
+		assertTrue(msg, (partition.getY(tile) <= 52) &&
+				(52 < partition.getY(tile) + partition.getHeight(tile)));
+		harness.cleanUp();
+		candidate.cleanUp();
+	}
+
+	/**
+	 * Tests {@link VerificationHarness#randomise(long) randomise()} on an
+	 * engine which has already run.
+	 * <p>
+	 * A {@link HybridLife} which has gone sparse on an empty board must see
+	 * the soup written into its board, or it would age the empty board.
+	 *
+	 * @throws TimeoutException if a generation times out.
+	 */
+	@Test
+	public void testRandomise() throws TimeoutException {
+		final String msg = "randomised board not seen by the engine";
+		final int boardDim = 64;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+
+		Life reference = new SequentialLife(boardDim);
+		HybridLife candidate = new HybridLife(boardDim);
+		VerificationHarness harness =
+				new VerificationHarness(reference, candidate, 16, numThreads);
+		assertNull(msg, harness.run(2));
+		assertTrue(msg, candidate.isSparse());
+
+		final long edits = candidate.getEdits();
+		harness.randomise(1178618);
+		assertEquals(msg, edits + 1, candidate.getEdits());
+		assertNull(msg, harness.run(20));
+		harness.cleanUp();
+	}
+
+}